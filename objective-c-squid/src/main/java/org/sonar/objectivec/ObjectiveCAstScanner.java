@@ -24,12 +24,13 @@ import com.sonar.sslr.impl.Parser;
 import org.sonar.objectivec.api.ObjectiveCMetric;
 import org.sonar.objectivec.highlighter.SonarComponents;
 import org.sonar.objectivec.highlighter.SyntaxHighlighterVisitor;
-import org.sonar.objectivec.parser.ObjectiveCParser;
+import org.sonar.objectivec.parser.ObjectiveCTokenParser;
 import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.CommentAnalyser;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.SquidAstVisitorContextImpl;
 import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceCodeIndexer;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByType;
@@ -39,10 +40,23 @@ import org.sonar.squidbridge.metrics.LinesVisitor;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 public class ObjectiveCAstScanner {
 
+    /**
+     * Replaces the index of the scanner when files are handed to a listener, which would otherwise keep them all.
+     */
+    private static final SourceCodeIndexer NO_INDEX = new SourceCodeIndexer() {
+        @Override
+        public void index(SourceCode sourceCode) {
+            // files are not searched once handed to the listener
+        }
+    };
+
     private ObjectiveCAstScanner() {
         // prevents outside instantiation
     }
@@ -67,8 +81,27 @@ public class ObjectiveCAstScanner {
     @SafeVarargs
     public static AstScanner<Grammar> create(ObjectiveCConfiguration conf,
             @Nullable SonarComponents sonarComponents, SquidAstVisitor<Grammar>... visitors) {
+        return create(conf, sonarComponents, null, visitors);
+    }
+
+    /**
+     * @param listener if not null, given each file once scanned; files are then dropped, and not kept in the
+     *                 scanner's index
+     */
+    @SafeVarargs
+    public static AstScanner<Grammar> create(ObjectiveCConfiguration conf,
+            @Nullable SonarComponents sonarComponents, @Nullable SourceFileListener listener,
+            SquidAstVisitor<Grammar>... visitors) {
         final SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<>(new SourceProject("Objective-C Project"));
-        final Parser<Grammar> parser = ObjectiveCParser.create(conf);
+
+        /* All visitors, so that the parser can tell whether they need a syntax tree */
+        final List<SquidAstVisitor<Grammar>> allVisitors = new ArrayList<>();
+
+        /* Completion -- first visitor, to hand a file over before the others visit the next one */
+        if (listener != null) {
+            allVisitors.add(new SourceFileCompletionVisitor(listener));
+        }
+        final Parser<Grammar> parser = new ObjectiveCTokenParser(conf, allVisitors);
 
         AstScanner.Builder<Grammar> builder = AstScanner.builder(context).setBaseParser(parser);
 
@@ -98,24 +131,30 @@ public class ObjectiveCAstScanner {
         builder.setFilesMetric(ObjectiveCMetric.FILES);
 
         /* Metrics */
-        builder.withSquidAstVisitor(new LinesVisitor<>(ObjectiveCMetric.LINES));
-        builder.withSquidAstVisitor(new LinesOfCodeVisitor<>(ObjectiveCMetric.LINES_OF_CODE));
-        builder.withSquidAstVisitor(CommentsVisitor.builder().withCommentMetric(ObjectiveCMetric.COMMENT_LINES)
+        allVisitors.add(new LinesVisitor<>(ObjectiveCMetric.LINES));
+        allVisitors.add(new LinesOfCodeVisitor<>(ObjectiveCMetric.LINES_OF_CODE));
+        allVisitors.add(CommentsVisitor.builder().withCommentMetric(ObjectiveCMetric.COMMENT_LINES)
                 .withNoSonar(true)
                 .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
                 .build());
 
         /* Syntax highlighter */
         if (sonarComponents != null) {
-            builder.withSquidAstVisitor(new SyntaxHighlighterVisitor(sonarComponents, conf.getCharset()));
+            allVisitors.add(new SyntaxHighlighterVisitor(sonarComponents, conf.getCharset()));
         }
 
         /* External visitors */
-        for (SquidAstVisitor<Grammar> visitor : visitors) {
+        Collections.addAll(allVisitors, visitors);
+
+        for (SquidAstVisitor<Grammar> visitor : allVisitors) {
             builder.withSquidAstVisitor(visitor);
         }
 
-        return builder.build();
+        AstScanner<Grammar> scanner = builder.build();
+        if (listener != null) {
+            context.getProject().setSourceCodeIndexer(NO_INDEX);
+        }
+        return scanner;
     }
 
 }
@@ -26,6 +26,8 @@ import java.nio.charset.Charset;
 public class ObjectiveCConfiguration extends SquidConfiguration {
 
     private boolean ignoreHeaderComments;
+    private long maxFileSize = 0L;
+    private long fileTimeout = 0L;
 
     public ObjectiveCConfiguration() {
         // no-op
@@ -43,4 +45,26 @@ public class ObjectiveCConfiguration extends SquidConfiguration {
         return ignoreHeaderComments;
     }
 
+    /**
+     * @param maxFileSize size in bytes above which files should not be scanned, 0 for no limit
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * @param fileTimeout time in milliseconds the lexer may spend on a single file, 0 for no limit
+     */
+    public void setFileTimeout(long fileTimeout) {
+        this.fileTimeout = fileTimeout;
+    }
+
+    public long getFileTimeout() {
+        return fileTimeout;
+    }
+
 }
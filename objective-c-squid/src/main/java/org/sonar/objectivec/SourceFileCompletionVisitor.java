@@ -0,0 +1,83 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * Hands each file to a {@link SourceFileListener}, then drops it from the source tree. The scanner leaves a parsed
+ * file in reverse order of registration but a file that failed to parse in order of registration, so a file is only
+ * handed over when the next one is visited, or when the scan ends, once every visitor is sure to be done with it.
+ * Registered first so that this happens before the other visitors start on the next file.
+ */
+class SourceFileCompletionVisitor extends SquidAstVisitor<Grammar> {
+    private final SourceFileListener listener;
+
+    private File pendingFile;
+    private SourceFile pendingSourceFile;
+    private boolean pendingParsed;
+
+    SourceFileCompletionVisitor(SourceFileListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void visitFile(@Nullable AstNode astNode) {
+        complete();
+    }
+
+    @Override
+    public void leaveFile(@Nullable AstNode astNode) {
+        SourceCode sourceCode = getContext().peekSourceCode();
+        if (sourceCode instanceof SourceFile) {
+            pendingFile = getContext().getFile();
+            pendingSourceFile = (SourceFile) sourceCode;
+            pendingParsed = astNode != null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        complete();
+    }
+
+    private void complete() {
+        if (pendingSourceFile == null) {
+            return;
+        }
+        SourceFile sourceFile = pendingSourceFile;
+        pendingSourceFile = null;
+        listener.fileScanned(pendingFile, sourceFile, pendingParsed);
+        pendingFile = null;
+
+        sourceFile.getCheckMessages().clear();
+        SourceCode parent = sourceFile.getParent();
+        if (parent != null && parent.hasChildren()) {
+            parent.getChildren().remove(sourceFile);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec;
+
+import org.sonar.squidbridge.api.SourceFile;
+
+import java.io.File;
+
+/**
+ * Told about each file once all the visitors of the scanner are done with it, at the latest when the next file is
+ * visited or the scan ends. The {@link SourceFile} is
+ * released once the listener returns, so that memory does not grow with the number of files scanned.
+ */
+public interface SourceFileListener {
+
+    /**
+     * @param parsed false if the file could not be lexed or parsed, in which case its measures are incomplete
+     */
+    void fileScanned(File file, SourceFile sourceFile, boolean parsed);
+
+}
@@ -0,0 +1,50 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.highlighter;
+
+import org.sonar.api.source.Highlightable;
+
+import java.util.List;
+
+/**
+ * Gives the same highlighting to several files.
+ */
+class CompositeHighlightingBuilder implements Highlightable.HighlightingBuilder {
+    private final List<Highlightable.HighlightingBuilder> builders;
+
+    CompositeHighlightingBuilder(List<Highlightable.HighlightingBuilder> builders) {
+        this.builders = builders;
+    }
+
+    @Override
+    public Highlightable.HighlightingBuilder highlight(int startOffset, int endOffset, String typeOfText) {
+        for (Highlightable.HighlightingBuilder builder : builders) {
+            builder.highlight(startOffset, endOffset, typeOfText);
+        }
+        return this;
+    }
+
+    @Override
+    public void done() {
+        for (Highlightable.HighlightingBuilder builder : builders) {
+            builder.done();
+        }
+    }
+}
@@ -27,11 +27,16 @@ import org.sonar.api.source.Highlightable;
 
 import javax.annotation.CheckForNull;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class SonarComponents implements BatchExtension {
 
     private final ResourcePerspectives resourcePerspectives;
     private final FileSystem fs;
+    private final Map<File, List<InputFile>> copies = new HashMap<>();
 
     public SonarComponents(ResourcePerspectives resourcePerspectives, FileSystem fs) {
         this.resourcePerspectives = resourcePerspectives;
@@ -46,4 +51,29 @@ public class SonarComponents implements BatchExtension {
     public Highlightable highlightableFor(InputFile inputFile) {
         return resourcePerspectives.as(Highlightable.class, inputFile);
     }
+
+    /**
+     * Makes the highlighting of <code>file</code> also that of files with the very same content, which are not
+     * scanned.
+     */
+    public void addCopies(File file, List<InputFile> copiesOfFile) {
+        copies.put(file, copiesOfFile);
+    }
+
+    public Highlightable.HighlightingBuilder newHighlighting(File file, InputFile inputFile) {
+        Highlightable.HighlightingBuilder highlighting = highlightableFor(inputFile).newHighlighting();
+        List<InputFile> copiesOfFile = copies.get(file);
+        if (copiesOfFile == null) {
+            return highlighting;
+        }
+        List<Highlightable.HighlightingBuilder> builders = new ArrayList<>();
+        builders.add(highlighting);
+        for (InputFile copy : copiesOfFile) {
+            Highlightable highlightable = highlightableFor(copy);
+            if (highlightable != null) {
+                builders.add(highlightable.newHighlighting());
+            }
+        }
+        return new CompositeHighlightingBuilder(builders);
+    }
 }
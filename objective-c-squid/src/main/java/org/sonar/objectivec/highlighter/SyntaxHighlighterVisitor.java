@@ -77,7 +77,7 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<Grammar> implement
 
         InputFile inputFile = sonarComponents.inputFileFor(getContext().getFile());
         Preconditions.checkNotNull(inputFile);
-        highlighting = sonarComponents.highlightableFor(inputFile).newHighlighting();
+        highlighting = sonarComponents.newHighlighting(getContext().getFile(), inputFile);
 
         lineStart = Lists.newArrayList();
         final String content;
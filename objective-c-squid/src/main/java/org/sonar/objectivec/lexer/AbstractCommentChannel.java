@@ -0,0 +1,61 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Shared handling of the comment channels: turns the characters found by a subclass into comment trivia.
+ */
+abstract class AbstractCommentChannel extends Channel<Lexer> {
+    static final char EOF = (char) -1;
+
+    /**
+     * @return the length of the comment starting at the current position, 0 if there is none
+     */
+    abstract int commentLength(CodeReader code);
+
+    @Override
+    public final boolean consume(CodeReader code, Lexer output) {
+        int length = commentLength(code);
+        if (length == 0) {
+            return false;
+        }
+        int line = code.getLinePosition();
+        int column = code.getColumnPosition();
+        String value = new String(code.peek(length));
+        for (int i = 0; i < length; i++) {
+            code.pop();
+        }
+        output.addTrivia(Trivia.createComment(Token.builder()
+                .setLine(line)
+                .setColumn(column)
+                .setURI(output.getURI())
+                .setValueAndOriginalValue(value)
+                .setType(GenericTokenType.COMMENT)
+                .build()));
+        return true;
+    }
+}
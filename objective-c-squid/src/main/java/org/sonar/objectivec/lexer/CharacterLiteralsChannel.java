@@ -26,48 +26,54 @@ import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.CodeReader;
 
 /**
+ * Character literals.  Stateless, like {@link StringLiteralsChannel}.
+ *
  * @author Sonar C++ Plugin (Community) authors
  */
 public class CharacterLiteralsChannel extends Channel<Lexer> {
     private static final char EOF = (char) -1;
 
-    private final StringBuilder sb = new StringBuilder();
-
-    private int index;
-    private char ch;
-
     @Override
     public boolean consume(CodeReader code, Lexer output) {
-        int line = code.getLinePosition();
-        int column = code.getColumnPosition();
-        index = 0;
-        readPrefix(code);
+        int index = 0;
+        char ch = code.charAt(index);
+        if ((ch == 'u') || (ch == 'U') || ch == 'L') {
+            index++;
+            ch = code.charAt(index);
+        }
         if ((ch != '\'')) {
             return false;
         }
-        if (!read(code)) {
+        index = read(code, index);
+        if (index < 0) {
             return false;
         }
-        readUdSuffix(code);
+        index = StringLiteralsChannel.readUdSuffix(code, index);
+
+        int line = code.getLinePosition();
+        int column = code.getColumnPosition();
+        String value = new String(code.peek(index));
         for (int i = 0; i < index; i++) {
-            sb.append((char) code.pop());
+            code.pop();
         }
         output.addToken(Token.builder()
                 .setLine(line)
                 .setColumn(column)
                 .setURI(output.getURI())
-                .setValueAndOriginalValue(sb.toString())
+                .setValueAndOriginalValue(value)
                 .setType(ObjectiveCTokenType.CHARACTER_LITERAL)
                 .build());
-        sb.setLength(0);
         return true;
     }
 
-    private boolean read(CodeReader code) {
+    /**
+     * @return the index following the closing quote, -1 if there is none
+     */
+    private static int read(CodeReader code, int index) {
         index++;
-        while (code.charAt(index) != ch) {
+        while (code.charAt(index) != '\'') {
             if (code.charAt(index) == EOF) {
-                return false;
+                return -1;
             }
             if (code.charAt(index) == '\\') {
                 // escape
@@ -75,40 +81,6 @@ public class CharacterLiteralsChannel extends Channel<Lexer> {
             }
             index++;
         }
-        index++;
-        return true;
-    }
-
-    private void readPrefix(CodeReader code) {
-        ch = code.charAt(index);
-        if ((ch == 'u') || (ch == 'U') || ch == 'L') {
-            index++;
-            ch = code.charAt(index);
-        }
-    }
-
-    private void readUdSuffix(CodeReader code) {
-        for (int start_index = index, len = 0; ; index++) {
-            char c = code.charAt(index);
-            if (c == EOF) {
-                return;
-            }
-            if ((c >= 'a' && c <= 'z')
-                    || (c >= 'A' && c <= 'Z')
-                    || (c == '_')) {
-                len++;
-            } else {
-                if (c >= '0' && c <= '9') {
-                    if (len > 0) {
-                        len++;
-                    } else {
-                        index = start_index;
-                        return;
-                    }
-                } else {
-                    return;
-                }
-            }
-        }
+        return index + 1;
     }
 }
@@ -0,0 +1,61 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Never consumes anything: fails the lexing of a file once it has taken longer than the allowed time. Must be the
+ * first channel so that it is consulted before each token. Only lexing is timed, not parsing nor the visitors, and
+ * a single channel that takes too long on one token is only stopped once it returns.
+ * <p>
+ * Each lexer gets its own instance, which tracks the file being lexed: like the lexer, it must not be used by
+ * several threads at once.
+ */
+public class FileTimeoutChannel extends Channel<Lexer> {
+    private final long timeoutNanos;
+
+    private CodeReader currentCode;
+    private long deadline;
+
+    /**
+     * @param timeout time in milliseconds allowed to lex a file
+     */
+    public FileTimeoutChannel(long timeout) {
+        this.timeoutNanos = timeout * 1000000L;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, Lexer output) {
+        long now = System.nanoTime();
+        if (code != currentCode) {
+            // A new code reader is created for each file
+            currentCode = code;
+            deadline = now + timeoutNanos;
+        } else if (now - deadline > 0) {
+            currentCode = null;
+            throw new FileTimeoutException(output.getURI() + " could not be lexed within "
+                    + timeoutNanos / 1000000L + " ms (stopped at line " + code.getLinePosition() + ")");
+        }
+        return false;
+    }
+}
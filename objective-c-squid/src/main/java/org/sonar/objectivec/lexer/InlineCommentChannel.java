@@ -0,0 +1,41 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * <code>// ...</code> comments, up to but excluding the end of the line.
+ */
+public class InlineCommentChannel extends AbstractCommentChannel {
+
+    @Override
+    int commentLength(CodeReader code) {
+        if (code.charAt(0) != '/' || code.charAt(1) != '/') {
+            return 0;
+        }
+        int index = 2;
+        char ch = code.charAt(index);
+        while (ch != '\n' && ch != '\r' && ch != EOF) {
+            ch = code.charAt(++index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.objectivec.api.ObjectiveCKeyword;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.Arrays;
+
+/**
+ * Identifiers and keywords, matching what <code>IdentifierAndKeywordChannel</code> did with the regular expression
+ * <code>[#@]?[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+((\s+)?\*)?</code>: trailing underscores are not part of an
+ * identifier, and a following <code>*</code> is, so that <code>NSString *</code> is a single token.
+ * <p>
+ * Keywords are looked up in a perfect hash table built once when the class is loaded, without creating a string
+ * for the candidate word.
+ */
+public class ObjectiveCIdentifierChannel extends Channel<Lexer> {
+    private static final int TABLE_SIZE = 2048;
+    private static final int MASK = TABLE_SIZE - 1;
+    private static final int MAX_SEED_TRIES = 1000000;
+
+    private static final ObjectiveCKeyword[] KEYWORDS = new ObjectiveCKeyword[TABLE_SIZE];
+    private static final int SEED = buildTable();
+
+    @Override
+    public boolean consume(CodeReader code, Lexer output) {
+        int index = 0;
+        char ch = code.charAt(0);
+        if (ch == '#' || ch == '@') {
+            index++;
+        }
+        if (!isLetter(code.charAt(index))) {
+            return false;
+        }
+        index++;
+
+        // end of the word, which cannot end with an underscore
+        int end = index;
+        while (isIdentifierPart(ch = code.charAt(index))) {
+            index++;
+            if (ch != '_') {
+                end = index;
+            }
+        }
+
+        // optional pointer star
+        int length = end;
+        index = end;
+        while (WhitespaceChannel.isWhitespace(code.charAt(index))) {
+            index++;
+        }
+        if (code.charAt(index) == '*') {
+            length = index + 1;
+        }
+
+        ObjectiveCKeyword keyword = length == end ? lookup(code, end) : null;
+        TokenType type = keyword == null ? GenericTokenType.IDENTIFIER : keyword;
+        String value = keyword == null ? new String(code.peek(length)) : keyword.getValue();
+
+        int line = code.getLinePosition();
+        int column = code.getColumnPosition();
+        for (int i = 0; i < length; i++) {
+            code.pop();
+        }
+        output.addToken(Token.builder()
+                .setLine(line)
+                .setColumn(column)
+                .setURI(output.getURI())
+                .setValueAndOriginalValue(value)
+                .setType(type)
+                .build());
+        return true;
+    }
+
+    private static ObjectiveCKeyword lookup(CodeReader code, int length) {
+        int hash = SEED;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ code.charAt(i)) * 0x01000193;
+        }
+        ObjectiveCKeyword keyword = KEYWORDS[slot(hash)];
+        if (keyword == null || keyword.getValue().length() != length) {
+            return null;
+        }
+        String value = keyword.getValue();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != code.charAt(i)) {
+                return null;
+            }
+        }
+        return keyword;
+    }
+
+    private static int hash(int seed, String value) {
+        int hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & MASK;
+    }
+
+    /**
+     * Looks for a seed under which no two keywords share a slot, and fills the table with it.
+     */
+    private static int buildTable() {
+        ObjectiveCKeyword[] keywords = ObjectiveCKeyword.values();
+        for (int seed = 0x811c9dc5, tries = 0; tries < MAX_SEED_TRIES; seed++, tries++) {
+            boolean perfect = true;
+            for (ObjectiveCKeyword keyword : keywords) {
+                int slot = slot(hash(seed, keyword.getValue()));
+                if (KEYWORDS[slot] != null) {
+                    perfect = false;
+                    break;
+                }
+                KEYWORDS[slot] = keyword;
+            }
+            if (perfect) {
+                return seed;
+            }
+            Arrays.fill(KEYWORDS, null);
+        }
+        throw new IllegalStateException("No perfect hash found for the Objective-C keywords");
+    }
+
+    private static boolean isLetter(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isIdentifierPart(char ch) {
+        return isLetter(ch) || (ch >= '0' && ch <= '9') || ch == '_';
+    }
+}
@@ -21,14 +21,8 @@ package org.sonar.objectivec.lexer;
 
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.impl.Lexer;
-import com.sonar.sslr.impl.channel.BlackHoleChannel;
-import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
-import com.sonar.sslr.impl.channel.PunctuatorChannel;
 import org.sonar.objectivec.ObjectiveCConfiguration;
-import org.sonar.objectivec.api.ObjectiveCKeyword;
-import org.sonar.objectivec.api.ObjectiveCPunctuator;
 
-import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
 import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
 import static org.sonar.objectivec.api.ObjectiveCTokenType.DOUBLE_LITERAL;
 import static org.sonar.objectivec.api.ObjectiveCTokenType.FLOAT_LITERAL;
@@ -56,6 +50,18 @@ public class ObjectiveCLexer {
             "|" + "[0-9][0-9_]*+" +
             ")";
 
+    /*
+     * Stateless channels, shared by all lexers
+     */
+    private static final WhitespaceChannel WHITESPACE = new WhitespaceChannel();
+    private static final InlineCommentChannel INLINE_COMMENT = new InlineCommentChannel();
+    private static final BlockCommentChannel BLOCK_COMMENT = new BlockCommentChannel();
+    private static final BackslashChannel BACKSLASH = new BackslashChannel();
+    private static final CharacterLiteralsChannel CHARACTER_LITERALS = new CharacterLiteralsChannel();
+    private static final StringLiteralsChannel STRING_LITERALS = new StringLiteralsChannel();
+    private static final ObjectiveCIdentifierChannel IDENTIFIERS = new ObjectiveCIdentifierChannel();
+    private static final ObjectiveCPunctuatorChannel PUNCTUATORS = new ObjectiveCPunctuatorChannel();
+
     private ObjectiveCLexer() {
         // prevents outside instantiation
     }
@@ -65,25 +71,31 @@ public class ObjectiveCLexer {
     }
 
     public static Lexer create(ObjectiveCConfiguration conf) {
-        return Lexer.builder()
+        Lexer.Builder builder = Lexer.builder()
                 .withCharset(conf.getCharset())
-                .withFailIfNoChannelToConsumeOneCharacter(true)
+                .withFailIfNoChannelToConsumeOneCharacter(true);
+
+        /* Time budget per file -- must be first channel */
+        if (conf.getFileTimeout() > 0) {
+            builder.withChannel(new FileTimeoutChannel(conf.getFileTimeout()));
+        }
 
+        return builder
                 /* Remove whitespace */
-                .withChannel(new BlackHoleChannel("\\s++"))
+                .withChannel(WHITESPACE)
 
                 /* Comments */
-                .withChannel(commentRegexp("//[^\\n\\r]*+"))
-                .withChannel(commentRegexp("/\\*", "[\\s\\S]*?", "\\*/"))
+                .withChannel(INLINE_COMMENT)
+                .withChannel(BLOCK_COMMENT)
 
                 /* Backslash at the end of the line: just throw away */
-                .withChannel(new BackslashChannel())
+                .withChannel(BACKSLASH)
 
                 /* Character literals */
-                .withChannel(new CharacterLiteralsChannel())
+                .withChannel(CHARACTER_LITERALS)
 
                 /* String literals */
-                .withChannel(new StringLiteralsChannel())
+                .withChannel(STRING_LITERALS)
 
                 /* Number literals */
                 .withChannel(regexp(FLOAT_LITERAL, FLOATING_LITERAL_WITHOUT_SUFFIX_REGEXP + "[fF]|[0-9][0-9_]*+[fF]"))
@@ -92,12 +104,19 @@ public class ObjectiveCLexer {
                 .withChannel(regexp(INTEGER_LITERAL, INTEGER_LITERAL_REGEXP))
 
                 /* Identifiers, keywords, and punctuators */
-                .withChannel(new IdentifierAndKeywordChannel("[#@]?[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+((\\s+)?\\*)?", true, ObjectiveCKeyword.values()))
-                .withChannel(new PunctuatorChannel(ObjectiveCPunctuator.values()))
+                .withChannel(IDENTIFIERS)
+                .withChannel(PUNCTUATORS)
 
                 /* All other tokens -- must be last channel */
                 .withChannel(regexp(GenericTokenType.IDENTIFIER, "[^\r\n\\s/]+"))
 
                 .build();
     }
+
+    /**
+     * A lexer which may be used from several threads at once.
+     */
+    public static ThreadSafeLexer createThreadSafe(ObjectiveCConfiguration conf) {
+        return new ThreadSafeLexer(conf);
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.objectivec.api.ObjectiveCPunctuator;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Punctuators, longest match first, looked up in a trie of their characters: the code is read one character per
+ * level for as long as some punctuator continues with it, and the deepest punctuator met on the way is the match.
+ */
+public class ObjectiveCPunctuatorChannel extends Channel<Lexer> {
+    private static final int ASCII = 128;
+
+    private static final Node ROOT = buildTrie();
+
+    @Override
+    public boolean consume(CodeReader code, Lexer output) {
+        ObjectiveCPunctuator punctuator = null;
+        Node node = ROOT;
+        for (int i = 0; ; i++) {
+            char c = code.charAt(i);
+            node = c < ASCII && node.children != null ? node.children[c] : null;
+            if (node == null) {
+                break;
+            }
+            if (node.punctuator != null) {
+                punctuator = node.punctuator;
+            }
+        }
+        if (punctuator == null) {
+            return false;
+        }
+
+        String value = punctuator.getValue();
+        int line = code.getLinePosition();
+        int column = code.getColumnPosition();
+        for (int i = 0; i < value.length(); i++) {
+            code.pop();
+        }
+        output.addToken(Token.builder()
+                .setLine(line)
+                .setColumn(column)
+                .setURI(output.getURI())
+                .setValueAndOriginalValue(value)
+                .setType(punctuator)
+                .build());
+        return true;
+    }
+
+    private static Node buildTrie() {
+        Node root = new Node();
+        for (ObjectiveCPunctuator punctuator : ObjectiveCPunctuator.values()) {
+            Node node = root;
+            for (char c : punctuator.getValue().toCharArray()) {
+                if (node.children == null) {
+                    node.children = new Node[ASCII];
+                }
+                if (node.children[c] == null) {
+                    node.children[c] = new Node();
+                }
+                node = node.children[c];
+            }
+            node.punctuator = punctuator;
+        }
+        return root;
+    }
+
+    private static final class Node {
+        // Indexed by the next character, null on leaves
+        private Node[] children;
+        // Punctuator ending on this node, if any
+        private ObjectiveCPunctuator punctuator;
+    }
+}
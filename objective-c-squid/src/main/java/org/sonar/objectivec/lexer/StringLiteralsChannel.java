@@ -26,55 +26,67 @@ import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.CodeReader;
 
 /**
+ * String literals.  Stateless: the scanning position is kept on the stack, so one instance may be used by several
+ * lexers at once.
+ *
  * @author Sonar C++ Plugin (Community) authors
  */
 public class StringLiteralsChannel extends Channel<Lexer> {
     private static final char EOF = (char) -1;
 
-    private final StringBuilder sb = new StringBuilder();
-
-    private int index;
-    private char ch;
-    private boolean isRawString = false;
-
     @Override
     public boolean consume(CodeReader code, Lexer output) {
-        int line = code.getLinePosition();
-        int column = code.getColumnPosition();
-        index = 0;
-        readStringPrefix(code);
+        int index = 0;
+        char ch = code.charAt(index);
+        if ((ch == 'u') || (ch == 'U') || ch == 'L' || ch == '@') {
+            index++;
+            if (ch == 'u' && code.charAt(index) == '8') {
+                index++;
+            }
+            if (code.charAt(index) == ' ')
+                index++;
+            ch = code.charAt(index);
+        }
+        boolean isRawString = false;
+        if (ch == 'R') {
+            index++;
+            isRawString = true;
+            ch = code.charAt(index);
+        }
         if ((ch != '\"')) {
             return false;
         }
-        if (isRawString) {
-            if (!readRawString(code)) {
-                return false;
-            }
-        } else {
-            if (!readString(code)) {
-                return false;
-            }
+        index = isRawString ? readRawString(code, index) : readString(code, index);
+        if (index < 0) {
+            return false;
         }
-        readUdSuffix(code);
+        index = readUdSuffix(code, index);
+
+        int line = code.getLinePosition();
+        int column = code.getColumnPosition();
+        String value = new String(code.peek(index));
         for (int i = 0; i < index; i++) {
-            sb.append((char) code.pop());
+            code.pop();
         }
         output.addToken(Token.builder()
                 .setLine(line)
                 .setColumn(column)
                 .setURI(output.getURI())
-                .setValueAndOriginalValue(sb.toString())
+                .setValueAndOriginalValue(value)
                 .setType(ObjectiveCTokenType.STRING_LITERAL)
                 .build());
-        sb.setLength(0);
         return true;
     }
 
-    private boolean readString(CodeReader code) {
+    /**
+     * @return the index following the closing quote, -1 if there is none
+     */
+    private static int readString(CodeReader code, int index) {
+        char quote = code.charAt(index);
         index++;
-        while (code.charAt(index) != ch) {
+        while (code.charAt(index) != quote) {
             if (code.charAt(index) == EOF) {
-                return false;
+                return -1;
             }
             if (code.charAt(index) == '\\') {
                 // escape
@@ -82,16 +94,19 @@ public class StringLiteralsChannel extends Channel<Lexer> {
             }
             index++;
         }
-        index++;
-        return true;
+        return index + 1;
     }
 
-    private boolean readRawString(CodeReader code) {
+    /**
+     * @return the index following the closing quote, -1 if there is none
+     */
+    private static int readRawString(CodeReader code, int index) {
         // "delimiter( raw_character* )delimiter"
+        StringBuilder sb = new StringBuilder();
         index++;
         while (code.charAt(index) != '(') { // delimiter
             if (code.charAt(index) == EOF) {
-                return false;
+                return -1;
             }
             sb.append(code.charAt(index));
             index++;
@@ -101,48 +116,30 @@ public class StringLiteralsChannel extends Channel<Lexer> {
             sb.setLength(0);
             while (code.charAt(index) != ')') { // raw_character*
                 if (code.charAt(index) == EOF) {
-                    return false;
+                    return -1;
                 }
                 index++;
             }
             index++;
             while (code.charAt(index) != '"') { // delimiter
                 if (code.charAt(index) == EOF) {
-                    return false;
+                    return -1;
                 }
                 sb.append(code.charAt(index));
                 index++;
             }
         } while (!sb.toString().equals(delimiter));
-        sb.setLength(0);
-        index++;
-        return true;
-    }
-
-    private void readStringPrefix(CodeReader code) {
-        ch = code.charAt(index);
-        isRawString = false;
-        if ((ch == 'u') || (ch == 'U') || ch == 'L' || ch == '@') {
-            index++;
-            if (ch == 'u' && code.charAt(index) == '8') {
-                index++;
-            }
-            if (code.charAt(index) == ' ')
-                index++;
-            ch = code.charAt(index);
-        }
-        if (ch == 'R') {
-            index++;
-            isRawString = true;
-            ch = code.charAt(index);
-        }
+        return index + 1;
     }
 
-    private void readUdSuffix(CodeReader code) {
-        for (int start_index = index, len = 0; ; index++) {
+    /**
+     * @return the index following the user-defined suffix starting at <code>start</code>, if any
+     */
+    static int readUdSuffix(CodeReader code, int start) {
+        for (int index = start, len = 0; ; index++) {
             char c = code.charAt(index);
             if (c == EOF) {
-                return;
+                return index;
             }
             if ((c >= 'a' && c <= 'z')
                     || (c >= 'A' && c <= 'Z')
@@ -153,11 +150,10 @@ public class StringLiteralsChannel extends Channel<Lexer> {
                     if (len > 0) {
                         len++;
                     } else {
-                        index = start_index;
-                        return;
+                        return start;
                     }
                 } else {
-                    return;
+                    return index;
                 }
             }
         }
@@ -0,0 +1,53 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.objectivec.ObjectiveCConfiguration;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Thread-safe front of {@link ObjectiveCLexer}. A SSLR {@link Lexer} holds the tokens of the file being lexed, as
+ * do the regular expression channels, so each thread gets its own; the stateless Objective-C channels are shared
+ * by all of them.
+ */
+public final class ThreadSafeLexer {
+    private final ThreadLocal<Lexer> lexers;
+
+    ThreadSafeLexer(final ObjectiveCConfiguration conf) {
+        this.lexers = new ThreadLocal<Lexer>() {
+            @Override
+            protected Lexer initialValue() {
+                return ObjectiveCLexer.create(conf);
+            }
+        };
+    }
+
+    public List<Token> lex(File file) {
+        return lexers.get().lex(file);
+    }
+
+    public List<Token> lex(String source) {
+        return lexers.get().lex(source);
+    }
+}
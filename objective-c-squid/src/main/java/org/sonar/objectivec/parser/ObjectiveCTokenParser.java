@@ -0,0 +1,110 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstVisitor;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Rule;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
+import com.sonar.sslr.impl.Parser;
+import org.sonar.objectivec.ObjectiveCConfiguration;
+import org.sonar.objectivec.api.ObjectiveCGrammar;
+import org.sonar.objectivec.lexer.ObjectiveCLexer;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Skips the grammar when no visitor subscribes to a node type: the tokens of a file are then hung directly under a
+ * {@link ObjectiveCGrammar#COMPILATION_UNIT} node, which is enough for the metrics and highlighting visitors that
+ * only look at tokens and trivia. Otherwise the file is parsed with the grammar.
+ * <p>
+ * Visitors subscribe when they are initialized, at the start of a scan, so the choice is made for each file.
+ */
+public class ObjectiveCTokenParser extends Parser<Grammar> {
+    private final Lexer lexer;
+    private final Parser<Grammar> grammarParser;
+    private final Collection<? extends AstVisitor> visitors;
+
+    /**
+     * @param visitors visitors of the trees returned by this parser
+     */
+    public ObjectiveCTokenParser(ObjectiveCConfiguration conf, Collection<? extends AstVisitor> visitors) {
+        super(ObjectiveCGrammar.create());
+        this.lexer = ObjectiveCLexer.create(conf);
+        this.grammarParser = ObjectiveCParser.create(conf);
+        this.visitors = visitors;
+    }
+
+    @Override
+    public AstNode parse(File file) {
+        if (isSyntaxTreeNeeded()) {
+            return grammarParser.parse(file);
+        }
+        try {
+            return toAst(lexer.lex(file));
+        } catch (LexerException e) {
+            throw new RecognitionException(e);
+        }
+    }
+
+    @Override
+    public AstNode parse(String source) {
+        if (isSyntaxTreeNeeded()) {
+            return grammarParser.parse(source);
+        }
+        try {
+            return toAst(lexer.lex(source));
+        } catch (LexerException e) {
+            throw new RecognitionException(e);
+        }
+    }
+
+    @Override
+    public AstNode parse(List<Token> tokens) {
+        return isSyntaxTreeNeeded() ? grammarParser.parse(tokens) : toAst(tokens);
+    }
+
+    private boolean isSyntaxTreeNeeded() {
+        for (AstVisitor visitor : visitors) {
+            if (!visitor.getAstNodeTypesToVisit().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same tree as the one of the grammar, whose only rule matches any token up to the end of file.
+     */
+    private AstNode toAst(List<Token> tokens) {
+        Rule rootRule = getGrammar().getRootRule();
+        AstNode root = new AstNode(rootRule, ObjectiveCGrammar.COMPILATION_UNIT.toString(), tokens.get(0));
+        for (Token token : tokens) {
+            root.addChild(new AstNode(token));
+        }
+        return root;
+    }
+}
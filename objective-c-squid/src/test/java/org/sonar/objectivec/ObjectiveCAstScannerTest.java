@@ -24,10 +24,17 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import com.sonar.sslr.api.Grammar;
 import org.junit.Test;
 import org.sonar.objectivec.api.ObjectiveCMetric;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByType;
 
 public class ObjectiveCAstScannerTest {
 
@@ -51,4 +58,27 @@ public class ObjectiveCAstScannerTest {
         assertThat(file.getNoSonarTagLines().size(), is(1));
     }
 
+    @Test
+    public void files_handed_to_listener_are_not_indexed() {
+        final List<String> scanned = new ArrayList<>();
+        final List<Integer> commentLines = new ArrayList<>();
+        AstScanner<Grammar> scanner = ObjectiveCAstScanner.create(new ObjectiveCConfiguration(), null,
+                new SourceFileListener() {
+                    @Override
+                    public void fileScanned(File file, SourceFile sourceFile, boolean parsed) {
+                        scanned.add(file.getName());
+                        commentLines.add(sourceFile.getInt(ObjectiveCMetric.COMMENT_LINES));
+                        assertThat(parsed, is(true));
+                    }
+                }, new SquidAstVisitor[0]);
+
+        scanner.scanFiles(Arrays.asList(new File("src/test/resources/objcSample.h"),
+                new File("src/test/resources/Profile.m")));
+
+        assertThat(scanned, is(Arrays.asList("objcSample.h", "Profile.m")));
+        // Comments are counted when the comments visitor leaves the file, so before the listener is told
+        assertThat(commentLines.get(0), is(4));
+        assertThat(scanner.getIndex().search(new QueryByType(SourceFile.class)).isEmpty(), is(true));
+    }
+
 }
@@ -0,0 +1,131 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+
+import java.util.List;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+
+/**
+ * Compares the whitespace and comment channels with the regular expression channels they replace, on a generated
+ * header documented the way the Apple SDK headers are.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.sonar.objectivec.lexer.CommentLexingBenchmark</code>.
+ */
+public final class CommentLexingBenchmark {
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    private CommentLexingBenchmark() {
+        // prevents outside instantiation
+    }
+
+    public static void main(String[] args) {
+        String source = docCommentedHeader(args.length > 0 ? Integer.parseInt(args[0]) : 500);
+        Lexer regexpLexer = regexpLexer();
+        Lexer channelLexer = channelLexer();
+
+        System.out.println("Header of " + source.length() + " characters");
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            regexpLexer.lex(source);
+            channelLexer.lex(source);
+        }
+        System.out.println("regexp channels:    " + time(regexpLexer, source) + " ms per file");
+        System.out.println("character channels: " + time(channelLexer, source) + " ms per file");
+    }
+
+    private static double time(Lexer lexer, String source) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            lexer.lex(source);
+        }
+        return (System.nanoTime() - start) / 1000000.0 / ROUNDS;
+    }
+
+    /**
+     * The channels used before the character based ones, followed by a catch-all channel.
+     */
+    static Lexer regexpLexer() {
+        return Lexer.builder()
+                .withFailIfNoChannelToConsumeOneCharacter(true)
+                .withChannel(new BlackHoleChannel("\\s++"))
+                .withChannel(commentRegexp("//[^\\n\\r]*+"))
+                .withChannel(commentRegexp("/\\*", "[\\s\\S]*?", "\\*/"))
+                .withChannel(regexp(GenericTokenType.IDENTIFIER, "[^\\s/]++|/"))
+                .build();
+    }
+
+    static Lexer channelLexer() {
+        return Lexer.builder()
+                .withFailIfNoChannelToConsumeOneCharacter(true)
+                .withChannel(new WhitespaceChannel())
+                .withChannel(new InlineCommentChannel())
+                .withChannel(new BlockCommentChannel())
+                .withChannel(regexp(GenericTokenType.IDENTIFIER, "[^\\s/]++|/"))
+                .build();
+    }
+
+    /**
+     * A header made of a license block followed by <code>declarations</code> doc-commented declarations.
+     */
+    static String docCommentedHeader(int declarations) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("/*\n");
+        for (int i = 0; i < 40; i++) {
+            sb.append(" * Copyright (c) 2008-2016 Example Inc. All rights reserved. Licensed under the terms ")
+                    .append("found in the LICENSE file.\n");
+        }
+        sb.append(" */\n\n#import <Foundation/Foundation.h>\n\nNS_ASSUME_NONNULL_BEGIN\n\n");
+        for (int i = 0; i < declarations; i++) {
+            sb.append("/*!\r\n")
+                    .append(" * @abstract Returns the value number ").append(i).append(" of the receiver.\r\n")
+                    .append(" * @discussion The value is computed lazily; a * b / c does not close this comment.\r\n")
+                    .append(" *\t@param index\tThe index, see <code>//index</code>.\r\n")
+                    .append(" * @return The value, or nil. **/\r\n")
+                    .append("- (nullable id)valueAtIndex").append(i).append(":(NSUInteger)index; // API_AVAILABLE(")
+                    .append("macos(10.").append(i % 16).append("))\n")
+                    .append("\u000B\f/**/ /*/ tricky */\n");
+        }
+        sb.append("\nNS_ASSUME_NONNULL_END\n/* unterminated");
+        return sb.toString();
+    }
+
+    static String describe(List<Token> tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (Token token : tokens) {
+            for (Trivia trivia : token.getTrivia()) {
+                Token comment = trivia.getToken();
+                sb.append(comment.getLine()).append(':').append(comment.getColumn()).append(" trivia ")
+                        .append(comment.getType()).append(' ').append(comment.getValue()).append('\n');
+            }
+            sb.append(token.getLine()).append(':').append(token.getColumn()).append(' ')
+                    .append(token.getType()).append(' ').append(token.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
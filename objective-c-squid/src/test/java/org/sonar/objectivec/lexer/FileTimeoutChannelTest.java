@@ -0,0 +1,76 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
+import org.sonar.objectivec.ObjectiveCConfiguration;
+
+public class FileTimeoutChannelTest {
+
+    @Test
+    public void noChannelByDefault() {
+        ObjectiveCConfiguration conf = new ObjectiveCConfiguration();
+        assertThat(conf.getFileTimeout(), is(0L));
+        assertThat(ObjectiveCLexer.create(conf).lex(source(10000)).size(), is(10001));
+    }
+
+    @Test
+    public void stopsLexingOnceTimeIsUp() {
+        Lexer lexer = lexer(1L);
+        try {
+            lexer.lex(source(100000));
+            fail();
+        } catch (LexerException e) {
+            // The channel dispatcher wraps the exception of the channel once more
+            assertThat(e.getCause().getCause(), instanceOf(FileTimeoutException.class));
+        }
+    }
+
+    @Test
+    public void restartsClockForEachSource() {
+        Lexer lexer = lexer(60000L);
+        for (int i = 0; i < 3; i++) {
+            assertThat(lexer.lex(source(1000)).size(), is(1001));
+        }
+    }
+
+    private static Lexer lexer(long timeout) {
+        ObjectiveCConfiguration conf = new ObjectiveCConfiguration();
+        conf.setFileTimeout(timeout);
+        return ObjectiveCLexer.create(conf);
+    }
+
+    private static String source(int identifiers) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < identifiers; i++) {
+            source.append("identifier").append(i).append(i % 10 == 9 ? '\n' : ' ');
+        }
+        return source.toString();
+    }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.objectivec.lexer;
 
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
 import static com.sonar.sslr.test.lexer.LexerMatchers.hasComment;
 import static com.sonar.sslr.test.lexer.LexerMatchers.hasToken;
 import static org.hamcrest.Matchers.equalTo;
@@ -33,7 +34,10 @@ import org.junit.Test;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
 import org.sonar.objectivec.api.ObjectiveCKeyword;
+import org.sonar.objectivec.api.ObjectiveCPunctuator;
 
 public class ObjectiveCLexerTest {
 
@@ -81,4 +85,49 @@ public class ObjectiveCLexerTest {
         assertThat(tokens, hasToken(GenericTokenType.EOF));
     }
 
+    @Test
+    public void lexCommentsLikeRegexpChannels() {
+        String source = CommentLexingBenchmark.docCommentedHeader(20);
+        assertThat(CommentLexingBenchmark.describe(CommentLexingBenchmark.channelLexer().lex(source)),
+                equalTo(CommentLexingBenchmark.describe(CommentLexingBenchmark.regexpLexer().lex(source))));
+    }
+
+    @Test
+    public void lexIdentifiersAndPunctuatorsLikeGenericChannels() {
+        Lexer genericLexer = Lexer.builder()
+                .withFailIfNoChannelToConsumeOneCharacter(true)
+                .withChannel(new WhitespaceChannel())
+                .withChannel(new IdentifierAndKeywordChannel("[#@]?[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+((\\s+)?\\*)?",
+                        true, ObjectiveCKeyword.values()))
+                .withChannel(new PunctuatorChannel(ObjectiveCPunctuator.values()))
+                .withChannel(regexp(GenericTokenType.IDENTIFIER, "[^\\s]"))
+                .build();
+        Lexer lexer = Lexer.builder()
+                .withFailIfNoChannelToConsumeOneCharacter(true)
+                .withChannel(new WhitespaceChannel())
+                .withChannel(new ObjectiveCIdentifierChannel())
+                .withChannel(new ObjectiveCPunctuatorChannel())
+                .withChannel(regexp(GenericTokenType.IDENTIFIER, "[^\\s]"))
+                .build();
+        String source = "#import <UIKit/UIKit.h>\n@interface A_ : NSObject<B__1> { id *p; NSString\n  *s; }\n"
+                + "- (void)tableView:(UITableView *)tv didSelectRowAtIndexPath:(NSIndexPath*)ip;\n"
+                + "@end @1 #_x a_*b x->*y x.*y a<<=b>>=c&&=d||=e ->= selfish self @property(nonatomic) "
+                + "YES NO nil Class IMP SEL BOOL __block _x x__ 9a";
+        assertThat(CommentLexingBenchmark.describe(lexer.lex(source)),
+                equalTo(CommentLexingBenchmark.describe(genericLexer.lex(source))));
+        // Partial longer punctuators, up to the end of the code
+        String partial = "a..b |=| &&& <<< ->- x<<";
+        assertThat(CommentLexingBenchmark.describe(lexer.lex(partial)),
+                equalTo(CommentLexingBenchmark.describe(genericLexer.lex(partial))));
+        assertThat(CommentLexingBenchmark.describe(lexer.lex(new File("src/test/resources/Profile.m"))),
+                equalTo(CommentLexingBenchmark.describe(genericLexer.lex(new File("src/test/resources/Profile.m")))));
+    }
+
+    @Test
+    public void lexUnterminatedComment() {
+        List<Token> tokens = lexer.lex("/* a");
+        assertThat(tokens.get(0).hasTrivia(), equalTo(false));
+        assertThat(tokens, hasToken("/", ObjectiveCPunctuator.SLASH));
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * SonarQube Objective-C (Community) :: Squid
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.objectivec.lexer;
+
+import org.junit.Test;
+import org.sonar.objectivec.ObjectiveCConfiguration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+public class ThreadSafeLexerTest {
+    private static final int THREADS = 16;
+
+    @Test
+    public void lexCorpusFromManyThreads() throws Exception {
+        final List<File> files = corpus();
+        assertThat(files.size(), greaterThan(0));
+
+        ObjectiveCConfiguration conf = new ObjectiveCConfiguration(StandardCharsets.UTF_8);
+        final ThreadSafeLexer lexer = ObjectiveCLexer.createThreadSafe(conf);
+        List<String> expected = new ArrayList<>();
+        for (File file : files) {
+            expected.add(CommentLexingBenchmark.describe(ObjectiveCLexer.create(conf).lex(file)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final int offset = thread;
+                results.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws Exception {
+                        start.await();
+                        // Each thread goes through the whole corpus, starting at a different file
+                        String[] lexed = new String[files.size()];
+                        for (int i = 0; i < files.size(); i++) {
+                            int index = (i + offset) % files.size();
+                            lexed[index] = CommentLexingBenchmark.describe(lexer.lex(files.get(index)));
+                        }
+                        return Arrays.asList(lexed);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<List<String>> result : results) {
+                assertThat(result.get(), equalTo(expected));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<File> corpus() {
+        File projects = new File("../its/plugin/projects");
+        if (!projects.isDirectory()) {
+            projects = new File("src/test/resources");
+        }
+        List<File> files = new ArrayList<>();
+        addSources(projects, files);
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void addSources(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addSources(child, files);
+            } else if (child.getName().endsWith(".m") || child.getName().endsWith(".h")) {
+                files.add(child);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.objectivec;
 
+import org.sonar.api.PropertyType;
 import org.sonar.api.SonarPlugin;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
@@ -28,6 +29,13 @@ import org.sonar.plugins.objectivec.clang.ClangProfileImporter;
 import org.sonar.plugins.objectivec.clang.ClangRulesDefinition;
 import org.sonar.plugins.objectivec.clang.ClangSensor;
 import org.sonar.plugins.objectivec.cobertura.CoberturaSensor;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ChangedFiles;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.core.SourceExclusions;
+import org.sonar.plugins.objectivec.core.XmlReaders;
+import org.sonar.plugins.objectivec.cpd.CpdTokenCache;
 import org.sonar.plugins.objectivec.cpd.ObjectiveCCpdMapping;
 import org.sonar.plugins.objectivec.lizard.LizardRulesDefinition;
 import org.sonar.plugins.objectivec.lizard.LizardSensor;
@@ -53,9 +61,84 @@ public class ObjectiveCPlugin extends SonarPlugin {
                 .onQualifiers(Qualifiers.PROJECT)
                 .build());
 
+        extensions.add(SensorMetricsReporter.class);
+        extensions.add(PropertyDefinition.builder(SensorMetricsReporter.EXPORT_KEY)
+                .defaultValue("false")
+                .type(PropertyType.BOOLEAN)
+                .name("Export sensor metrics")
+                .description("Write the timings and counters of each Objective-C sensor to "
+                        + "<tt>objectivec-sensor-metrics.json</tt> in the working directory. They are always logged.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+
+        extensions.add(ChangedFiles.class);
+        extensions.add(PropertyDefinition.builder(ChangedFiles.CHANGED_FILES_KEY)
+                .name("Changed files")
+                .description("Path (absolute or relative) to a list of changed files, one per line, or to the output of "
+                        + "<tt>git diff</tt>. When set, only these files are analysed and reported on, which is meant "
+                        + "for pull request builds.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+        extensions.add(PropertyDefinition.builder(ChangedFiles.REPOSITORY_ROOT_KEY)
+                .name("Repository root")
+                .description("Path (absolute or relative) to the directory the paths of the changed files are "
+                        + "relative to, as git writes them. Defaults to the closest directory holding <tt>.git</tt> "
+                        + "from the project base directory up.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+        extensions.add(SourceExclusions.class);
+        extensions.add(PropertyDefinition.builder(SourceExclusions.EXCLUSIONS_KEY)
+                .name("Objective-C exclusions")
+                .description("Comma-separated list of vendored or generated sources left out of the Objective-C "
+                        + "analysis and report imports: <tt>Vendor/Lib/</tt> for a directory of the project, "
+                        + "<tt>**/Pods/</tt> for a directory name anywhere and <tt>*.pb.h</tt> for a file suffix. "
+                        + "Other patterns, such as <tt>Pods/**/*.h</tt>, are ignored with a warning. "
+                        + "Nothing is excluded by default; CocoaPods and Carthage projects usually set "
+                        + "<tt>**/Pods/,**/Carthage/,**/DerivedData/</tt>.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+        extensions.add(AnalysisScope.class);
+        extensions.add(ReportCache.class);
+        extensions.add(XmlReaders.class);
+        extensions.add(PropertyDefinition.builder(ReportCache.PATH_KEY)
+                .name("Report cache")
+                .description("Path (absolute or relative) to a directory kept between analyses, where the records read "
+                        + "from the Clang, OCLint, Lizard and Cobertura reports are cached. Reports which have not "
+                        + "changed are then replayed from it instead of being parsed, such as the Clang plists left "
+                        + "from a previous incremental build, and the records of deleted reports are dropped. Leave "
+                        + "empty to disable.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+
         extensions.add(ObjectiveCCpdMapping.class);
+        extensions.add(CpdTokenCache.class);
+        extensions.add(PropertyDefinition.builder(CpdTokenCache.PRE_TOKENIZE_KEY)
+                .defaultValue("false")
+                .type(PropertyType.BOOLEAN)
+                .name("Pre-tokenize for CPD")
+                .description("Lex the Objective-C files for duplication detection on all processors while the "
+                        + "squid sensor runs, instead of one file at a time in the CPD engine.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
 
         extensions.add(ObjectiveCSquidSensor.class);
+        extensions.add(PropertyDefinition.builder(ObjectiveCSquidSensor.MAX_FILE_SIZE_KEY)
+                .defaultValue(Long.toString(ObjectiveCSquidSensor.DEFAULT_MAX_FILE_SIZE))
+                .type(PropertyType.INTEGER)
+                .name("Maximum file size")
+                .description("Files larger than this size, in KB, are not parsed: only their lines are counted. "
+                        + "Leave to 0 to parse all files.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+        extensions.add(PropertyDefinition.builder(ObjectiveCSquidSensor.FILE_TIMEOUT_KEY)
+                .defaultValue(Long.toString(ObjectiveCSquidSensor.DEFAULT_FILE_TIMEOUT))
+                .type(PropertyType.INTEGER)
+                .name("Lexing timeout")
+                .description("Time, in milliseconds, allowed to lex a single file, not counting its parsing and "
+                        + "checks. Files taking longer are skipped and only their lines are counted. Leave to 0 "
+                        + "to disable.")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
         extensions.add(ObjectiveCProfile.class);
 
         extensions.add(ClangRulesDefinition.class);
@@ -68,6 +151,15 @@ public class ObjectiveCPlugin extends SonarPlugin {
                 .subCategory("Clang")
                 .onQualifiers(Qualifiers.PROJECT)
                 .build());
+        extensions.add(PropertyDefinition.builder(ClangSensor.RULE_MAPPINGS_KEY)
+                .type(PropertyType.TEXT)
+                .name("Rule mappings")
+                .description("Additional mappings of Clang warnings to rules, one <tt>checker or type=rule</tt> per line, "
+                        + "where <tt>*</tt> matches any characters. Checker names are used when the reports contain them "
+                        + "and take precedence over types.")
+                .subCategory("Clang")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
 
         extensions.add(CoberturaSensor.class);
         extensions.add(PropertyDefinition.builder(CoberturaSensor.REPORT_PATH_KEY)
@@ -81,7 +173,11 @@ public class ObjectiveCPlugin extends SonarPlugin {
         extensions.add(LizardRulesDefinition.class);
         extensions.add(PropertyDefinition.builder(LizardSensor.REPORT_PATH_KEY)
                 .name("Report path")
-                .description("Path (absolute or relative) to Lizard XML report file.")
+                .description("Path (absolute or relative) to Lizard XML or CSV report file, to a directory of them "
+                        + "or glob pattern of them, such as <tt>build/lizard/**/*.xml</tt>. The reports are parsed "
+                        + "concurrently; a file found in several of them keeps the measures of the report which "
+                        + "found the most functions in it. CSV reports only list functions, so files without "
+                        + "functions get no complexity measures from them.")
                 .subCategory("Complexity")
                 .onQualifiers(Qualifiers.PROJECT)
                 .build());
@@ -106,6 +202,16 @@ public class ObjectiveCPlugin extends SonarPlugin {
                 .subCategory("JUnit")
                 .onQualifiers(Qualifiers.PROJECT)
                 .build());
+        extensions.add(PropertyDefinition.builder(SurefireSensor.MAX_STACK_TRACE_LENGTH_KEY)
+                .defaultValue("0")
+                .type(PropertyType.INTEGER)
+                .name("Maximum stack trace length")
+                .description("Number of characters kept from the message and stack trace of each failed test. "
+                        + "When set, test cases are also saved as each report is read rather than all at the end, "
+                        + "which bounds memory on runs with many failures. 0 keeps them whole.")
+                .subCategory("JUnit")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
 
         return extensions;
     }
@@ -22,6 +22,8 @@ package org.sonar.plugins.objectivec;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.sonar.sslr.api.Grammar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FilePredicate;
@@ -30,45 +32,76 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.rule.Checks;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issuable.IssueBuilder;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.objectivec.ObjectiveCAstScanner;
 import org.sonar.objectivec.ObjectiveCConfiguration;
+import org.sonar.objectivec.SourceFileListener;
 import org.sonar.objectivec.api.ObjectiveCMetric;
 import org.sonar.objectivec.checks.CheckList;
 import org.sonar.objectivec.highlighter.SonarComponents;
 import org.sonar.plugins.objectivec.api.ObjectiveC;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.IdenticalFiles;
+import org.sonar.plugins.objectivec.core.MeasureBuffer;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.cpd.CpdTokenCache;
 import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.CheckMessage;
-import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.checks.SquidCheck;
-import org.sonar.squidbridge.indexer.QueryByType;
 
 import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 
 public class ObjectiveCSquidSensor implements Sensor {
+    public static final String MAX_FILE_SIZE_KEY = "sonar.objectivec.squid.maxFileSize";
+    public static final long DEFAULT_MAX_FILE_SIZE = 0L;
+    public static final String FILE_TIMEOUT_KEY = "sonar.objectivec.squid.fileTimeout";
+    public static final long DEFAULT_FILE_TIMEOUT = 0L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectiveCSquidSensor.class);
+
     private SensorContext context;
+    private SensorMetrics metrics;
+    private MeasureBuffer measureBuffer;
+    private Map<File, List<File>> identicalFiles;
 
     private final Checks<SquidCheck<Grammar>> checks;
     private final FileSystem fileSystem;
     private final FilePredicate mainFilePredicates;
     private final PathResolver pathResolver;
     private final ResourcePerspectives resourcePerspectives;
+    private final SensorMetricsReporter metricsReporter;
+    private final Settings settings;
+    private final CpdTokenCache cpdTokenCache;
+    private final AnalysisScope analysisScope;
 
     public ObjectiveCSquidSensor(CheckFactory checkFactory, FileSystem fileSystem,
-            ResourcePerspectives resourcePerspectives, PathResolver pathResolver) {
+            ResourcePerspectives resourcePerspectives, PathResolver pathResolver,
+            SensorMetricsReporter metricsReporter, Settings settings, CpdTokenCache cpdTokenCache,
+            AnalysisScope analysisScope) {
         this.checks = checkFactory
                 .<SquidCheck<Grammar>>create(CheckList.REPOSITORY_KEY)
                 .addAnnotatedChecks(CheckList.getChecks());
@@ -78,6 +111,10 @@ public class ObjectiveCSquidSensor implements Sensor {
                 fileSystem.predicates().hasType(InputFile.Type.MAIN));
         this.pathResolver = pathResolver;
         this.resourcePerspectives = resourcePerspectives;
+        this.metricsReporter = metricsReporter;
+        this.settings = settings;
+        this.cpdTokenCache = cpdTokenCache;
+        this.analysisScope = analysisScope;
     }
 
     @Override
@@ -88,46 +125,204 @@ public class ObjectiveCSquidSensor implements Sensor {
     @Override
     public void analyse(Project project, SensorContext context) {
         this.context = context;
+        this.metrics = metricsReporter.start(toString());
+        this.measureBuffer = new MeasureBuffer(context, metrics);
+        try {
+            scan();
+        } finally {
+            metricsReporter.finish(metrics);
+        }
+    }
+
+    private void scan() {
+        ObjectiveCConfiguration configuration = createConfiguration();
 
         List<SquidAstVisitor<Grammar>> visitors = Lists.<SquidAstVisitor<Grammar>>newArrayList(checks.all());
 
+        SonarComponents sonarComponents = new SonarComponents(resourcePerspectives, fileSystem);
+
+        // Measures and issues are saved as soon as each file is scanned
         @SuppressWarnings("unchecked") AstScanner<Grammar> scanner = ObjectiveCAstScanner.create(
-                createConfiguration(), new SonarComponents(resourcePerspectives, fileSystem),
-                visitors.toArray(new SquidAstVisitor[visitors.size()]));
+                configuration, sonarComponents, new SourceFileListener() {
+                    @Override
+                    public void fileScanned(File file, SourceFile sourceFile, boolean parsed) {
+                        save(file, sourceFile, parsed);
+                    }
+                }, visitors.toArray(new SquidAstVisitor[visitors.size()]));
+
+        List<File> files = new ArrayList<>();
+        List<File> oversizedFiles = new ArrayList<>();
+        for (File file : ImmutableList.copyOf(fileSystem.files(mainFilePredicates))) {
+            if (!analysisScope.contains(file)) {
+                metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+                continue;
+            }
+            long length = file.length();
+            metrics.add(SensorMetrics.BYTES, length);
+            if (configuration.getMaxFileSize() > 0 && length > configuration.getMaxFileSize()) {
+                LOGGER.warn("{} is larger than {} KB: only its lines are counted", file,
+                        configuration.getMaxFileSize() / 1024);
+                oversizedFiles.add(file);
+            } else {
+                files.add(file);
+            }
+        }
+        metrics.add(SensorMetrics.FILES, files.size() + oversizedFiles.size());
 
-        scanner.scanFiles(ImmutableList.copyOf(fileSystem.files(mainFilePredicates)));
+        if (cpdTokenCache.isEnabled()) {
+            cpdTokenCache.start(files);
+        }
 
-        Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-        save(squidSourceFiles);
+        // Copies of a file get the results of the file instead of being scanned
+        identicalFiles = IdenticalFiles.find(files);
+        if (!identicalFiles.isEmpty()) {
+            Set<File> copies = new HashSet<>();
+            for (Map.Entry<File, List<File>> entry : identicalFiles.entrySet()) {
+                copies.addAll(entry.getValue());
+                List<InputFile> copyInputFiles = new ArrayList<>();
+                for (File copy : entry.getValue()) {
+                    InputFile copyInputFile = sonarComponents.inputFileFor(copy);
+                    if (copyInputFile != null) {
+                        copyInputFiles.add(copyInputFile);
+                    }
+                }
+                sonarComponents.addCopies(entry.getKey(), copyInputFiles);
+            }
+            List<File> originals = new ArrayList<>(files.size() - copies.size());
+            for (File file : files) {
+                if (!copies.contains(file)) {
+                    originals.add(file);
+                }
+            }
+            files = originals;
+            metrics.add(SensorMetrics.IDENTICAL_FILES, copies.size());
+            LOGGER.info("{} files are identical to another one and are not scanned", copies.size());
+        }
+
+        long start = System.nanoTime();
+        long savingNanos = metrics.getTime(SensorMetrics.RESOLVE) + metrics.getTime(SensorMetrics.PERSIST);
+        scanner.scanFiles(files);
+        savingNanos = metrics.getTime(SensorMetrics.RESOLVE) + metrics.getTime(SensorMetrics.PERSIST) - savingNanos;
+        metrics.addTime(SensorMetrics.PARSE, System.nanoTime() - start - savingNanos);
+
+        for (File file : oversizedFiles) {
+            saveLinesOnly(file);
+        }
+        measureBuffer.flush();
+        cpdTokenCache.await();
     }
 
     private ObjectiveCConfiguration createConfiguration() {
-        return new ObjectiveCConfiguration(fileSystem.encoding());
+        ObjectiveCConfiguration configuration = new ObjectiveCConfiguration(fileSystem.encoding());
+        configuration.setMaxFileSize(getLongSetting(MAX_FILE_SIZE_KEY, DEFAULT_MAX_FILE_SIZE) * 1024L);
+        configuration.setFileTimeout(getLongSetting(FILE_TIMEOUT_KEY, DEFAULT_FILE_TIMEOUT));
+        return configuration;
+    }
+
+    private long getLongSetting(String key, long defaultValue) {
+        return settings.hasKey(key) ? Math.max(0L, settings.getLong(key)) : defaultValue;
     }
 
-    private void save(Collection<SourceCode> squidSourceFiles) {
-        for (SourceCode squidSourceFile : squidSourceFiles) {
-            SourceFile squidFile = (SourceFile) squidSourceFile;
+    @Nullable
+    private InputFile resolve(File file) {
+        long start = System.nanoTime();
+        String relativePath = pathResolver.relativePath(fileSystem.baseDir(), file);
+        InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasRelativePath(relativePath));
+        metrics.addTimeSince(SensorMetrics.RESOLVE, start);
+        return inputFile;
+    }
+
+    void save(File file, SourceFile squidFile, boolean parsed) {
+        saveScanned(file, squidFile, parsed);
+        List<File> copies = identicalFiles.get(file);
+        if (copies != null) {
+            for (File copy : copies) {
+                saveScanned(copy, squidFile, parsed);
+            }
+        }
+    }
+
+    private void saveScanned(File file, SourceFile squidFile, boolean parsed) {
+        if (!parsed) {
+            // Squid measures are incomplete for a file that could not be parsed
+            saveLinesOnly(file);
+            return;
+        }
 
-            String relativePath = pathResolver.relativePath(fileSystem.baseDir(), new File(squidFile.getKey()));
-            InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasRelativePath(relativePath));
+        InputFile inputFile = resolve(file);
 
-            /*
-             * Distribution is saved in the Lizard sensor and therefore it is not possible to save the complexity
-             * distribution here. The functionality has been moved to LizardParser.
-            */
-            //saveFilesComplexityDistribution(sonarFile, squidFile);
-            //saveFunctionsComplexityDistribution(sonarFile, squidFile);
+        /*
+         * Distribution is saved in the Lizard sensor and therefore it is not possible to save the complexity
+         * distribution here. The functionality has been moved to LizardParser.
+        */
+        //saveFilesComplexityDistribution(sonarFile, squidFile);
+        //saveFunctionsComplexityDistribution(sonarFile, squidFile);
+        long start = System.nanoTime();
+        if (inputFile != null) {
             saveMeasures(inputFile, squidFile);
-            saveViolations(inputFile, squidFile);
+        } else {
+            metrics.increment(SensorMetrics.UNRESOLVED_PATHS);
         }
+        saveViolations(inputFile, squidFile);
+        metrics.addTimeSince(SensorMetrics.PERSIST, start);
+    }
+
+    /**
+     * Cheap pass for files that are not, or could not be, parsed: saves their number of lines and nothing else.
+     */
+    private void saveLinesOnly(File file) {
+        metrics.increment(SensorMetrics.SKIPPED_FILES);
+        InputFile inputFile = resolve(file);
+        if (inputFile == null) {
+            metrics.increment(SensorMetrics.UNRESOLVED_PATHS);
+            return;
+        }
+
+        long start = System.nanoTime();
+        int lines;
+        try {
+            lines = countLines(file);
+        } catch (IOException e) {
+            LOGGER.error("Unable to count the lines of " + file, e);
+            return;
+        } finally {
+            metrics.addTimeSince(SensorMetrics.PARSE, start);
+        }
+
+        start = System.nanoTime();
+        saveMeasure(inputFile, CoreMetrics.FILES, 1);
+        saveMeasure(inputFile, CoreMetrics.LINES, lines);
+        metrics.addTimeSince(SensorMetrics.PERSIST, start);
+    }
+
+    /**
+     * Same count as the editors: a final line break does not start a new line.
+     */
+    static int countLines(File file) throws IOException {
+        int lines = 0;
+        byte last = '\n';
+        byte[] buffer = new byte[8192];
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                if (read > 0) {
+                    last = buffer[read - 1];
+                }
+            }
+        }
+        return last == '\n' ? lines : lines + 1;
     }
 
     private void saveMeasures(InputFile inputFile, SourceFile squidFile) {
-        context.saveMeasure(inputFile, CoreMetrics.FILES, squidFile.getDouble(ObjectiveCMetric.FILES));
-        context.saveMeasure(inputFile, CoreMetrics.LINES, squidFile.getDouble(ObjectiveCMetric.LINES));
-        context.saveMeasure(inputFile, CoreMetrics.NCLOC, squidFile.getDouble(ObjectiveCMetric.LINES_OF_CODE));
-        context.saveMeasure(inputFile, CoreMetrics.COMMENT_LINES, squidFile.getDouble(ObjectiveCMetric.COMMENT_LINES));
+        saveMeasure(inputFile, CoreMetrics.FILES, squidFile.getDouble(ObjectiveCMetric.FILES));
+        saveMeasure(inputFile, CoreMetrics.LINES, squidFile.getDouble(ObjectiveCMetric.LINES));
+        saveMeasure(inputFile, CoreMetrics.NCLOC, squidFile.getDouble(ObjectiveCMetric.LINES_OF_CODE));
+        saveMeasure(inputFile, CoreMetrics.COMMENT_LINES, squidFile.getDouble(ObjectiveCMetric.COMMENT_LINES));
         /*
          * Not implemented
          */
@@ -143,6 +338,10 @@ public class ObjectiveCSquidSensor implements Sensor {
         //context.saveMeasure(inputFile, CoreMetrics.COMPLEXITY, squidFile.getDouble(ObjectiveCMetric.COMPLEXITY));
     }
 
+    private void saveMeasure(InputFile inputFile, Metric metric, double value) {
+        measureBuffer.add(inputFile, metric, value);
+    }
+
     private void saveViolations(@Nullable InputFile inputFile, SourceFile squidFile) {
         Collection<CheckMessage> messages = squidFile.getCheckMessages();
 
@@ -166,6 +365,7 @@ public class ObjectiveCSquidSensor implements Sensor {
                     }
 
                     issuable.addIssue(issueBuilder.build());
+                    metrics.increment(SensorMetrics.ISSUES);
                 }
             }
         }
@@ -0,0 +1,65 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.clang;
+
+import org.sonar.plugins.objectivec.core.LongHashSet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the (file, line, type) of the warnings reported so far. scan-build writes one report per translation
+ * unit, so a problem in a header comes back once for each implementation file including it.
+ * <p>
+ * Keys are packed into a long: 32 bits of file id, 12 bits of type id and 20 bits of line. Warnings that do not fit
+ * are never considered duplicates.
+ */
+final class ClangDuplicateFilter {
+    private static final int LINE_BITS = 20;
+    private static final int TYPE_BITS = 12;
+    private static final int MAX_LINE = (1 << LINE_BITS) - 1;
+    private static final int MAX_TYPE_ID = (1 << TYPE_BITS) - 1;
+
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final LongHashSet reported = new LongHashSet(1024);
+
+    /**
+     * @param file resolved file of the warning, which identifies it whatever path the report used
+     * @return false if a warning of this type was already reported at this line of this file
+     */
+    boolean isNew(String file, int line, String type) {
+        int typeId = id(typeIds, type);
+        if (line < 0 || line > MAX_LINE || typeId > MAX_TYPE_ID) {
+            return true;
+        }
+        long key = ((long) id(fileIds, file) << (LINE_BITS + TYPE_BITS)) | ((long) typeId << LINE_BITS) | line;
+        return reported.add(key);
+    }
+
+    private static int id(Map<String, Integer> ids, String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = ids.size();
+            ids.put(value, id);
+        }
+        return id;
+    }
+}
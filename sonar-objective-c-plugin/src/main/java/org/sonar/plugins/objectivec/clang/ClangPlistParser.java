@@ -19,49 +19,115 @@
  */
 package org.sonar.plugins.objectivec.clang;
 
+import com.dd.plist.NSArray;
+import com.dd.plist.NSDictionary;
+import com.dd.plist.NSNumber;
+import com.dd.plist.NSObject;
 import com.dd.plist.PropertyListFormatException;
 import com.dd.plist.XMLPropertyListParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.XmlParserException;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
+ * Streams the diagnostics of Clang plist reports to a consumer, one report at a time.
+ *
  * @author Matthew DeTullio
  */
 public final class ClangPlistParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClangPlistParser.class);
 
+    private static final String CACHE_NAME = "clang";
+    private static final int END_TAG = 0;
+    private static final int WARNING_TAG = 1;
+
     private ClangPlistParser() {
         // Prevents outside instantiation
     }
 
-    public static List<ClangWarning> parse(final File reportsDir) {
-        List<ClangWarning> result = new ArrayList<>();
-
+    /**
+     * @param analysisScope warnings on files out of this scope are skipped without being passed to the consumer
+     * @param reportCache   reports which have not changed since they were cached are replayed from it, so that
+     *                      only the plists added or modified since the previous analysis are parsed
+     */
+    static void parse(final File reportsDir, final AnalysisScope analysisScope, final ReportCache reportCache,
+            final SensorMetrics metrics, final Consumer<ClangWarning> consumer) {
         List<Path> reports = getReports(reportsDir);
 
+        // Only a few dozen categories and types exist, shared by all reports
+        Map<String, String> strings = new HashMap<>();
+
         for (Path reportPath : reports) {
-            try {
-                result.addAll(parsePlist(reportPath.toFile()));
+            File report = reportPath.toFile();
+            metrics.increment(SensorMetrics.FILES);
+            metrics.add(SensorMetrics.BYTES, report.length());
+
+            ReportCache.Reader cached = reportCache.read(CACHE_NAME, report);
+            if (cached != null) {
+                metrics.increment(SensorMetrics.CACHED_REPORTS);
+                replay(report, cached, analysisScope, metrics, consumer);
+                continue;
+            }
+
+            try (ReportCache.Writer cacheWriter = reportCache.write(CACHE_NAME, report)) {
+                if (parsePlist(report, analysisScope, strings, metrics, cacheWriter, consumer)) {
+                    cacheWriter.writeTag(END_TAG);
+                    cacheWriter.commit();
+                }
             } catch (Exception e) {
                 throw new XmlParserException("Unable to parse Clang reports", e);
             }
         }
+    }
 
-        return result;
+    /**
+     * Emits the warnings of a previous parse of the report which are in the scope.
+     */
+    private static void replay(final File report, final ReportCache.Reader cached, final AnalysisScope analysisScope,
+            final SensorMetrics metrics, final Consumer<ClangWarning> consumer) {
+        // Files of the report, the ones out of scope mapped to null
+        Map<String, File> files = new HashMap<>();
+        try (ReportCache.Reader reader = cached) {
+            while (reader.readTag() != END_TAG) {
+                String category = reader.readString();
+                String path = reader.readString();
+                int line = reader.readInt();
+                String type = reader.readString();
+                String checkName = reader.readString();
+
+                File file = files.get(path);
+                if (file == null && !files.containsKey(path)) {
+                    file = analysisScope.contains(path) ? new File(path) : null;
+                    files.put(path, file);
+                }
+                if (file == null) {
+                    metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+                } else {
+                    consumer.accept(new ClangWarning(category, file, line, type, checkName));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to replay the cached warnings of " + report, e);
+        }
     }
 
     private static List<Path> getReports(final File reportsDir) {
@@ -76,48 +142,79 @@ public final class ClangPlistParser {
     }
 
     private static boolean isPlistFile(Path path) {
-        return path.getFileName().toString().endsWith(".plist");
+        return ReportInput.hasExtension(path.getFileName().toString(), ".plist");
     }
 
-    @SuppressWarnings("unchecked")
-    private static List<ClangWarning> parsePlist(final File file) {
-        List<ClangWarning> result = new ArrayList<>();
+    /**
+     * @return whether the report could be read
+     */
+    private static boolean parsePlist(final File file, final AnalysisScope analysisScope,
+            final Map<String, String> strings, final SensorMetrics metrics, final ReportCache.Writer cacheWriter,
+            final Consumer<ClangWarning> consumer) {
+        NSDictionary report;
+        try (InputStream in = ReportInput.open(file)) {
+            // Clang report is NSDictionary
+            report = (NSDictionary) XMLPropertyListParser.parse(in);
+        } catch (final IOException | ParserConfigurationException | ParseException | SAXException | PropertyListFormatException e) {
+            LOGGER.error("Error processing file named {}", file, e);
+            metrics.increment(SensorMetrics.SKIPPED_FILES);
+            return false;
+        }
 
-        try {
-            // Clang report is NSDictionary, which converts to a Map
-            Map<String, Object> report =
-                    (Map<String, Object>) XMLPropertyListParser.parse(file).toJavaObject();
-
-            // Files reported on in this report
-            List<String> files = new ArrayList<>();
-            for (Object obj : (Object[]) report.get("files")) {
-                files.add((String) obj);
+        // Files reported on in this report, shared by its warnings; those out of scope are left null
+        NSObject[] fileNames = ((NSArray) report.objectForKey("files")).getArray();
+        String[] paths = new String[fileNames.length];
+        File[] files = new File[fileNames.length];
+        for (int i = 0; i < fileNames.length; i++) {
+            paths[i] = fileNames[i].toString();
+            if (analysisScope.contains(paths[i])) {
+                files[i] = new File(paths[i]);
             }
+        }
 
-            // Diagnostics which contain the warning and the execution path
-            // (we're only interested in the final location)
-            List<Map<String, Object>> diagnostics = new ArrayList<>();
-            for (Object obj : (Object[]) report.get("diagnostics")) {
-                diagnostics.add((Map<String, Object>) obj);
+        // Diagnostics which contain the warning and the execution path
+        // (we're only interested in the final location)
+        for (NSObject obj : ((NSArray) report.objectForKey("diagnostics")).getArray()) {
+            NSDictionary diagnostic = (NSDictionary) obj;
+            NSDictionary location = (NSDictionary) diagnostic.objectForKey("location");
+
+            // file is an integer representing the index of the file in the files array
+            int fileIndex = ((NSNumber) location.objectForKey("file")).intValue();
+            File warningFile = files[fileIndex];
+            if (warningFile == null) {
+                metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+                if (!cacheWriter.isEnabled()) {
+                    continue;
+                }
             }
-
-            // Extract warning type, line number, and file, then add to results
-            for (Map<String, Object> diagnostic : diagnostics) {
-                Map<String, Object> location = (Map<String, Object>) diagnostic.get("location");
-
-                ClangWarning clangWarning = new ClangWarning();
-                clangWarning.setCategory((String) diagnostic.get("category"));
-                // file is an integer representing the index of the file in the files array
-                clangWarning.setFile(new File(files.get((Integer) location.get("file"))));
-                clangWarning.setLine((Integer) location.get("line"));
-                clangWarning.setType((String) diagnostic.get("type"));
-
-                result.add(clangWarning);
+            int line = ((NSNumber) location.objectForKey("line")).intValue();
+
+            String category = intern(strings, diagnostic.objectForKey("category"));
+            String type = intern(strings, diagnostic.objectForKey("type"));
+            NSObject checkNameObject = diagnostic.objectForKey("check_name");
+            String checkName = checkNameObject == null ? null : intern(strings, checkNameObject);
+
+            // Warnings are cached before being checked against the scope, which changes from one build to the next
+            cacheWriter.writeTag(WARNING_TAG);
+            cacheWriter.writeString(category);
+            cacheWriter.writeString(paths[fileIndex]);
+            cacheWriter.writeInt(line);
+            cacheWriter.writeString(type);
+            cacheWriter.writeString(checkName);
+            if (warningFile != null) {
+                consumer.accept(new ClangWarning(category, warningFile, line, type, checkName));
             }
-        } catch (final IOException | ParserConfigurationException | ParseException | SAXException | PropertyListFormatException e) {
-            LOGGER.error("Error processing file named {}", file, e);
         }
+        return true;
+    }
 
-        return result;
+    private static String intern(Map<String, String> strings, NSObject value) {
+        String string = value.toString();
+        String interned = strings.get(string);
+        if (interned == null) {
+            strings.put(string, string);
+            interned = string;
+        }
+        return interned;
     }
 }
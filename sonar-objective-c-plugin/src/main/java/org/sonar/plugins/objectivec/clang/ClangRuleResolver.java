@@ -0,0 +1,207 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.clang;
+
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.rule.RuleKey;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the rule of a Clang warning from its checker name or, for reports without <code>check_name</code>, from its
+ * type. Exact mappings given in {@link ClangSensor#RULE_MAPPINGS_KEY} override the built-in ones, mappings with
+ * wildcards are tried next, and what is left goes to the <code>other</code> rule. Resolutions are cached, so each
+ * distinct checker and type is looked up once.
+ */
+final class ClangRuleResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClangRuleResolver.class);
+
+    static final String OTHER_RULE = "other";
+
+    // Maximum number of unmapped types listed when logging
+    private static final int MAX_LOGGED_TYPES = 20;
+
+    /**
+     * Report types not in {@link ClangRulesDefinition#REPORT_TYPE_TO_RULE_MAP}, for reports without checker names.
+     */
+    static final Map<String, String> EXTRA_REPORT_TYPE_TO_RULE_MAP = ImmutableMap.<String, String>builder()
+            .put("Argument for property setter is an uninitialized value", "core.CallAndMessage")
+            .put("Called function pointer is an uninitialized pointer value", "core.CallAndMessage")
+            .put("Called function pointer is null (null dereference)", "core.CallAndMessage")
+            .put("Receiver in message expression is an uninitialized value", "core.CallAndMessage")
+            .put("Dead nested assignment", "deadcode.DeadStores")
+            .put("Bad return type when passing CFErrorRef*", "osx.cocoa.NSError")
+            .put("Bad release", "osx.cocoa.RetainCount")
+            .put("Leak of returned object", "osx.cocoa.RetainCount")
+            .put("Method should return an owned object", "osx.cocoa.RetainCount")
+            .put("Object autoreleased too many times", "osx.cocoa.RetainCount")
+            .put("Use-after-release", "osx.cocoa.RetainCount")
+            .build();
+
+    /**
+     * Checkers whose warnings belong to a rule named differently.  Checkers named like a rule need no entry.
+     */
+    static final Map<String, String> CHECK_NAME_TO_RULE_MAP = ImmutableMap.<String, String>builder()
+            .put("core.uninitialized.ArraySubscript", "core.uninitialized.Assign")
+            .put("core.uninitialized.CapturedBlockVariable", "core.uninitialized.Assign")
+            .put("osx.coreFoundation.CFError", "osx.cocoa.NSError")
+            .put("osx.cocoa.RetainCountBase", "osx.cocoa.RetainCount")
+            .put("osx.cocoa.ClassRelease", "osx.cocoa.RetainCount")
+            .build();
+
+    private final Map<String, RuleKey> ruleKeys = new HashMap<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final List<RuleKey> patternRuleKeys = new ArrayList<>();
+    private final Map<String, RuleKey> exactMappings = new HashMap<>();
+    private final Map<String, RuleKey> resolved = new HashMap<>();
+    private final Map<String, Integer> unmappedTypes = new TreeMap<>();
+
+    private int unmappedWarnings;
+
+    /**
+     * @param mappings lines of <code>checker or type=rule</code>, where <code>*</code> matches any characters
+     */
+    ClangRuleResolver(String[] mappings) {
+        for (String mapping : mappings) {
+            int separator = mapping.lastIndexOf('=');
+            if (separator <= 0 || separator == mapping.length() - 1) {
+                if (!mapping.trim().isEmpty()) {
+                    LOGGER.warn("Ignoring Clang rule mapping '{}': expected <checker or type>=<rule>", mapping);
+                }
+                continue;
+            }
+            String source = mapping.substring(0, separator).trim();
+            RuleKey ruleKey = ruleKey(mapping.substring(separator + 1).trim());
+            if (source.indexOf('*') < 0) {
+                exactMappings.put(source, ruleKey);
+            } else {
+                patterns.add(Pattern.compile(wildcardToRegexp(source)));
+                patternRuleKeys.add(ruleKey);
+            }
+        }
+
+        Map<String, String> builtIn = new HashMap<>();
+        builtIn.putAll(ClangRulesDefinition.REPORT_TYPE_TO_RULE_MAP);
+        builtIn.putAll(EXTRA_REPORT_TYPE_TO_RULE_MAP);
+        builtIn.putAll(CHECK_NAME_TO_RULE_MAP);
+        for (String rule : ClangRulesDefinition.REPORT_TYPE_TO_RULE_MAP.values()) {
+            builtIn.put(rule, rule);
+        }
+        for (Map.Entry<String, String> entry : builtIn.entrySet()) {
+            if (!exactMappings.containsKey(entry.getKey())) {
+                exactMappings.put(entry.getKey(), ruleKey(entry.getValue()));
+            }
+        }
+    }
+
+    RuleKey resolve(@Nullable String checkName, String type) {
+        String key = checkName == null ? type : (checkName + '\n' + type);
+        RuleKey ruleKey = resolved.get(key);
+        if (ruleKey == null) {
+            ruleKey = lookup(checkName, type);
+            resolved.put(key, ruleKey);
+        }
+        if (OTHER_RULE.equals(ruleKey.rule())) {
+            unmappedWarnings++;
+            Integer count = unmappedTypes.get(type);
+            unmappedTypes.put(type, count == null ? 1 : count + 1);
+        }
+        return ruleKey;
+    }
+
+    /**
+     * @return number of warnings resolved to the default rule
+     */
+    int getUnmappedWarnings() {
+        return unmappedWarnings;
+    }
+
+    /**
+     * @return number of warnings resolved to the default rule, by type, sorted by type
+     */
+    Map<String, Integer> getUnmappedTypes() {
+        return Collections.unmodifiableMap(unmappedTypes);
+    }
+
+    /**
+     * Logs the warnings reported on the default rule once, grouped by type.
+     */
+    void logUnmapped() {
+        if (unmappedWarnings == 0) {
+            return;
+        }
+        LOGGER.info("{} Clang warnings of {} types are not mapped to a rule -- using default rule '{}'",
+                unmappedWarnings, unmappedTypes.size(), OTHER_RULE);
+        if (LOGGER.isDebugEnabled()) {
+            int logged = 0;
+            for (Map.Entry<String, Integer> entry : unmappedTypes.entrySet()) {
+                if (logged++ == MAX_LOGGED_TYPES) {
+                    LOGGER.debug("  ... and {} more types", unmappedTypes.size() - MAX_LOGGED_TYPES);
+                    break;
+                }
+                LOGGER.debug("  {} x '{}'", entry.getValue(), entry.getKey());
+            }
+        }
+    }
+
+    private RuleKey lookup(@Nullable String checkName, String type) {
+        RuleKey ruleKey = checkName == null ? null : exactMappings.get(checkName);
+        if (ruleKey == null) {
+            ruleKey = exactMappings.get(type);
+        }
+        for (int i = 0; ruleKey == null && i < patterns.size(); i++) {
+            Pattern pattern = patterns.get(i);
+            if ((checkName != null && pattern.matcher(checkName).matches()) || pattern.matcher(type).matches()) {
+                ruleKey = patternRuleKeys.get(i);
+            }
+        }
+        return ruleKey == null ? ruleKey(OTHER_RULE) : ruleKey;
+    }
+
+    private RuleKey ruleKey(String rule) {
+        RuleKey ruleKey = ruleKeys.get(rule);
+        if (ruleKey == null) {
+            ruleKey = RuleKey.of(ClangRulesDefinition.REPOSITORY_KEY, rule);
+            ruleKeys.put(rule, ruleKey);
+        }
+        return ruleKey;
+    }
+
+    private static String wildcardToRegexp(String wildcard) {
+        StringBuilder regexp = new StringBuilder();
+        String[] parts = wildcard.split("\\*", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regexp.append(".*");
+            }
+            regexp.append(Pattern.quote(parts[i]));
+        }
+        return regexp.toString();
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableMap;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
 import org.sonar.plugins.objectivec.api.ObjectiveC;
+import org.sonar.plugins.objectivec.core.RulesSnapshot;
 import org.sonar.squidbridge.rules.SqaleXmlLoader;
 
 import java.util.Map;
@@ -53,12 +54,29 @@ public final class ClangRulesDefinition implements RulesDefinition {
             .put("Uninitialized argument value", "core.CallAndMessage") // Logic error
             .build();
 
+    /**
+     * Class path of the snapshot of the rules, generated from their XML files by {@code RulesSnapshotGenerator} in
+     * builds with the <tt>rules-snapshots</tt> profile.
+     */
+    public static final String SNAPSHOT_RESOURCE = "/org/sonar/plugins/objectivec/rules-clang.bin";
+
     @Override
     public void define(Context context) {
         NewRepository repository = context
                 .createRepository(REPOSITORY_KEY, ObjectiveC.KEY)
                 .setName(REPOSITORY_NAME);
 
+        if (!RulesSnapshot.load(repository, SNAPSHOT_RESOURCE)) {
+            loadXml(repository);
+        }
+
+        repository.done();
+    }
+
+    /**
+     * Loads the rules and their debt from the XML files the snapshot is generated from.
+     */
+    public static void loadXml(NewRepository repository) {
         RulesDefinitionXmlLoader ruleLoader = new RulesDefinitionXmlLoader();
         ruleLoader.load(
                 repository,
@@ -66,7 +84,5 @@ public final class ClangRulesDefinition implements RulesDefinition {
                 "UTF-8");
 
         SqaleXmlLoader.load(repository, "/com/sonar/sqale/clang-model.xml");
-
-        repository.done();
     }
 }
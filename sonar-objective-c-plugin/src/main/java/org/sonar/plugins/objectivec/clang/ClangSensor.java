@@ -32,11 +32,17 @@ import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
-import org.sonar.api.rule.RuleKey;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ImportPipeline;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
 
+import javax.annotation.CheckForNull;
 import java.io.File;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author Matthew DeTullio
@@ -45,18 +51,27 @@ public final class ClangSensor implements Sensor {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClangSensor.class.getName());
 
     public static final String REPORTS_PATH_KEY = "sonar.objectivec.clang.reportsPath";
+    public static final String RULE_MAPPINGS_KEY = "sonar.objectivec.clang.ruleMappings";
 
     private final FileSystem fileSystem;
     private final PathResolver pathResolver;
     private final ResourcePerspectives resourcePerspectives;
     private final Settings settings;
+    private final SensorMetricsReporter metricsReporter;
+    private final AnalysisScope analysisScope;
+    private final ReportCache reportCache;
 
     public ClangSensor(final FileSystem fileSystem, final PathResolver pathResolver,
-            final ResourcePerspectives resourcePerspectives, final Settings settings) {
+            final ResourcePerspectives resourcePerspectives, final Settings settings,
+            final SensorMetricsReporter metricsReporter, final AnalysisScope analysisScope,
+            final ReportCache reportCache) {
         this.fileSystem = fileSystem;
         this.pathResolver = pathResolver;
         this.resourcePerspectives = resourcePerspectives;
         this.settings = settings;
+        this.metricsReporter = metricsReporter;
+        this.analysisScope = analysisScope;
+        this.reportCache = reportCache;
     }
 
     @Override
@@ -74,45 +89,73 @@ public final class ClangSensor implements Sensor {
             return;
         }
 
-        collect(context, reportsDir);
+        SensorMetrics metrics = metricsReporter.start(toString());
+        try {
+            collect(context, reportsDir, metrics);
+        } finally {
+            metricsReporter.finish(metrics);
+        }
     }
 
-    protected void collect(SensorContext context, File reportsDir) {
+    protected void collect(SensorContext context, File reportsDir, SensorMetrics metrics) {
         LOGGER.info("parsing {}", reportsDir);
 
-        List<ClangWarning> clangWarnings = ClangPlistParser.parse(reportsDir);
+        // Reports name the same files over and over
+        Map<String, InputFile> inputFiles = new HashMap<>();
+        ClangDuplicateFilter duplicateFilter = new ClangDuplicateFilter();
+        ClangRuleResolver ruleResolver = new ClangRuleResolver(settings.getStringLines(RULE_MAPPINGS_KEY));
+
+        new ImportPipeline<ClangWarning, ResolvedWarning>(metrics).run(
+                sink -> ClangPlistParser.parse(reportsDir, analysisScope, reportCache, metrics, sink),
+                clangWarning -> resolve(context, clangWarning, inputFiles, duplicateFilter, metrics),
+                resolvedWarning -> save(resolvedWarning, ruleResolver, metrics));
+
+        if (metrics.get(SensorMetrics.DUPLICATES) > 0) {
+            LOGGER.info("Ignored {} Clang warnings reported more than once", metrics.get(SensorMetrics.DUPLICATES));
+        }
+        ruleResolver.logUnmapped();
+    }
+
+    @CheckForNull
+    private ResolvedWarning resolve(SensorContext context, ClangWarning clangWarning,
+            Map<String, InputFile> inputFiles, ClangDuplicateFilter duplicateFilter, SensorMetrics metrics) {
+        String path = clangWarning.getFile().getPath();
+        InputFile inputFile = inputFiles.get(path);
+        if (inputFile == null && !inputFiles.containsKey(path)) {
+            inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(path));
+            inputFiles.put(path, inputFile);
+        }
+        final Resource resource = inputFile == null ? null : context.getResource(inputFile);
 
-        for (ClangWarning clangWarning : clangWarnings) {
-            String type = clangWarning.getType();
-            String ruleKeyName;
+        if (resource == null) {
+            LOGGER.debug("Skipping file (not found in index): {}", path);
+            metrics.increment(SensorMetrics.UNRESOLVED_PATHS);
+            return null;
+        }
 
-            if (ClangRulesDefinition.REPORT_TYPE_TO_RULE_MAP.containsKey(type)) {
-                ruleKeyName = ClangRulesDefinition.REPORT_TYPE_TO_RULE_MAP.get(type);
-            } else {
-                ruleKeyName = "other";
-                LOGGER.debug("Type '{}' is not mapped to a rule -- using default rule '{}'", type, ruleKeyName);
-            }
+        if (!duplicateFilter.isNew(inputFile.absolutePath(), clangWarning.getLine(), clangWarning.getType())) {
+            metrics.increment(SensorMetrics.DUPLICATES);
+            return null;
+        }
 
-            final InputFile inputFile =
-                    fileSystem.inputFile(fileSystem.predicates().hasPath(clangWarning.getFile().getPath()));
-            final Resource resource = inputFile == null ? null : context.getResource(inputFile);
+        return new ResolvedWarning(clangWarning, resource);
+    }
 
-            if (resource == null) {
-                LOGGER.debug("Skipping file (not found in index): {}", clangWarning.getFile().getPath());
-                continue;
-            }
+    private void save(ResolvedWarning resolvedWarning, ClangRuleResolver ruleResolver, SensorMetrics metrics) {
+        ClangWarning clangWarning = resolvedWarning.warning;
+        String type = clangWarning.getType();
 
-            Issuable issuable = resourcePerspectives.as(Issuable.class, resource);
+        Issuable issuable = resourcePerspectives.as(Issuable.class, resolvedWarning.resource);
 
-            if (issuable != null) {
-                Issue issue = issuable.newIssueBuilder()
-                        .ruleKey(RuleKey.of(ClangRulesDefinition.REPOSITORY_KEY, ruleKeyName))
-                        .message(String.format("%s - %s", clangWarning.getCategory(), type))
-                        .line(clangWarning.getLine())
-                        .build();
+        if (issuable != null) {
+            Issue issue = issuable.newIssueBuilder()
+                    .ruleKey(ruleResolver.resolve(clangWarning.getCheckName(), type))
+                    .message(String.format("%s - %s", clangWarning.getCategory(), type))
+                    .line(clangWarning.getLine())
+                    .build();
 
-                issuable.addIssue(issue);
-            }
+            issuable.addIssue(issue);
+            metrics.increment(SensorMetrics.ISSUES);
         }
     }
 
@@ -120,4 +163,14 @@ public final class ClangSensor implements Sensor {
     public String toString() {
         return "Objective-C Clang Sensor";
     }
+
+    private static final class ResolvedWarning {
+        private final ClangWarning warning;
+        private final Resource resource;
+
+        private ResolvedWarning(ClangWarning warning, Resource resource) {
+            this.warning = warning;
+            this.resource = resource;
+        }
+    }
 }
@@ -19,46 +19,52 @@
  */
 package org.sonar.plugins.objectivec.clang;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import java.io.File;
 
 /**
+ * A diagnostic of a Clang report. Category and type strings are interned and the file is shared by all the
+ * warnings of a report, so that warnings cost little more than their line number.
+ *
  * @author Matthew DeTullio
  */
 public class ClangWarning {
-    private String category;
-    private File file;
-    private Integer line;
-    private String type;
+    private final String category;
+    private final File file;
+    private final int line;
+    private final String type;
+    private final String checkName;
 
-    public String getCategory() {
-        return category;
+    public ClangWarning(String category, File file, int line, String type, @Nullable String checkName) {
+        this.category = category;
+        this.file = file;
+        this.line = line;
+        this.type = type;
+        this.checkName = checkName;
     }
 
-    public void setCategory(String category) {
-        this.category = category;
+    public String getCategory() {
+        return category;
     }
 
     public File getFile() {
         return file;
     }
 
-    public void setFile(File file) {
-        this.file = file;
-    }
-
-    public Integer getLine() {
+    public int getLine() {
         return line;
     }
 
-    public void setLine(Integer line) {
-        this.line = line;
-    }
-
     public String getType() {
         return type;
     }
 
-    public void setType(String type) {
-        this.type = type;
+    /**
+     * @return the checker which raised the warning, reported by recent versions of Clang only
+     */
+    @CheckForNull
+    public String getCheckName() {
+        return checkName;
     }
 }
@@ -32,67 +32,214 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.utils.ParsingUtils;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.api.utils.XmlParserException;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ImportPipeline;
+import org.sonar.plugins.objectivec.core.MeasureBuffer;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 
+import javax.annotation.CheckForNull;
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.Consumer;
 
 final class CoberturaReportParser {
+    private static final String CACHE_NAME = "cobertura";
+    private static final int END_TAG = 0;
+    private static final int FILE_TAG = 1;
+    private static final int HITS_TAG = 2;
+
     private final FileSystem fileSystem;
     private final SensorContext context;
+    private final AnalysisScope analysisScope;
+    private final ReportCache reportCache;
+    private final XmlReaders xmlReaders;
+    private final SensorMetrics metrics;
+    private final MeasureBuffer measureBuffer;
+
+    private ReportCache.Writer cacheWriter = ReportCache.discard();
 
-    private CoberturaReportParser(FileSystem fileSystem, SensorContext context) {
+    private CoberturaReportParser(FileSystem fileSystem, SensorContext context, AnalysisScope analysisScope,
+            ReportCache reportCache, XmlReaders xmlReaders, SensorMetrics metrics) {
         this.fileSystem = fileSystem;
         this.context = context;
+        this.analysisScope = analysisScope;
+        this.reportCache = reportCache;
+        this.xmlReaders = xmlReaders;
+        this.metrics = metrics;
+        this.measureBuffer = new MeasureBuffer(context, metrics);
     }
 
     /**
      * Parse a Cobertura xml report and create measures accordingly
      */
-    public static void parseReport(File xmlFile, FileSystem fileSystem, SensorContext context) {
-        new CoberturaReportParser(fileSystem, context).parse(xmlFile);
+    public static void parseReport(File xmlFile, FileSystem fileSystem, SensorContext context,
+            AnalysisScope analysisScope, ReportCache reportCache, XmlReaders xmlReaders, SensorMetrics metrics) {
+        new CoberturaReportParser(fileSystem, context, analysisScope, reportCache, xmlReaders, metrics)
+                .parse(xmlFile);
+    }
+
+    private void parse(final File xmlFile) {
+        metrics.increment(SensorMetrics.FILES);
+        metrics.add(SensorMetrics.BYTES, xmlFile.length());
+
+        final ReportCache.Reader cached = reportCache.read(CACHE_NAME, xmlFile);
+        if (cached == null) {
+            cacheWriter = reportCache.write(CACHE_NAME, xmlFile);
+        } else {
+            metrics.increment(SensorMetrics.CACHED_REPORTS);
+        }
+
+        try {
+            new ImportPipeline<FileCoverage, ResolvedCoverage>(metrics).run(
+                    sink -> {
+                        if (cached != null) {
+                            replay(xmlFile, cached, sink);
+                        } else {
+                            parseXml(xmlFile, sink);
+                        }
+                    },
+                    this::resolve,
+                    this::save);
+            measureBuffer.flush();
+            cacheWriter.writeTag(END_TAG);
+            cacheWriter.commit();
+        } finally {
+            cacheWriter.close();
+        }
+    }
+
+    /**
+     * Emits the coverage of a previous parse of the report for the files which are in the scope.
+     */
+    private void replay(File xmlFile, ReportCache.Reader cached, Consumer<FileCoverage> sink) {
+        try (ReportCache.Reader reader = cached) {
+            CoverageMeasuresBuilder builder = null;
+            String filePath = null;
+            int tag;
+            while ((tag = reader.readTag()) != END_TAG) {
+                if (tag == FILE_TAG) {
+                    if (builder != null) {
+                        emitInScope(filePath, builder, sink);
+                    }
+                    filePath = reader.readString();
+                    builder = CoverageMeasuresBuilder.create();
+                } else {
+                    int lineId = reader.readInt();
+                    builder.setHits(lineId, reader.readInt());
+                    int conditions = reader.readInt();
+                    if (conditions > 0) {
+                        builder.setConditions(lineId, conditions, reader.readInt());
+                    }
+                }
+            }
+            if (builder != null) {
+                emitInScope(filePath, builder, sink);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to replay the cached coverage of " + xmlFile, e);
+        }
+    }
+
+    private void emitInScope(String filePath, CoverageMeasuresBuilder builder, Consumer<FileCoverage> sink) {
+        if (analysisScope.contains(filePath)) {
+            sink.accept(new FileCoverage(filePath, builder));
+        } else {
+            metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+        }
     }
 
-    private void parse(File xmlFile) {
+    private void parseXml(File xmlFile, final Consumer<FileCoverage> sink) {
         try {
-            StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
+            StaxParser.XmlStreamHandler handler = new StaxParser.XmlStreamHandler() {
                 @Override
                 public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
                     rootCursor.advance();
-                    collectPackageMeasures(rootCursor.descendantElementCursor("package"));
+                    collectPackageMeasures(rootCursor.descendantElementCursor("package"), sink);
                 }
-            });
-            parser.parse(xmlFile);
+            };
+            try (InputStream in = ReportInput.open(xmlFile)) {
+                xmlReaders.stream(in, handler);
+            }
         } catch (XMLStreamException e) {
             throw new XmlParserException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the Cobertura report " + xmlFile, e);
         }
     }
 
-    private void collectPackageMeasures(SMInputCursor pack) throws XMLStreamException {
+    private void collectPackageMeasures(SMInputCursor pack, Consumer<FileCoverage> sink)
+            throws XMLStreamException {
         while (pack.getNext() != null) {
             Map<String, CoverageMeasuresBuilder> builderByFilename = Maps.newHashMap();
             collectFileMeasures(pack.descendantElementCursor("class"), builderByFilename);
 
             for (Map.Entry<String, CoverageMeasuresBuilder> entry : builderByFilename.entrySet()) {
-                String filePath = entry.getKey();
-                final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(filePath));
-                final Resource resource = inputFile == null ? null : context.getResource(inputFile);
-
-                if (resource != null) {
-                    for (Measure measure : entry.getValue().createMeasures()) {
-                        context.saveMeasure(resource, measure);
-                    }
+                // Files are cached before being checked against the scope, which changes from one build to the next
+                cacheFileCoverage(entry.getKey(), entry.getValue());
+                if (analysisScope.contains(entry.getKey())) {
+                    sink.accept(new FileCoverage(entry.getKey(), entry.getValue()));
                 }
             }
         }
     }
 
-    private static void collectFileMeasures(SMInputCursor clazz,
+    @CheckForNull
+    private ResolvedCoverage resolve(FileCoverage coverage) {
+        final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(coverage.filePath));
+        final Resource resource = inputFile == null ? null : context.getResource(inputFile);
+
+        if (resource == null) {
+            metrics.increment(SensorMetrics.UNRESOLVED_PATHS);
+            return null;
+        }
+        return new ResolvedCoverage(inputFile, coverage.builder);
+    }
+
+    private void save(ResolvedCoverage coverage) {
+        for (Measure measure : coverage.builder.createMeasures()) {
+            measureBuffer.add(coverage.inputFile, measure);
+        }
+    }
+
+    /**
+     * Caches the coverage of a file of the report. A builder keeps the hits and conditions it was given, by line.
+     */
+    private void cacheFileCoverage(String filePath, CoverageMeasuresBuilder builder) {
+        cacheWriter.writeTag(FILE_TAG);
+        cacheWriter.writeString(filePath);
+        for (Map.Entry<Integer, Integer> hits : builder.getHitsByLine().entrySet()) {
+            int lineId = hits.getKey();
+            Integer conditions = builder.getConditionsByLine().get(lineId);
+            Integer coveredConditions = builder.getCoveredConditionsByLine().get(lineId);
+            cacheWriter.writeTag(HITS_TAG);
+            cacheWriter.writeInt(lineId);
+            cacheWriter.writeInt(hits.getValue());
+            cacheWriter.writeInt(conditions == null ? 0 : conditions);
+            if (conditions != null) {
+                cacheWriter.writeInt(coveredConditions == null ? 0 : coveredConditions);
+            }
+        }
+    }
+
+    private void collectFileMeasures(SMInputCursor clazz,
             Map<String, CoverageMeasuresBuilder> builderByFilename) throws XMLStreamException {
         while (clazz.getNext() != null) {
             String fileName = clazz.getAttrValue("filename");
+            if (!analysisScope.contains(fileName)) {
+                metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+                if (!cacheWriter.isEnabled()) {
+                    // The lines of the class are skipped along with it
+                    continue;
+                }
+            }
             CoverageMeasuresBuilder builder = builderByFilename.get(fileName);
 
             if (builder == null) {
@@ -123,4 +270,24 @@ final class CoberturaReportParser {
             }
         }
     }
+
+    private static final class FileCoverage {
+        private final String filePath;
+        private final CoverageMeasuresBuilder builder;
+
+        private FileCoverage(String filePath, CoverageMeasuresBuilder builder) {
+            this.filePath = filePath;
+            this.builder = builder;
+        }
+    }
+
+    private static final class ResolvedCoverage {
+        private final InputFile inputFile;
+        private final CoverageMeasuresBuilder builder;
+
+        private ResolvedCoverage(InputFile inputFile, CoverageMeasuresBuilder builder) {
+            this.inputFile = inputFile;
+            this.builder = builder;
+        }
+    }
 }
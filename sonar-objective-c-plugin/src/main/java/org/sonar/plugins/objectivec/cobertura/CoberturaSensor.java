@@ -29,6 +29,12 @@ import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 
 import java.io.File;
 
@@ -41,11 +47,21 @@ public final class CoberturaSensor implements Sensor, CoverageExtension {
     private final FileSystem fileSystem;
     private final PathResolver pathResolver;
     private final Settings settings;
+    private final SensorMetricsReporter metricsReporter;
+    private final AnalysisScope analysisScope;
+    private final ReportCache reportCache;
+    private final XmlReaders xmlReaders;
 
-    public CoberturaSensor(final FileSystem fileSystem, final PathResolver pathResolver, final Settings settings) {
+    public CoberturaSensor(final FileSystem fileSystem, final PathResolver pathResolver, final Settings settings,
+            final SensorMetricsReporter metricsReporter, final AnalysisScope analysisScope,
+            final ReportCache reportCache, final XmlReaders xmlReaders) {
         this.fileSystem = fileSystem;
         this.pathResolver = pathResolver;
         this.settings = settings;
+        this.metricsReporter = metricsReporter;
+        this.analysisScope = analysisScope;
+        this.reportCache = reportCache;
+        this.xmlReaders = xmlReaders;
     }
 
     @Override
@@ -56,7 +72,7 @@ public final class CoberturaSensor implements Sensor, CoverageExtension {
     @Override
     public void analyse(Project project, SensorContext context) {
         String path = settings.getString(REPORT_PATH_KEY);
-        File report = pathResolver.relativeFile(fileSystem.baseDir(), path);
+        File report = ReportInput.locate(pathResolver.relativeFile(fileSystem.baseDir(), path));
 
         if (!report.isFile()) {
             LOGGER.warn("Cobertura report not found at {}", report);
@@ -64,7 +80,13 @@ public final class CoberturaSensor implements Sensor, CoverageExtension {
         }
 
         LOGGER.info("parsing {}", report);
-        CoberturaReportParser.parseReport(report, fileSystem, context);
+        SensorMetrics metrics = metricsReporter.start(toString());
+        try {
+            CoberturaReportParser.parseReport(report, fileSystem, context, analysisScope, reportCache, xmlReaders,
+                    metrics);
+        } finally {
+            metricsReporter.finish(metrics);
+        }
     }
 
     @Override
@@ -0,0 +1,56 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.sonar.api.BatchExtension;
+
+import java.io.File;
+
+/**
+ * Files the sensors analyse and report on: the changed files, when they are given, less the excluded sources.
+ * Report importers check their entries against it before resolving them.
+ */
+public class AnalysisScope implements BatchExtension {
+    private final ChangedFiles changedFiles;
+    private final SourceExclusions sourceExclusions;
+
+    public AnalysisScope(ChangedFiles changedFiles, SourceExclusions sourceExclusions) {
+        this.changedFiles = changedFiles;
+        this.sourceExclusions = sourceExclusions;
+    }
+
+    /**
+     * @param path absolute, or relative to the project base directory
+     */
+    public boolean contains(String path) {
+        return !sourceExclusions.isExcluded(path) && changedFiles.contains(path);
+    }
+
+    public boolean contains(File file) {
+        return contains(file.getPath());
+    }
+
+    /**
+     * @return a value which changes with the scope, for results computed within it to be cached
+     */
+    public String fingerprint() {
+        return sourceExclusions.fingerprint() + '|' + changedFiles.fingerprint();
+    }
+}
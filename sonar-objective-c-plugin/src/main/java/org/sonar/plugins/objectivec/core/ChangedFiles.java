@@ -0,0 +1,279 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.PathResolver;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Files changed by a pull request, read from a list of paths or from the output of <tt>git diff</tt>. When set,
+ * sensors only analyse and report on these files; otherwise every file is in scope.
+ * <p>
+ * Relative paths of the list are taken as relative to the root of the repository, as git writes them: the directory
+ * of {@link #REPOSITORY_ROOT_KEY}, or else the closest one holding <tt>.git</tt> from the project base directory up,
+ * or else the base directory itself. Paths are kept relative to the project base directory, so that report entries
+ * can be checked with string operations alone, before being resolved against the file system.
+ */
+public class ChangedFiles implements BatchExtension {
+    public static final String CHANGED_FILES_KEY = "sonar.objectivec.changedFiles";
+    public static final String REPOSITORY_ROOT_KEY = "sonar.objectivec.repositoryRoot";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangedFiles.class);
+
+    private static final String DIFF_PREFIX = "diff --git ";
+    private static final String OLD_FILE_PREFIX = "--- ";
+    private static final String NEW_FILE_PREFIX = "+++ ";
+    private static final String RENAME_TO_PREFIX = "rename to ";
+    private static final String COPY_TO_PREFIX = "copy to ";
+    private static final String DELETED_FILE_PREFIX = "deleted file mode ";
+    private static final String DEV_NULL = "/dev/null";
+    private static final String GIT_DIR = ".git";
+
+    private final FileSystem fileSystem;
+    private final PathResolver pathResolver;
+    private final Settings settings;
+
+    private String baseDirPrefix;
+    private Set<String> relativePaths;
+
+    public ChangedFiles(FileSystem fileSystem, PathResolver pathResolver, Settings settings) {
+        this.fileSystem = fileSystem;
+        this.pathResolver = pathResolver;
+        this.settings = settings;
+    }
+
+    public boolean isEnabled() {
+        return load() != null;
+    }
+
+    /**
+     * @param path absolute, or relative to the project base directory
+     */
+    public boolean contains(String path) {
+        Set<String> paths = load();
+        return paths == null || paths.contains(ProjectPaths.relativize(baseDirPrefix, path));
+    }
+
+    public boolean contains(File file) {
+        return contains(file.getPath());
+    }
+
+    /**
+     * @return a short value which changes with the set of changed files
+     */
+    public String fingerprint() {
+        Set<String> paths = load();
+        return paths == null ? "all" : paths.size() + ":" + Integer.toHexString(paths.hashCode());
+    }
+
+    @CheckForNull
+    private synchronized Set<String> load() {
+        if (baseDirPrefix == null) {
+            baseDirPrefix = ProjectPaths.baseDirPrefix(fileSystem.baseDir());
+            String path = settings.getString(CHANGED_FILES_KEY);
+            if (StringUtils.isNotEmpty(path)) {
+                File listFile = pathResolver.relativeFile(fileSystem.baseDir(), path);
+                relativePaths = read(listFile);
+                if (relativePaths != null) {
+                    warnIfNoneIndexed(listFile);
+                }
+            }
+        }
+        return relativePaths;
+    }
+
+    @CheckForNull
+    private Set<String> read(File listFile) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the changed files from {}: all files are analysed", listFile, e);
+            return null;
+        }
+
+        boolean isDiff = false;
+        for (String line : lines) {
+            if (line.startsWith(DIFF_PREFIX) || line.startsWith(NEW_FILE_PREFIX)) {
+                isDiff = true;
+                break;
+            }
+        }
+
+        String repositoryRootPrefix = ProjectPaths.baseDirPrefix(repositoryRoot());
+        Set<String> paths = new HashSet<>();
+        for (String path : isDiff ? diffPaths(lines) : listPaths(lines)) {
+            paths.add(ProjectPaths.relativize(baseDirPrefix, resolve(repositoryRootPrefix, path)));
+        }
+        LOGGER.info("Analysis restricted to {} changed files listed in {}", paths.size(), listFile);
+        return paths;
+    }
+
+    private File repositoryRoot() {
+        String configured = settings.getString(REPOSITORY_ROOT_KEY);
+        if (StringUtils.isNotEmpty(configured)) {
+            return pathResolver.relativeFile(fileSystem.baseDir(), configured).toPath().normalize().toFile();
+        }
+        File baseDir = fileSystem.baseDir().getAbsoluteFile();
+        for (File dir = baseDir; dir != null; dir = dir.getParentFile()) {
+            // A file in worktrees and submodules
+            if (new File(dir, GIT_DIR).exists()) {
+                return dir;
+            }
+        }
+        return baseDir;
+    }
+
+    /**
+     * @return the absolute path of a listed path relative to the repository root, or the path when absolute
+     */
+    private static String resolve(String repositoryRootPrefix, String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        return new File(normalized).isAbsolute() ? normalized : (repositoryRootPrefix + normalized);
+    }
+
+    /**
+     * Warns when the list names files, none of which is indexed, as when its paths are relative to another
+     * directory than the repository root.
+     */
+    private void warnIfNoneIndexed(File listFile) {
+        if (relativePaths.isEmpty()) {
+            return;
+        }
+        for (String path : relativePaths) {
+            if (fileSystem.hasFiles(fileSystem.predicates().hasRelativePath(path))) {
+                return;
+            }
+        }
+        LOGGER.warn("None of the {} changed files listed in {} is indexed: check that their paths are relative to "
+                + "the repository root, which may be set with {}", relativePaths.size(), listFile, REPOSITORY_ROOT_KEY);
+    }
+
+    /**
+     * Reads the new path of each file of a unified diff, from its <tt>+++ b/path</tt> line or, for files renamed or
+     * copied without changes, its <tt>rename to</tt> or <tt>copy to</tt> line. Deleted files are ignored, and the
+     * <tt>a/</tt> and <tt>b/</tt> prefixes are only stripped when the diff has them.
+     */
+    private static List<String> diffPaths(List<String> lines) {
+        boolean prefixed = false;
+        for (String line : lines) {
+            if (line.startsWith(DIFF_PREFIX + "a/") || line.startsWith(OLD_FILE_PREFIX + "a/")) {
+                prefixed = true;
+                break;
+            }
+        }
+
+        List<String> paths = new ArrayList<>();
+        String header = null;
+        String path = null;
+        boolean deleted = false;
+        for (String line : lines) {
+            if (line.startsWith(DIFF_PREFIX)) {
+                addDiffPath(paths, header, path, deleted, prefixed);
+                header = line.substring(DIFF_PREFIX.length());
+                path = null;
+                deleted = false;
+            } else if (line.startsWith(NEW_FILE_PREFIX)) {
+                String newPath = stripTimestamp(line.substring(NEW_FILE_PREFIX.length()));
+                if (DEV_NULL.equals(newPath)) {
+                    deleted = true;
+                } else if (!newPath.isEmpty()) {
+                    path = prefixed && newPath.startsWith("b/") ? newPath.substring(2) : newPath;
+                }
+                if (header == null) {
+                    // Plain unified diff, without the git header of each file
+                    addDiffPath(paths, null, path, deleted, prefixed);
+                    path = null;
+                    deleted = false;
+                }
+            } else if (line.startsWith(RENAME_TO_PREFIX)) {
+                path = line.substring(RENAME_TO_PREFIX.length()).trim();
+            } else if (line.startsWith(COPY_TO_PREFIX)) {
+                path = line.substring(COPY_TO_PREFIX.length()).trim();
+            } else if (line.startsWith(DELETED_FILE_PREFIX)) {
+                deleted = true;
+            }
+        }
+        addDiffPath(paths, header, path, deleted, prefixed);
+        return paths;
+    }
+
+    /**
+     * Adds the path of a file of the diff, read from its header when no other line named it, as for a mode change.
+     */
+    private static void addDiffPath(List<String> paths, @Nullable String header, @Nullable String path,
+            boolean deleted, boolean prefixed) {
+        if (deleted) {
+            return;
+        }
+        if (path != null) {
+            paths.add(path);
+        } else if (header != null && prefixed) {
+            int newPath = header.lastIndexOf(" b/");
+            if (newPath >= 0) {
+                paths.add(header.substring(newPath + 3));
+            }
+        }
+    }
+
+    private static String stripTimestamp(String path) {
+        int tab = path.indexOf('\t');
+        return (tab >= 0 ? path.substring(0, tab) : path).trim();
+    }
+
+    /**
+     * Reads one path per line, also accepting the <tt>status&lt;TAB&gt;path</tt> lines of
+     * <tt>git diff --name-status</tt>, of which deleted files are ignored and renamed or copied files give their new
+     * path.
+     */
+    private static List<String> listPaths(List<String> lines) {
+        List<String> paths = new ArrayList<>();
+        for (String line : lines) {
+            int tab = line.lastIndexOf('\t');
+            if (tab >= 0 && line.startsWith("D")) {
+                continue;
+            }
+            String path = line.substring(tab + 1).trim();
+            if (!path.isEmpty()) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+}
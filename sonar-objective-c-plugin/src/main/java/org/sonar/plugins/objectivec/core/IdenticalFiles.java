@@ -0,0 +1,129 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds files with the same content, such as headers vendored in several places. Only files of equal size are
+ * hashed, and only files of equal hash are compared byte for byte.
+ */
+public final class IdenticalFiles {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdenticalFiles.class);
+
+    private IdenticalFiles() {
+        // Prevents outside instantiation
+    }
+
+    /**
+     * Digest of the content of a file, which files of different contents may share.
+     */
+    interface ContentHash {
+        byte[] of(File file) throws IOException;
+    }
+
+    /**
+     * @return for each file having copies among <code>files</code>, the copies, in the order of <code>files</code>;
+     * the first of identical files is the one kept as a key
+     */
+    public static Map<File, List<File>> find(Collection<File> files) {
+        return find(files, Digests::sha1);
+    }
+
+    static Map<File, List<File>> find(Collection<File> files, ContentHash contentHash) {
+        Map<Long, List<File>> filesBySize = new HashMap<>();
+        for (File file : files) {
+            Long size = file.length();
+            List<File> sameSize = filesBySize.get(size);
+            if (sameSize == null) {
+                sameSize = new ArrayList<>(1);
+                filesBySize.put(size, sameSize);
+            }
+            sameSize.add(file);
+        }
+
+        Map<File, List<File>> copies = new LinkedHashMap<>();
+        for (List<File> sameSize : filesBySize.values()) {
+            if (sameSize.size() > 1) {
+                findCopies(sameSize, contentHash, copies);
+            }
+        }
+        return copies;
+    }
+
+    private static void findCopies(List<File> sameSize, ContentHash contentHash, Map<File, List<File>> copies) {
+        // First file of each distinct content, by hash
+        Map<ByteBuffer, List<File>> firstsByHash = new HashMap<>();
+        for (File file : sameSize) {
+            ByteBuffer hash;
+            try {
+                hash = ByteBuffer.wrap(contentHash.of(file));
+            } catch (IOException e) {
+                LOGGER.debug("Unable to hash " + file, e);
+                continue;
+            }
+            List<File> firsts = firstsByHash.get(hash);
+            if (firsts == null) {
+                firsts = new ArrayList<>(1);
+                firstsByHash.put(hash, firsts);
+            }
+            File first;
+            try {
+                first = findSameContent(firsts, file);
+            } catch (IOException e) {
+                LOGGER.debug("Unable to compare " + file, e);
+                continue;
+            }
+            if (first == null) {
+                firsts.add(file);
+            } else {
+                List<File> copiesOfFirst = copies.get(first);
+                if (copiesOfFirst == null) {
+                    copiesOfFirst = new ArrayList<>(1);
+                    copies.put(first, copiesOfFirst);
+                }
+                copiesOfFirst.add(file);
+            }
+        }
+    }
+
+    @CheckForNull
+    private static File findSameContent(List<File> candidates, File file) throws IOException {
+        for (File candidate : candidates) {
+            if (Files.equal(candidate, file)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import javax.annotation.CheckForNull;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs a report import in two stages connected by a bounded queue: records are parsed on a worker thread, while
+ * they are resolved to project files and persisted on the calling sensor thread, which is the only one allowed to
+ * look up resources and to save measures and issues. A full queue blocks the parser, so that it cannot get far
+ * ahead of persistence.
+ * <p>
+ * Each stage is timed in the matching phase of the sensor metrics, excluding the time spent waiting on the queue.
+ *
+ * @param <R> records read from the reports
+ * @param <T> records resolved to project files
+ */
+public final class ImportPipeline<R, T> {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Object END = new Object();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final SensorMetrics metrics;
+    private final int capacity;
+
+    public ImportPipeline(SensorMetrics metrics) {
+        this(metrics, DEFAULT_CAPACITY);
+    }
+
+    public ImportPipeline(SensorMetrics metrics, int capacity) {
+        this.metrics = metrics;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Reads the reports and emits their records, in order.
+     */
+    public interface Parser<R> {
+        void parse(Consumer<R> sink) throws Exception;
+    }
+
+    public interface Resolver<R, T> {
+        /**
+         * @return the resolved record, or null to drop a record whose file is not in the project
+         */
+        @CheckForNull
+        T resolve(R record);
+    }
+
+    /**
+     * Returns once every record has been persisted. Records keep their order from one stage to the next.
+     *
+     * @throws RuntimeException thrown by a stage, the parser being stopped when resolution or persistence failed
+     */
+    public void run(final Parser<R> parser, final Resolver<R, T> resolver, final Consumer<T> persister) {
+        final BlockingQueue<Object> parsed = new ArrayBlockingQueue<>(capacity);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "objectivec-import-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Future<?> parsing = executor.submit(() -> {
+            parse(parser, parsed);
+            return null;
+        });
+        boolean completed = false;
+        try {
+            resolveAndPersist(resolver, persister, parsed);
+            parsing.get();
+            completed = true;
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Report import interrupted", e);
+        } finally {
+            if (!completed) {
+                // Interrupts the parser, which may be blocked on a full queue that nobody reads anymore
+                parsing.cancel(true);
+                parsed.clear();
+            }
+            executor.shutdownNow();
+            if (!completed) {
+                awaitStop(executor);
+            }
+        }
+    }
+
+    /**
+     * Waits for the stopped parser, so that the caller may release what it was writing to.
+     */
+    private static void awaitStop(ExecutorService executor) {
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parse(Parser<R> parser, BlockingQueue<Object> parsed) throws Exception {
+        QueueSink<R> sink = new QueueSink<>(parsed);
+        long start = System.nanoTime();
+        try {
+            parser.parse(sink);
+        } finally {
+            metrics.addTime(SensorMetrics.PARSE, System.nanoTime() - start - sink.blockedNanos);
+            if (!Thread.currentThread().isInterrupted()) {
+                parsed.put(END);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resolveAndPersist(Resolver<R, T> resolver, Consumer<T> persister, BlockingQueue<Object> parsed)
+            throws InterruptedException {
+        Object record;
+        while ((record = parsed.take()) != END) {
+            long start = System.nanoTime();
+            T resolvedRecord = resolver.resolve((R) record);
+            metrics.addTimeSince(SensorMetrics.RESOLVE, start);
+            if (resolvedRecord != null) {
+                start = System.nanoTime();
+                persister.accept(resolvedRecord);
+                metrics.addTimeSince(SensorMetrics.PERSIST, start);
+            }
+        }
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException("Report import failed", cause);
+    }
+
+    private static final class QueueSink<R> implements Consumer<R> {
+        private final BlockingQueue<Object> queue;
+        private long blockedNanos;
+
+        private QueueSink(BlockingQueue<Object> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void accept(R record) {
+            long start = System.nanoTime();
+            try {
+                queue.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Report import interrupted", e);
+            }
+            blockedNanos += System.nanoTime() - start;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the file measures of a sensor and saves them in batches, sorted by file, each time the buffer is full
+ * and once more when the sensor calls {@link #flush()}, so that at most one batch is held in memory.
+ * <p>
+ * Plain values are kept in primitive arrays. Only measures carrying more than a value (distributions, persistence
+ * mode) are kept as {@link Measure} objects. Each save is counted in {@link SensorMetrics#MEASURES} and timed in
+ * {@link SensorMetrics#SAVE}.
+ */
+public final class MeasureBuffer {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final SensorContext context;
+    private final SensorMetrics metrics;
+    private final int capacity;
+
+    // Files of the current batch, by reference
+    private final Map<InputFile, Integer> fileRefByInputFile = new HashMap<>();
+    private final List<InputFile> inputFiles = new ArrayList<>();
+
+    private final int[] fileRefs;
+    private final Metric[] measureMetrics;
+    private final double[] values;
+    private final Measure[] measures;
+    private int size = 0;
+
+    public MeasureBuffer(SensorContext context, SensorMetrics metrics) {
+        this(context, metrics, DEFAULT_CAPACITY);
+    }
+
+    public MeasureBuffer(SensorContext context, SensorMetrics metrics, int capacity) {
+        this.context = context;
+        this.metrics = metrics;
+        this.capacity = capacity;
+        fileRefs = new int[capacity];
+        measureMetrics = new Metric[capacity];
+        values = new double[capacity];
+        measures = new Measure[capacity];
+    }
+
+    public void add(InputFile inputFile, Metric metric, double value) {
+        int i = append(inputFile);
+        measureMetrics[i] = metric;
+        values[i] = value;
+    }
+
+    public void add(InputFile inputFile, Measure measure) {
+        int i = append(inputFile);
+        measureMetrics[i] = measure.getMetric();
+        measures[i] = measure;
+    }
+
+    /**
+     * Saves the buffered measures, file by file and in the order they were added for a given file, then empties
+     * the buffer.
+     */
+    public void flush() {
+        if (size == 0) {
+            return;
+        }
+
+        // File reference in the high bits, position in the low bits: sorting groups by file and keeps insertion order
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) fileRefs[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        long start = System.nanoTime();
+        try {
+            for (long key : order) {
+                int i = (int) key;
+                InputFile inputFile = inputFiles.get(fileRefs[i]);
+                if (measures[i] == null) {
+                    context.saveMeasure(inputFile, measureMetrics[i], values[i]);
+                } else {
+                    context.saveMeasure(inputFile, measures[i]);
+                }
+            }
+            metrics.add(SensorMetrics.MEASURES, size);
+        } finally {
+            metrics.addTimeSince(SensorMetrics.SAVE, start);
+            clear();
+        }
+    }
+
+    /**
+     * @return number of measures waiting to be saved
+     */
+    public int size() {
+        return size;
+    }
+
+    private int append(InputFile inputFile) {
+        if (size == capacity) {
+            flush();
+        }
+
+        Integer fileRef = fileRefByInputFile.get(inputFile);
+        if (fileRef == null) {
+            fileRef = inputFiles.size();
+            inputFiles.add(inputFile);
+            fileRefByInputFile.put(inputFile, fileRef);
+        }
+        fileRefs[size] = fileRef;
+        return size++;
+    }
+
+    private void clear() {
+        Arrays.fill(measureMetrics, 0, size, null);
+        Arrays.fill(measures, 0, size, null);
+        fileRefByInputFile.clear();
+        inputFiles.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import java.io.File;
+
+/**
+ * String operations on the paths found in reports, which may be absolute or relative to the project base directory.
+ */
+final class ProjectPaths {
+    private ProjectPaths() {
+        // Prevents outside instantiation
+    }
+
+    /**
+     * @return the absolute path of the base directory, with forward slashes and a trailing one
+     */
+    static String baseDirPrefix(File baseDir) {
+        return normalize(baseDir.getAbsolutePath()) + '/';
+    }
+
+    /**
+     * @return the path relative to the base directory when it is inside of it, with forward slashes and no
+     * leading <tt>./</tt>; paths outside of the base directory stay absolute
+     */
+    static String relativize(String baseDirPrefix, String path) {
+        String normalized = normalize(path);
+        if (normalized.startsWith(baseDirPrefix)) {
+            return normalized.substring(baseDirPrefix.length());
+        }
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        return normalized;
+    }
+
+    private static String normalize(String path) {
+        return path.replace('\\', '/');
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.PostJob;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.PathResolver;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+/**
+ * Local cache of the records read from external reports, so that a report which has not changed since the previous
+ * analysis is replayed instead of being parsed again.
+ * <p>
+ * Each report has its own cache file, starting with the path, size and modification time of the report, and ending
+ * with a checksum of the whole file, which is checked before any record is replayed. Importers cache their records
+ * before checking them against the {@link AnalysisScope}, so that their cache is still replayed when the scope
+ * changes, such as on each pull request build. A report of the same size and modification time is taken as
+ * unchanged; one of the same size only is hashed to find out, provided that it was hashed when cached, which is only
+ * done from its second parse onwards so that a first parse reads it once. Records are written by each importer in
+ * its own layout, with the strings they repeat, such as paths and rule keys, written once.
+ * <p>
+ * Once all sensors ran, the cache files of reports which no longer exist are deleted.
+ */
+public class ReportCache implements PostJob {
+    public static final String PATH_KEY = "sonar.objectivec.reportCache.path";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportCache.class);
+
+    private static final int MAGIC = 0x4f435243;
+    private static final int VERSION = 3;
+    private static final String EXTENSION = ".bin";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final Pattern CACHE_FILE_NAME = Pattern.compile("[a-z]++-[0-9a-f]{40}\\.bin(\\.tmp)?+");
+    private static final int CHECKSUM_LENGTH = 8;
+
+    private final FileSystem fileSystem;
+    private final PathResolver pathResolver;
+    private final Settings settings;
+
+    public ReportCache(FileSystem fileSystem, PathResolver pathResolver, Settings settings) {
+        this.fileSystem = fileSystem;
+        this.pathResolver = pathResolver;
+        this.settings = settings;
+    }
+
+    public boolean isEnabled() {
+        return StringUtils.isNotEmpty(settings.getString(PATH_KEY));
+    }
+
+    /**
+     * @param importer name of the records layout, such as <tt>oclint</tt>
+     * @return the records cached for the report, or null when the report is not cached, has changed or its cache
+     * file is damaged
+     */
+    @CheckForNull
+    public Reader read(String importer, File report) {
+        if (!isEnabled()) {
+            return null;
+        }
+        File cacheFile = cacheFile(importer, report);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            if (!hasValidChecksum(cacheFile)) {
+                LOGGER.warn("The cached records of {} are damaged: the report is parsed", report);
+                return null;
+            }
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                in.close();
+                return null;
+            }
+            in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] hash = null;
+            if (in.readBoolean()) {
+                hash = new byte[20];
+                in.readFully(hash);
+            }
+
+            boolean unchanged = size == report.length() && (lastModified == report.lastModified()
+                    || hash != null && Arrays.equals(hash, Digests.sha1(report)));
+            if (!unchanged) {
+                in.close();
+                return null;
+            }
+            LOGGER.debug("Replaying {} from {}", report, cacheFile);
+            return new Reader(in);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the cached records of {}: the report is parsed", report, e);
+            closeQuietly(in);
+            return null;
+        }
+    }
+
+    /**
+     * @return a writer for the records of the report; it writes nothing when the cache is disabled
+     */
+    public Writer write(String importer, File report) {
+        if (!isEnabled()) {
+            return discard();
+        }
+        File cacheFile = cacheFile(importer, report);
+        File tempFile = new File(cacheFile.getPath() + TEMP_EXTENSION);
+        // A report cached before which has to be parsed again may only have been touched
+        boolean hashed = cacheFile.isFile();
+        DataOutputStream out = null;
+        try {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)), new CRC32());
+            out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(report.getAbsolutePath());
+            out.writeLong(report.length());
+            out.writeLong(report.lastModified());
+            out.writeBoolean(hashed);
+            if (hashed) {
+                out.write(Digests.sha1(report));
+            }
+            return new Writer(out, checked.getChecksum(), tempFile, cacheFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to cache the records of {}", report, e);
+            closeQuietly(out);
+            deleteQuietly(tempFile);
+            return discard();
+        }
+    }
+
+    /**
+     * @return a writer which writes nothing, for reports parsed without a cache
+     */
+    public static Writer discard() {
+        return new Writer(null, null, null, null);
+    }
+
+    /**
+     * Deletes the cache files of the reports which no longer exist, along with those of older layouts and those left
+     * by interrupted analyses.
+     */
+    @Override
+    public void executeOn(Project project, SensorContext context) {
+        if (!isEnabled()) {
+            return;
+        }
+        File[] files = cacheDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        int pruned = 0;
+        for (File file : files) {
+            if (CACHE_FILE_NAME.matcher(file.getName()).matches() && !isLive(file)) {
+                deleteQuietly(file);
+                pruned++;
+            }
+        }
+        if (pruned > 0) {
+            LOGGER.debug("Deleted {} stale report cache files", pruned);
+        }
+    }
+
+    private static boolean isLive(File cacheFile) {
+        if (cacheFile.getName().endsWith(TEMP_EXTENSION)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION && new File(in.readUTF()).isFile();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read {}", cacheFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * @return whether the checksum which ends the file is the one of the bytes before it
+     */
+    private static boolean hasValidChecksum(File cacheFile) throws IOException {
+        long length = cacheFile.length() - CHECKSUM_LENGTH;
+        if (length < 0) {
+            return false;
+        }
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            byte[] buffer = new byte[8192];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    return false;
+                }
+                checksum.update(buffer, 0, read);
+                remaining -= read;
+            }
+            return in.readLong() == checksum.getValue();
+        }
+    }
+
+    private File cacheDirectory() {
+        return pathResolver.relativeFile(fileSystem.baseDir(), settings.getString(PATH_KEY));
+    }
+
+    private File cacheFile(String importer, File report) {
+        String key = toHex(Digests.sha1(report.getAbsolutePath().getBytes(StandardCharsets.UTF_8)));
+        return new File(cacheDirectory(), importer + '-' + key + EXTENSION);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close the report cache", e);
+            }
+        }
+    }
+
+    private static void deleteQuietly(@Nullable File file) {
+        if (file != null && file.exists() && !file.delete()) {
+            LOGGER.debug("Unable to delete {}", file);
+        }
+    }
+
+    /**
+     * Records of a cached report. Strings are read back in the order {@link Writer#writeString(String)} wrote them.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        public int readTag() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        public int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        public double readDouble() throws IOException {
+            return in.readDouble();
+        }
+
+        @CheckForNull
+        public String readString() throws IOException {
+            int index = in.readInt();
+            if (index < 0) {
+                return null;
+            }
+            if (index == strings.size()) {
+                strings.add(in.readUTF());
+            }
+            return strings.get(index);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Records of a report being parsed. The cache file only replaces the previous one on {@link #commit()}, so that
+     * a report which fails to parse leaves no partial records behind.
+     */
+    public static final class Writer implements Closeable {
+        private DataOutputStream out;
+        private final Checksum checksum;
+        private final File tempFile;
+        private final File cacheFile;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private Writer(@Nullable DataOutputStream out, @Nullable Checksum checksum, @Nullable File tempFile,
+                @Nullable File cacheFile) {
+            this.out = out;
+            this.checksum = checksum;
+            this.tempFile = tempFile;
+            this.cacheFile = cacheFile;
+        }
+
+        /**
+         * @return whether records are written, which importers may check before reading more than they need
+         */
+        public boolean isEnabled() {
+            return out != null;
+        }
+
+        public void writeTag(int tag) {
+            if (out != null) {
+                try {
+                    out.writeByte(tag);
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+        }
+
+        public void writeInt(int value) {
+            if (out != null) {
+                try {
+                    out.writeInt(value);
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+        }
+
+        public void writeDouble(double value) {
+            if (out != null) {
+                try {
+                    out.writeDouble(value);
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+        }
+
+        public void writeString(@Nullable String value) {
+            if (out != null) {
+                try {
+                    if (value == null) {
+                        out.writeInt(-1);
+                        return;
+                    }
+                    Integer index = strings.get(value);
+                    if (index == null) {
+                        out.writeInt(strings.size());
+                        out.writeUTF(value);
+                        strings.put(value, strings.size());
+                    } else {
+                        out.writeInt(index);
+                    }
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+        }
+
+        public void commit() {
+            if (out != null) {
+                try {
+                    out.writeLong(checksum.getValue());
+                    out.close();
+                    out = null;
+                    Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (out != null) {
+                closeQuietly(out);
+                out = null;
+                deleteQuietly(tempFile);
+            }
+        }
+
+        private void abandon(IOException e) {
+            LOGGER.warn("Unable to cache the records of a report", e);
+            close();
+            deleteQuietly(tempFile);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens external reports which may be stored compressed, decompressing them on the fly rather than to disk.
+ * <p>
+ * The format is recognised by the magic bytes the stream starts with, so a compressed report is read whatever its
+ * name; the extensions only matter when looking for reports. Gzip is decoded by the JDK, Zstandard and XZ by pure
+ * Java decoders.
+ */
+public final class ReportInput {
+    /**
+     * Extensions of the compressed forms of a report, appended to its own extension as in <tt>oclint.xml.gz</tt>.
+     */
+    private static final String[] COMPRESSED_EXTENSIONS = {".gz", ".zst", ".xz"};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC_LENGTH = 6;
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+    private static final byte[] XZ_MAGIC = {(byte) 0xfd, '7', 'z', 'X', 'Z', 0};
+
+    private ReportInput() {
+        // Prevents outside instantiation
+    }
+
+    /**
+     * @return a buffered stream of the uncompressed content of the report, to be closed by the caller
+     */
+    public static InputStream open(File report) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(report), BUFFER_SIZE);
+        try {
+            byte[] magic = new byte[MAGIC_LENGTH];
+            in.mark(MAGIC_LENGTH);
+            int length = readFully(in, magic);
+            in.reset();
+
+            if (startsWith(magic, length, GZIP_MAGIC)) {
+                return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            } else if (startsWith(magic, length, ZSTD_MAGIC)) {
+                return new BufferedInputStream(new ZstdInputStream(in), BUFFER_SIZE);
+            } else if (startsWith(magic, length, XZ_MAGIC)) {
+                return new BufferedInputStream(new XZInputStream(in), BUFFER_SIZE);
+            }
+            return in;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param extension extension of the uncompressed report, such as <tt>.xml</tt>
+     * @return whether the file name is the one of a report with this extension, compressed or not
+     */
+    public static boolean hasExtension(String fileName, String extension) {
+        if (fileName.endsWith(extension)) {
+            return true;
+        }
+        for (String compressed : COMPRESSED_EXTENSIONS) {
+            if (fileName.endsWith(compressed)
+                    && fileName.regionMatches(fileName.length() - compressed.length() - extension.length(),
+                    extension, 0, extension.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the report when it exists, otherwise its first compressed form which does, otherwise the report itself
+     */
+    public static File locate(File report) {
+        if (report.isFile()) {
+            return report;
+        }
+        for (String compressed : COMPRESSED_EXTENSIONS) {
+            File candidate = new File(report.getPath() + compressed);
+            if (candidate.isFile()) {
+                return candidate;
+            }
+        }
+        return report;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
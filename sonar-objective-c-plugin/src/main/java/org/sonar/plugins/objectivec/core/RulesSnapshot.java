@@ -0,0 +1,247 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.rule.RuleStatus;
+import org.sonar.api.server.debt.DebtRemediationFunction;
+import org.sonar.api.server.rule.RuleParamType;
+import org.sonar.api.server.rule.RulesDefinition;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Binary snapshot of a rules repository, generated from the rules and SQALE model XML files so that the server
+ * defines the repository without parsing them on every start.
+ * <p>
+ * The snapshot holds the rules as the XML loaders defined them: their description, severity, status, tags,
+ * parameters and debt. Strings are written as their UTF-8 length and bytes, -1 standing for null.
+ */
+public final class RulesSnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RulesSnapshot.class);
+
+    private static final int MAGIC = 0x4f435253;
+    private static final int VERSION = 1;
+
+    private RulesSnapshot() {
+        // Prevents outside instantiation
+    }
+
+    /**
+     * Defines the rules of the snapshot in the repository.
+     *
+     * @param resource class path of the snapshot
+     * @return false if there is no up-to-date and readable snapshot, in which case the repository is left untouched
+     * and the rules are to be loaded from their XML files
+     */
+    public static boolean load(RulesDefinition.NewRepository repository, String resource) {
+        InputStream stream = RulesSnapshot.class.getResourceAsStream(resource);
+        if (stream == null) {
+            LOGGER.debug("No rules snapshot at {}", resource);
+            return false;
+        }
+
+        byte[] snapshot;
+        try (InputStream in = stream) {
+            snapshot = ByteStreams.toByteArray(in);
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring the rules snapshot {}, which cannot be read", resource, e);
+            return false;
+        }
+        return load(repository, resource, snapshot);
+    }
+
+    static boolean load(RulesDefinition.NewRepository repository, String resource, byte[] snapshot) {
+        // Rules cannot be removed from a repository: the snapshot is read into a scratch one first, so that a damaged
+        // snapshot does not leave the repository half defined before the XML files are loaded into it
+        try {
+            if (!readRules(snapshot, new RulesDefinition.Context().createRepository(repository.key(), "scratch"))) {
+                LOGGER.warn("Ignoring the rules snapshot {}, written by another version", resource);
+                return false;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Ignoring the rules snapshot {}, which is damaged", resource, e);
+            return false;
+        }
+
+        try {
+            return readRules(snapshot, repository);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the rules snapshot " + resource, e);
+        }
+    }
+
+    /**
+     * @return false if the snapshot was written by another version
+     */
+    private static boolean readRules(byte[] snapshot, RulesDefinition.NewRepository repository) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return false;
+        }
+        int ruleCount = in.readInt();
+        for (int i = 0; i < ruleCount; i++) {
+            readRule(in, repository);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the snapshot of a defined repository.
+     */
+    public static void write(RulesDefinition.Repository repository, File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create the directory " + dir);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(repository.rules().size());
+            for (RulesDefinition.Rule rule : repository.rules()) {
+                writeRule(out, rule);
+            }
+        }
+    }
+
+    private static void writeRule(DataOutputStream out, RulesDefinition.Rule rule) throws IOException {
+        writeString(out, rule.key());
+        writeString(out, rule.name());
+        writeString(out, rule.htmlDescription());
+        writeString(out, rule.severity());
+        writeString(out, rule.internalKey());
+        writeString(out, rule.status().name());
+        out.writeBoolean(rule.template());
+        writeStrings(out, rule.tags());
+
+        writeString(out, rule.debtSubCharacteristic());
+        DebtRemediationFunction function = rule.debtRemediationFunction();
+        if (function == null) {
+            writeString(out, null);
+        } else {
+            writeString(out, function.type().name());
+            writeString(out, function.coefficient());
+            writeString(out, function.offset());
+        }
+        writeString(out, rule.effortToFixDescription());
+
+        out.writeInt(rule.params().size());
+        for (RulesDefinition.Param param : rule.params()) {
+            writeString(out, param.key());
+            writeString(out, param.description());
+            writeString(out, param.defaultValue());
+            writeString(out, param.type().toString());
+        }
+    }
+
+    private static void readRule(DataInputStream in, RulesDefinition.NewRepository repository) throws IOException {
+        RulesDefinition.NewRule rule = repository.createRule(readString(in))
+                .setName(readString(in))
+                .setHtmlDescription(readString(in))
+                .setSeverity(readString(in))
+                .setInternalKey(readString(in))
+                .setStatus(RuleStatus.valueOf(readString(in)))
+                .setTemplate(in.readBoolean());
+        int tagCount = in.readInt();
+        for (int i = 0; i < tagCount; i++) {
+            rule.addTags(readString(in));
+        }
+
+        String subCharacteristic = readString(in);
+        if (subCharacteristic != null) {
+            rule.setDebtSubCharacteristic(subCharacteristic);
+        }
+        String functionType = readString(in);
+        if (functionType != null) {
+            String coefficient = readString(in);
+            String offset = readString(in);
+            rule.setDebtRemediationFunction(remediationFunction(rule.debtRemediationFunctions(),
+                    DebtRemediationFunction.Type.valueOf(functionType), coefficient, offset));
+        }
+        String effortToFixDescription = readString(in);
+        if (effortToFixDescription != null) {
+            rule.setEffortToFixDescription(effortToFixDescription);
+        }
+
+        int paramCount = in.readInt();
+        for (int i = 0; i < paramCount; i++) {
+            rule.createParam(readString(in))
+                    .setDescription(readString(in))
+                    .setDefaultValue(readString(in))
+                    .setType(RuleParamType.parse(readString(in)));
+        }
+    }
+
+    private static DebtRemediationFunction remediationFunction(RulesDefinition.DebtRemediationFunctions functions,
+            DebtRemediationFunction.Type type, @Nullable String coefficient, @Nullable String offset) {
+        switch (type) {
+            case LINEAR:
+                return functions.linear(coefficient);
+            case LINEAR_OFFSET:
+                return functions.linearWithOffset(coefficient, offset);
+            case CONSTANT_ISSUE:
+                return functions.constantPerIssue(offset);
+            default:
+                throw new IllegalStateException("Unsupported remediation function " + type);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @CheckForNull
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
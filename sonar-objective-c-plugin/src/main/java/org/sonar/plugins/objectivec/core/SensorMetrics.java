@@ -0,0 +1,199 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Timers and counters for one sensor execution.  Phases are timed in nanoseconds, counters are plain totals; both
+ * are reported with their throughput once the sensor is done.
+ * <p>
+ * Methods are synchronized so that report importers may record from worker threads.
+ */
+public final class SensorMetrics {
+    public static final String PARSE = "parse";
+    public static final String RESOLVE = "resolve";
+    public static final String PERSIST = "persist";
+    // Part of the persist phase spent in batched measure saves
+    public static final String SAVE = "save";
+
+    public static final String FILES = "files";
+    public static final String ISSUES = "issues";
+    public static final String MEASURES = "measures";
+    public static final String BYTES = "bytes";
+    public static final String UNRESOLVED_PATHS = "unresolvedPaths";
+    public static final String SKIPPED_FILES = "skippedFiles";
+    public static final String DUPLICATES = "duplicates";
+    public static final String IDENTICAL_FILES = "identicalFiles";
+    public static final String OUT_OF_SCOPE = "outOfScope";
+    public static final String CACHED_REPORTS = "cachedReports";
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final String sensorName;
+    private final long startNanos;
+    private long endNanos = -1L;
+
+    private final Map<String, Long> phaseNanos = new TreeMap<>();
+    private final Map<String, Long> counters = new TreeMap<>();
+
+    public SensorMetrics(String sensorName) {
+        this.sensorName = sensorName;
+        this.startNanos = System.nanoTime();
+    }
+
+    public String getSensorName() {
+        return sensorName;
+    }
+
+    public synchronized void addTime(String phase, long nanos) {
+        phaseNanos.put(phase, getTime(phase) + nanos);
+    }
+
+    /**
+     * Adds the time elapsed since <code>startNanos</code>, as given by {@link System#nanoTime()}, to a phase.
+     */
+    public void addTimeSince(String phase, long startNanos) {
+        addTime(phase, System.nanoTime() - startNanos);
+    }
+
+    public synchronized long getTime(String phase) {
+        Long nanos = phaseNanos.get(phase);
+        return nanos == null ? 0L : nanos;
+    }
+
+    public void increment(String counter) {
+        add(counter, 1L);
+    }
+
+    public synchronized void add(String counter, long delta) {
+        counters.put(counter, get(counter) + delta);
+    }
+
+    public synchronized long get(String counter) {
+        Long value = counters.get(counter);
+        return value == null ? 0L : value;
+    }
+
+    /**
+     * Stops the overall timer.  Calling it more than once keeps the first end time.
+     */
+    public synchronized void stop() {
+        if (endNanos < 0) {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    public synchronized long getElapsedNanos() {
+        return (endNanos < 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    /**
+     * @return one line summary such as <code>Clang Sensor: 1200 ms (parse 800 ms, persist 350 ms); issues 5000
+     * (4166.7/s)</code>
+     */
+    public synchronized String summary() {
+        long elapsed = getElapsedNanos();
+        StringBuilder sb = new StringBuilder(sensorName).append(": ").append(elapsed / NANOS_PER_MILLI).append(" ms");
+
+        String separator = " (";
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            sb.append(separator).append(phase.getKey()).append(' ').append(phase.getValue() / NANOS_PER_MILLI)
+                    .append(" ms");
+            separator = ", ";
+        }
+        if (!phaseNanos.isEmpty()) {
+            sb.append(')');
+        }
+
+        separator = "; ";
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            sb.append(separator).append(counter.getKey()).append(' ').append(counter.getValue())
+                    .append(String.format(Locale.ENGLISH, " (%.1f/s)", perSecond(counter.getValue(), elapsed)));
+            separator = ", ";
+        }
+
+        return sb.toString();
+    }
+
+    synchronized void appendJson(StringBuilder json) {
+        long elapsed = getElapsedNanos();
+        json.append("{\"sensor\":\"").append(escape(sensorName)).append('"')
+                .append(",\"elapsedMs\":").append(elapsed / NANOS_PER_MILLI)
+                .append(",\"phasesMs\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            json.append(separator).append('"').append(escape(phase.getKey())).append("\":")
+                    .append(phase.getValue() / NANOS_PER_MILLI);
+            separator = ",";
+        }
+        json.append("},\"counters\":{");
+        separator = "";
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.append(separator).append('"').append(escape(counter.getKey())).append("\":").append(counter.getValue());
+            separator = ",";
+        }
+        json.append("},\"perSecond\":{");
+        separator = "";
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.append(separator).append('"').append(escape(counter.getKey())).append("\":")
+                    .append(String.format(Locale.ENGLISH, "%.3f", perSecond(counter.getValue(), elapsed)));
+            separator = ",";
+        }
+        json.append("}}");
+    }
+
+    private static double perSecond(long value, long elapsedNanos) {
+        return elapsedNanos <= 0 ? 0d : value * 1e9d / elapsedNanos;
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out {@link SensorMetrics} to the sensors of this plugin, logs them when a sensor is done, and optionally
+ * writes all of them to a JSON file in the working directory.
+ */
+public class SensorMetricsReporter implements BatchExtension {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorMetricsReporter.class);
+
+    public static final String EXPORT_KEY = "sonar.objectivec.sensorMetrics.export";
+
+    static final String REPORT_FILE_NAME = "objectivec-sensor-metrics.json";
+
+    private final FileSystem fileSystem;
+    private final Settings settings;
+
+    private final List<SensorMetrics> finished = new ArrayList<>();
+
+    public SensorMetricsReporter(FileSystem fileSystem, Settings settings) {
+        this.fileSystem = fileSystem;
+        this.settings = settings;
+    }
+
+    public SensorMetrics start(String sensorName) {
+        return new SensorMetrics(sensorName);
+    }
+
+    public synchronized void finish(SensorMetrics metrics) {
+        metrics.stop();
+        LOGGER.info(metrics.summary());
+
+        finished.add(metrics);
+        if (settings.getBoolean(EXPORT_KEY)) {
+            export();
+        }
+    }
+
+    private void export() {
+        StringBuilder json = new StringBuilder("{\"sensors\":[");
+        String separator = "";
+        for (SensorMetrics metrics : finished) {
+            json.append(separator);
+            metrics.appendJson(json);
+            separator = ",";
+        }
+        json.append("]}");
+
+        File report = new File(fileSystem.workDir(), REPORT_FILE_NAME);
+        try {
+            Files.createDirectories(report.getParentFile().toPath());
+            Files.write(report.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write sensor metrics to {}", report, e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Vendored and generated sources left out of the Objective-C analysis, such as <tt>Pods/</tt> or <tt>*.pb.h</tt>.
+ * Nothing is excluded unless patterns are configured.
+ * <p>
+ * Patterns are compiled once into a trie of directories relative to the base directory, a set of directory names
+ * matched anywhere and a set of file name suffixes, so that checking a path costs a walk over its segments rather
+ * than a match against each pattern. Patterns which fit none of these, such as <tt>Pods/**&#47;*.h</tt>, are ignored
+ * with a warning.
+ */
+public class SourceExclusions implements BatchExtension {
+    public static final String EXCLUSIONS_KEY = "sonar.objectivec.exclusions";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceExclusions.class);
+
+    private static final String ANY_DIRECTORY = "**/";
+    private static final String ANY_FILE = "/**";
+    private static final char[] WILDCARDS = {'*', '?', '[', '{'};
+
+    private final String baseDirPrefix;
+    private final String patternList;
+    private final Node directories = new Node();
+    private final Set<String> directoryNames = new HashSet<>();
+    private final Set<String> suffixes = new HashSet<>();
+    private final int[] suffixLengths;
+
+    public SourceExclusions(FileSystem fileSystem, Settings settings) {
+        Set<Integer> lengths = new TreeSet<>();
+        String[] patterns = settings.getStringArray(EXCLUSIONS_KEY);
+        for (String rawPattern : patterns) {
+            String pattern = rawPattern.trim().replace('\\', '/');
+            if (!pattern.isEmpty() && !add(pattern, lengths)) {
+                LOGGER.warn("Ignoring the Objective-C exclusion '{}': expected a directory such as Vendor/Lib/, a "
+                        + "directory name such as **/Pods/ or a file suffix such as *.pb.h", rawPattern);
+            }
+        }
+
+        patternList = StringUtils.join(patterns, ',');
+        suffixLengths = new int[lengths.size()];
+        int i = 0;
+        for (Integer length : lengths) {
+            suffixLengths[i++] = length;
+        }
+        baseDirPrefix = ProjectPaths.baseDirPrefix(fileSystem.baseDir());
+    }
+
+    /**
+     * @param path absolute, or relative to the project base directory
+     */
+    public boolean isExcluded(String path) {
+        if (directories.children.isEmpty() && directoryNames.isEmpty() && suffixLengths.length == 0) {
+            return false;
+        }
+
+        String relativePath = ProjectPaths.relativize(baseDirPrefix, path);
+        return hasExcludedSuffix(relativePath) || isInExcludedDirectory(relativePath);
+    }
+
+    /**
+     * @return a value which changes with the exclusion patterns
+     */
+    public String fingerprint() {
+        return patternList;
+    }
+
+    private boolean hasExcludedSuffix(String path) {
+        for (int length : suffixLengths) {
+            if (path.length() >= length && suffixes.contains(path.substring(path.length() - length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInExcludedDirectory(String path) {
+        // Paths outside of the base directory are only matched by directory names
+        Node node = path.startsWith("/") ? null : directories;
+        int start = path.startsWith("/") ? 1 : 0;
+        int end;
+        while ((end = path.indexOf('/', start)) != -1 || start < path.length()) {
+            String segment = path.substring(start, end == -1 ? path.length() : end);
+            if (end != -1 && directoryNames.contains(segment)) {
+                return true;
+            }
+            if (node != null) {
+                node = node.children.get(segment);
+                if (node != null && node.excluded) {
+                    return true;
+                }
+            }
+            if (end == -1) {
+                break;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the pattern is not supported
+     */
+    private boolean add(String pattern, Set<Integer> lengths) {
+        if (pattern.startsWith(ANY_DIRECTORY)) {
+            String name = trimSlashes(trimAnyFile(pattern.substring(ANY_DIRECTORY.length())));
+            if (name.startsWith("*") && isLiteral(name.substring(1)) && name.indexOf('/') == -1) {
+                // **/*.pb.h
+                return addSuffix(name.substring(1), lengths);
+            }
+            if (name.isEmpty() || !isLiteral(name) || name.indexOf('/') != -1) {
+                return false;
+            }
+            // **/Pods/
+            directoryNames.add(name);
+            return true;
+        }
+        if (pattern.startsWith("*")) {
+            // *.pb.h
+            String suffix = pattern.substring(1);
+            return isLiteral(suffix) && suffix.indexOf('/') == -1 && addSuffix(suffix, lengths);
+        }
+
+        // Vendor/ThirdParty/, or a single file
+        String path = trimSlashes(trimAnyFile(pattern));
+        if (path.isEmpty() || !isLiteral(path)) {
+            return false;
+        }
+        Node node = directories;
+        for (String segment : path.split("/")) {
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        node.excluded = true;
+        return true;
+    }
+
+    private boolean addSuffix(String suffix, Set<Integer> lengths) {
+        if (suffix.isEmpty()) {
+            return false;
+        }
+        suffixes.add(suffix);
+        lengths.add(suffix.length());
+        return true;
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return StringUtils.indexOfAny(pattern, WILDCARDS) == -1;
+    }
+
+    /**
+     * @return the pattern without its trailing <tt>/**</tt>, which stands for the files of a directory
+     */
+    private static String trimAnyFile(String pattern) {
+        return pattern.endsWith(ANY_FILE) ? pattern.substring(0, pattern.length() - ANY_FILE.length()) : pattern;
+    }
+
+    private static String trimSlashes(String pattern) {
+        int start = 0;
+        int end = pattern.length();
+        while (start < end && pattern.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && pattern.charAt(end - 1) == '/') {
+            end--;
+        }
+        return pattern.substring(start, end);
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean excluded;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.staxmate.SMInputFactory;
+import org.codehaus.staxmate.in.SMHierarchicCursor;
+import org.codehaus.stax2.XMLInputFactory2;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.utils.StaxParser;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+import java.io.InputStream;
+
+/**
+ * XML readers shared by the report parsers of this plugin, so that the StAX and DOM factories are looked up and
+ * configured once per analysis rather than once per report.
+ * <p>
+ * The StAX factory is configured as the one of {@link StaxParser}: for low memory usage, without DTDs nor external
+ * entities, and reading undeclared entities such as <tt>&amp;nbsp;</tt>, which some tools write, instead of failing.
+ * It is not coalescing either, and interns element and attribute names. Configured factories are thread-safe; DOM
+ * document builders are not, so each thread gets its own.
+ */
+public class XmlReaders implements BatchExtension {
+    private final SMInputFactory inputFactory;
+    private final ThreadLocal<DocumentBuilder> documentBuilders;
+
+    public XmlReaders() {
+        XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
+        XMLResolver entitiesResolver = new UndeclaredEntitiesResolver();
+        if (xmlFactory instanceof WstxInputFactory) {
+            WstxInputFactory wstxFactory = (WstxInputFactory) xmlFactory;
+            wstxFactory.configureForLowMemUsage();
+            wstxFactory.getConfig().setUndeclaredEntityResolver(entitiesResolver);
+        }
+        xmlFactory.setProperty(XMLInputFactory.RESOLVER, entitiesResolver);
+        xmlFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        xmlFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        xmlFactory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+        xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        xmlFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        if (xmlFactory instanceof XMLInputFactory2) {
+            xmlFactory.setProperty(XMLInputFactory2.P_INTERN_NAMES, Boolean.TRUE);
+        }
+        inputFactory = new SMInputFactory(xmlFactory);
+
+        final DocumentBuilderFactory documentFactory = DocumentBuilderFactory.newInstance();
+        documentFactory.setNamespaceAware(false);
+        documentFactory.setValidating(false);
+        documentFactory.setExpandEntityReferences(false);
+        try {
+            documentFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            documentFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            documentFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            documentFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to configure the XML document builder factory", e);
+        }
+        documentBuilders = new ThreadLocal<DocumentBuilder>() {
+            @Override
+            protected DocumentBuilder initialValue() {
+                try {
+                    return documentFactory.newDocumentBuilder();
+                } catch (ParserConfigurationException e) {
+                    throw new IllegalStateException("Unable to create an XML document builder", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Streams the document to the handler, as {@link StaxParser} does but with the shared factory, closing the
+     * stream once done.
+     */
+    public void stream(InputStream in, StaxParser.XmlStreamHandler handler) throws XMLStreamException {
+        SMHierarchicCursor rootCursor = inputFactory.rootElementCursor(in);
+        try {
+            handler.stream(rootCursor);
+        } finally {
+            rootCursor.getStreamReader().closeCompletely();
+        }
+    }
+
+    /**
+     * @return the document builder of the calling thread, reset for a new document
+     */
+    public DocumentBuilder documentBuilder() {
+        DocumentBuilder builder = documentBuilders.get();
+        builder.reset();
+        return builder;
+    }
+
+    /**
+     * Reads an undeclared entity as its name, or as the character it names when it is a <tt>uXXXX</tt> code point.
+     */
+    private static final class UndeclaredEntitiesResolver implements XMLResolver {
+        @Override
+        public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+            String entity = namespace;
+            if (StringUtils.startsWithIgnoreCase(entity, "u") && entity.length() == 5) {
+                try {
+                    int codePoint = Integer.parseInt(entity.substring(1), 16);
+                    if (Character.isDefined(codePoint)) {
+                        entity = String.valueOf((char) codePoint);
+                    }
+                } catch (NumberFormatException e) {
+                    // Not a code point, such as "uuml"
+                }
+            }
+            return entity;
+        }
+    }
+}
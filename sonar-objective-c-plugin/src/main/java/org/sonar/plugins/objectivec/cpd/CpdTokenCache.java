@@ -0,0 +1,157 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.cpd;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.PostJob;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.objectivec.ObjectiveCConfiguration;
+import org.sonar.objectivec.lexer.ObjectiveCLexer;
+import org.sonar.objectivec.lexer.ThreadSafeLexer;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tokens of the Objective-C files lexed ahead of the CPD engine, on a pool of low-priority daemon threads, so that
+ * {@link ObjectiveCTokenizer} only has to replay them.
+ * <p>
+ * The tokens CPD did not consume, such as those of files it skipped, are dropped once all sensors are done, as a
+ * post job, after which no file is lexed ahead any more.
+ */
+public class CpdTokenCache implements PostJob {
+    public static final String PRE_TOKENIZE_KEY = "sonar.objectivec.cpd.preTokenize";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CpdTokenCache.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Settings settings;
+    private final Charset charset;
+    private final ConcurrentMap<String, FileTokens> tokensByPath = new ConcurrentHashMap<>();
+
+    private volatile boolean consumed;
+    private ExecutorService executor;
+    private long startNanos;
+
+    public CpdTokenCache(FileSystem fileSystem, Settings settings) {
+        this.settings = settings;
+        this.charset = fileSystem.encoding();
+    }
+
+    public boolean isEnabled() {
+        return settings.getBoolean(PRE_TOKENIZE_KEY);
+    }
+
+    /**
+     * Starts lexing the given files in the background; {@link #await()} must be called before the CPD engine runs.
+     */
+    public synchronized void start(Collection<File> files) {
+        if (consumed || executor != null) {
+            LOGGER.debug("CPD already ran or files are already being lexed: no file is pre-tokenized");
+            return;
+        }
+        final ThreadSafeLexer lexer = ObjectiveCLexer.createThreadSafe(new ObjectiveCConfiguration(charset));
+
+        startNanos = System.nanoTime();
+        // One processor is left to the squid scan, which runs meanwhile
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "objectivec-cpd-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        for (final File file : files) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (consumed) {
+                        return;
+                    }
+                    try {
+                        tokensByPath.put(file.getAbsolutePath(), FileTokens.of(lexer.lex(file)));
+                    } catch (RuntimeException e) {
+                        // ObjectiveCTokenizer lexes the file itself and reports the error
+                        LOGGER.debug("Unable to pre-tokenize " + file, e);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    public synchronized void await() {
+        if (executor == null) {
+            return;
+        }
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        LOGGER.info("Pre-tokenized {} files for CPD in {} ms", tokensByPath.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * @return the tokens of the file, which are forgotten, or null if it was not pre-tokenized
+     */
+    @CheckForNull
+    FileTokens remove(String fileName) {
+        return tokensByPath.remove(new File(fileName).getAbsolutePath());
+    }
+
+    /**
+     * Drops the tokens left once CPD ran.
+     */
+    @Override
+    public void executeOn(Project project, SensorContext context) {
+        consumed = true;
+        if (!tokensByPath.isEmpty()) {
+            LOGGER.debug("Dropping the tokens of {} files CPD did not read", tokensByPath.size());
+            tokensByPath.clear();
+        }
+    }
+
+    /**
+     * @return number of files whose tokens are held
+     */
+    int size() {
+        return tokensByPath.size();
+    }
+}
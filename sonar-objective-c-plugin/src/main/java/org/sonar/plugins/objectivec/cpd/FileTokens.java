@@ -0,0 +1,71 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.cpd;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens of one file as CPD needs them: an image and a line per token, with images shared within the file.
+ */
+final class FileTokens {
+    private final String[] images;
+    private final int[] lines;
+
+    private FileTokens(String[] images, int[] lines) {
+        this.images = images;
+        this.lines = lines;
+    }
+
+    static FileTokens of(List<Token> tokens) {
+        int size = tokens.size();
+        // The trailing EOF token is replaced by the CPD one
+        if (size > 0 && tokens.get(size - 1).getType() == GenericTokenType.EOF) {
+            size--;
+        }
+        String[] images = new String[size];
+        int[] lines = new int[size];
+        Map<String, String> distinctImages = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Token token = tokens.get(i);
+            String image = distinctImages.get(token.getValue());
+            if (image == null) {
+                image = token.getValue();
+                distinctImages.put(image, image);
+            }
+            images[i] = image;
+            lines[i] = token.getLine();
+        }
+        return new FileTokens(images, lines);
+    }
+
+    void replay(String fileName, Tokens cpdTokens) {
+        for (int i = 0; i < images.length; i++) {
+            cpdTokens.add(new TokenEntry(images[i], fileName, lines[i]));
+        }
+        cpdTokens.add(TokenEntry.getEOF());
+    }
+}
@@ -30,15 +30,17 @@ import java.nio.charset.Charset;
 public class ObjectiveCCpdMapping extends AbstractCpdMapping {
     private final ObjectiveC language;
     private final Charset charset;
+    private final CpdTokenCache tokenCache;
 
-    public ObjectiveCCpdMapping(ObjectiveC language, FileSystem fileSystem) {
+    public ObjectiveCCpdMapping(ObjectiveC language, FileSystem fileSystem, CpdTokenCache tokenCache) {
         this.language = language;
         this.charset = fileSystem.encoding();
+        this.tokenCache = tokenCache;
     }
 
     @Override
     public Tokenizer getTokenizer() {
-        return new ObjectiveCTokenizer(charset);
+        return new ObjectiveCTokenizer(charset, tokenCache);
     }
 
     @Override
@@ -19,42 +19,44 @@
  */
 package org.sonar.plugins.objectivec.cpd;
 
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
 import net.sourceforge.pmd.cpd.SourceCode;
-import net.sourceforge.pmd.cpd.TokenEntry;
 import net.sourceforge.pmd.cpd.Tokenizer;
 import net.sourceforge.pmd.cpd.Tokens;
 import org.sonar.objectivec.ObjectiveCConfiguration;
 import org.sonar.objectivec.lexer.ObjectiveCLexer;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.List;
 
 public class ObjectiveCTokenizer implements Tokenizer {
 
     private final Charset charset;
+    private final CpdTokenCache tokenCache;
 
     public ObjectiveCTokenizer(Charset charset) {
+        this(charset, null);
+    }
+
+    public ObjectiveCTokenizer(Charset charset, @Nullable CpdTokenCache tokenCache) {
         this.charset = charset;
+        this.tokenCache = tokenCache;
     }
 
     @Override
     public void tokenize(SourceCode source, Tokens cpdTokens) throws IOException {
-        Lexer lexer = ObjectiveCLexer.create(new ObjectiveCConfiguration(charset));
         String fileName = source.getFileName();
-        List<Token> tokens = lexer.lex(new File(fileName));
-        for (Token token : tokens) {
-            TokenEntry cpdToken = new TokenEntry(getTokenImage(token), fileName, token.getLine());
-            cpdTokens.add(cpdToken);
+        FileTokens cachedTokens = tokenCache == null ? null : tokenCache.remove(fileName);
+        if (cachedTokens != null) {
+            cachedTokens.replay(fileName, cpdTokens);
+            return;
         }
-        cpdTokens.add(TokenEntry.getEOF());
-    }
 
-    private String getTokenImage(Token token) {
-        return token.getValue();
+        // Same conversion as for the cached tokens, so that CPD gets the same tokens either way
+        Lexer lexer = ObjectiveCLexer.create(new ObjectiveCConfiguration(charset));
+        FileTokens.of(lexer.lex(new File(fileName))).replay(fileName, cpdTokens);
     }
 
 }
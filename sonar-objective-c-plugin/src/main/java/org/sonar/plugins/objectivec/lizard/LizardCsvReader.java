@@ -0,0 +1,237 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.lizard;
+
+import javax.annotation.CheckForNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming reader of the CSV reports of Lizard, which hold one function per row:
+ * <tt>NLOC,CCN,token,PARAM,length,location,file,function,long_name,start,end</tt>.
+ * <p>
+ * Rows are read straight from the byte buffer: the numbers are parsed in place, the fields which are not used are
+ * skipped without being copied, and the file name is only decoded when it differs from the one of the previous row,
+ * as Lizard writes the functions of a file one after the other. Rows whose CCN is not a number, such as the header,
+ * are skipped.
+ */
+final class LizardCsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int CCN_FIELD = 1;
+    private static final int FILE_FIELD = 6;
+    private static final int LONG_NAME_FIELD = 8;
+    private static final int START_FIELD = 9;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private byte[] fileBytes = new byte[0];
+
+    private int ccn;
+    private String fileName;
+    private boolean fileChanged;
+    private boolean newFile;
+    private String longName;
+    private int startLine;
+
+    LizardCsvReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Moves to the next function of the report.
+     *
+     * @return false once the report is over
+     */
+    boolean next() throws IOException {
+        while (true) {
+            int c = read();
+            while (c == '\n' || c == '\r') {
+                c = read();
+            }
+            if (c < 0) {
+                return false;
+            }
+
+            ccn = -1;
+            startLine = -1;
+            longName = null;
+            boolean hasFile = false;
+            int index = 0;
+            while (true) {
+                c = readField(index, c);
+                if (index == FILE_FIELD) {
+                    hasFile = fieldLength > 0;
+                }
+                if (c != ',') {
+                    break;
+                }
+                index++;
+                c = read();
+            }
+
+            if (ccn >= 0 && hasFile) {
+                newFile = fileChanged;
+                fileChanged = false;
+                return true;
+            }
+        }
+    }
+
+    int getCcn() {
+        return ccn;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return true if the function is not in the same file as the previous one, or is the first one
+     */
+    boolean isNewFile() {
+        return newFile;
+    }
+
+    /**
+     * @return the signature of the function, or null if the row ends before it
+     */
+    @CheckForNull
+    String getLongName() {
+        return longName;
+    }
+
+    /**
+     * @return the line the function starts at, or -1 if unknown
+     */
+    int getStartLine() {
+        return startLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the field starting with the given byte, unquoting it if needed.
+     *
+     * @return the byte which ended the field: a comma, a line break or -1 at the end of the report
+     */
+    private int readField(int index, int first) throws IOException {
+        boolean kept = index == CCN_FIELD || index == FILE_FIELD || index == LONG_NAME_FIELD
+                || index == START_FIELD;
+        fieldLength = 0;
+        int c = first;
+        if (c == '"') {
+            c = read();
+            while (c >= 0) {
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        break;
+                    }
+                }
+                if (kept) {
+                    append(c);
+                }
+                c = read();
+            }
+        }
+        while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+            if (kept) {
+                append(c);
+            }
+            c = read();
+        }
+
+        if (index == CCN_FIELD) {
+            ccn = parseInt();
+        } else if (index == START_FIELD) {
+            startLine = parseInt();
+        } else if (index == FILE_FIELD) {
+            updateFileName();
+        } else if (index == LONG_NAME_FIELD) {
+            longName = new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+        }
+        return c;
+    }
+
+    private void updateFileName() {
+        if (fieldLength == fileBytes.length && fileName != null) {
+            boolean same = true;
+            for (int i = 0; i < fieldLength && same; i++) {
+                same = field[i] == fileBytes[i];
+            }
+            if (same) {
+                return;
+            }
+        }
+        fileBytes = Arrays.copyOf(field, fieldLength);
+        fileName = new String(fileBytes, StandardCharsets.UTF_8);
+        // Also set by the rows which are skipped, so that the next function is not taken for one of their file
+        fileChanged = true;
+    }
+
+    /**
+     * @return the value of the field, or -1 if it is not a positive number
+     */
+    private int parseInt() {
+        if (fieldLength == 0) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < fieldLength; i++) {
+            int digit = field[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private void append(int c) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, fieldLength * 2);
+        }
+        field[fieldLength++] = (byte) c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xff;
+    }
+}
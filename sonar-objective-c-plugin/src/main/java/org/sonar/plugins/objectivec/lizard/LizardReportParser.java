@@ -21,9 +21,6 @@ package org.sonar.plugins.objectivec.lizard;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issue;
@@ -35,6 +32,11 @@ import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rules.ActiveRule;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -42,16 +44,25 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * This class parses xml Reports form the tool Lizard in order to extract this measures:
@@ -71,56 +82,210 @@ public final class LizardReportParser {
     private static final String FUNCTION_MEASURE = "Function";
     private static final String NAME = "name";
     private static final String VALUE = "value";
+    private static final String CACHE_NAME = "lizard";
+    private static final String CSV_EXTENSION = ".csv";
+    private static final int END_TAG = 0;
+    private static final int FILE_TAG = 1;
+    private static final int FUNCTION_TAG = 2;
     private static final int CYCLOMATIC_COMPLEXITY_INDEX = 2;
     private static final int FUNCTIONS_INDEX = 3;
 
+    private static final RuleKey FILE_RULE_KEY = RuleKey.of(LizardRulesDefinition.REPOSITORY_KEY,
+            LizardRulesDefinition.FILE_CYCLOMATIC_COMPLEXITY_RULE_KEY);
+    private static final RuleKey FUNCTION_RULE_KEY = RuleKey.of(LizardRulesDefinition.REPOSITORY_KEY,
+            LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_RULE_KEY);
+
     private static final Number[] FUNCTIONS_DISTRIB_BOTTOM_LIMITS = {1, 2, 4, 6, 8, 10, 12, 20, 30};
     private static final Number[] FILES_DISTRIB_BOTTOM_LIMITS = {0, 5, 10, 20, 30, 60, 90};
 
-    private final FileSystem fileSystem;
-    private final ResourcePerspectives resourcePerspectives;
-    private final RulesProfile rulesProfile;
-    private final SensorContext sensorContext;
-
-    private LizardReportParser(final FileSystem fileSystem, final ResourcePerspectives resourcePerspectives,
-            final RulesProfile rulesProfile, final SensorContext sensorContext) {
-        this.fileSystem = fileSystem;
-        this.resourcePerspectives = resourcePerspectives;
-        this.rulesProfile = rulesProfile;
-        this.sensorContext = sensorContext;
+    private final Thresholds thresholds;
+    private final AnalysisScope analysisScope;
+    private final XmlReaders xmlReaders;
+    private final SensorMetrics metrics;
+
+    private final Map<String, List<ComplexityIssue>> issuesByFile = new HashMap<>();
+
+    private ReportCache.Writer cacheWriter = ReportCache.discard();
+
+    private LizardReportParser(final Thresholds thresholds, final AnalysisScope analysisScope,
+            final XmlReaders xmlReaders, final SensorMetrics metrics) {
+        this.thresholds = thresholds;
+        this.analysisScope = analysisScope;
+        this.xmlReaders = xmlReaders;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Emits the measures and issues of each file of the report, leaving their resolution and persistence to the
+     * caller.
+     *
+     * @param thresholds    thresholds of the active Lizard rules
+     * @param xmlFile       lizard xml report
+     * @param analysisScope files to keep the items of
+     * @param reportCache   cache to replay an unchanged report from
+     * @param xmlReaders    shared XML readers
+     * @param metrics       timers and counters of the calling sensor
+     */
+    static void parseReport(final Thresholds thresholds, final File xmlFile, final AnalysisScope analysisScope,
+            final ReportCache reportCache, final XmlReaders xmlReaders, final SensorMetrics metrics,
+            final Consumer<FileComplexity> sink) {
+        LizardReportParser parser = new LizardReportParser(thresholds, analysisScope, xmlReaders, metrics);
+        Map<String, List<Measure>> result = parser.read(xmlFile, reportCache);
+
+        if (result != null) {
+            for (Map.Entry<String, List<Measure>> entry : result.entrySet()) {
+                List<ComplexityIssue> issues = parser.issuesByFile.get(entry.getKey());
+                sink.accept(new FileComplexity(entry.getKey(), entry.getValue(),
+                        issues == null ? Collections.<ComplexityIssue>emptyList() : issues));
+            }
+        }
+    }
+
+    /**
+     * Parses several reports concurrently, such as the ones of the targets of a workspace, and emits each file once.
+     * A file found in several reports keeps the measures and issues of the report which found the most functions in
+     * it, the first of those reports on a tie.
+     *
+     * @param xmlFiles lizard xml reports, in the order ties are settled
+     */
+    static void parseReports(final Thresholds thresholds, final List<File> xmlFiles,
+            final AnalysisScope analysisScope, final ReportCache reportCache, final XmlReaders xmlReaders,
+            final SensorMetrics metrics, final Consumer<FileComplexity> sink) {
+        if (xmlFiles.size() == 1) {
+            parseReport(thresholds, xmlFiles.get(0), analysisScope, reportCache, xmlReaders, metrics, sink);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(xmlFiles.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<List<FileComplexity>>> results = new ArrayList<>();
+            for (final File xmlFile : xmlFiles) {
+                results.add(executor.submit(() -> {
+                    List<FileComplexity> files = new ArrayList<>();
+                    parseReport(thresholds, xmlFile, analysisScope, reportCache, xmlReaders, metrics, files::add);
+                    return files;
+                }));
+            }
+
+            Map<String, FileComplexity> merged = new LinkedHashMap<>();
+            for (Future<List<FileComplexity>> result : results) {
+                for (FileComplexity file : result.get()) {
+                    FileComplexity previous = merged.get(file.fileName);
+                    if (previous == null) {
+                        merged.put(file.fileName, file);
+                    } else {
+                        metrics.increment(SensorMetrics.DUPLICATES);
+                        if (file.getFunctions() > previous.getFunctions()) {
+                            merged.put(file.fileName, file);
+                        }
+                    }
+                }
+            }
+
+            for (FileComplexity file : merged.values()) {
+                sink.accept(file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing the Lizard reports", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to parse the Lizard reports", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
-     * @param xmlFile lizard xml report
+     * Parses the report, or replays it from the cache, computing the measures and collecting the issues of its files.
+     *
      * @return Map containing as key the name of the file and as value a list containing the measures for that file
      */
     @CheckForNull
-    public static Map<String, List<Measure>> parseReport(final FileSystem fileSystem,
-            final ResourcePerspectives resourcePerspectives, final RulesProfile rulesProfile,
-            final SensorContext sensorContext, final File xmlFile) {
+    private Map<String, List<Measure>> read(final File xmlFile, final ReportCache reportCache) {
         Map<String, List<Measure>> result = null;
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 
+        metrics.increment(SensorMetrics.FILES);
+        metrics.add(SensorMetrics.BYTES, xmlFile.length());
+        ReportCache.Reader cached = reportCache.read(CACHE_NAME, xmlFile);
+        if (cached != null) {
+            try {
+                result = replay(cached);
+                metrics.increment(SensorMetrics.CACHED_REPORTS);
+                return result;
+            } catch (IOException e) {
+                // Nothing was emitted yet
+                LOGGER.warn("Unable to replay the cached measures of {}: the report is parsed", xmlFile, e);
+            }
+        }
         try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(xmlFile);
-            result = new LizardReportParser(fileSystem, resourcePerspectives, rulesProfile, sensorContext).parseFile(document);
+            cacheWriter = reportCache.write(CACHE_NAME, xmlFile);
+            if (isCsv(xmlFile)) {
+                result = parseCsv(xmlFile);
+            } else {
+                DocumentBuilder builder = xmlReaders.documentBuilder();
+                Document document;
+                try (InputStream in = ReportInput.open(xmlFile)) {
+                    document = builder.parse(in, xmlFile.toURI().toString());
+                }
+                result = parseFile(document);
+            }
+            cacheWriter.writeTag(END_TAG);
+            cacheWriter.commit();
         } catch (final FileNotFoundException e) {
             LOGGER.error("Lizard Report not found {}", xmlFile, e);
-        } catch (final IOException | ParserConfigurationException | SAXException e) {
+        } catch (final IOException | SAXException e) {
             LOGGER.error("Error parsing file named {}", xmlFile, e);
+        } finally {
+            cacheWriter.close();
         }
 
         return result;
     }
 
+    /**
+     * @param cached items of a previous parse of the report, of which the ones out of the scope are skipped
+     * @return Map containing as key the name of the file and as value a list containing the measures for that file
+     */
+    private Map<String, List<Measure>> replay(ReportCache.Reader cached) throws IOException {
+        final Map<String, List<Measure>> reportMeasures = new HashMap<>();
+        final Map<String, List<ObjCFunction>> functions = new HashMap<>();
+
+        try (ReportCache.Reader reader = cached) {
+            int tag;
+            while ((tag = reader.readTag()) != END_TAG) {
+                String name = reader.readString();
+                if (tag == FILE_TAG) {
+                    int complexity = reader.readInt();
+                    double fileComplexity = reader.readDouble();
+                    int numberOfFunctions = reader.readInt();
+                    if (isInScope(name)) {
+                        reportMeasures.put(name, buildMeasureList(complexity, fileComplexity, numberOfFunctions));
+                    } else {
+                        metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+                    }
+                } else {
+                    String fileName = reader.readString();
+                    int complexity = reader.readInt();
+                    if (isInScope(fileName)) {
+                        addFunction(functions, fileName, new ObjCFunction(name, complexity));
+                    }
+                }
+            }
+        }
+
+        addComplexityFunctionMeasures(reportMeasures, functions);
+
+        return reportMeasures;
+    }
+
     /**
      * @param document Document object representing the lizard report
      * @return Map containing as key the name of the file and as value a list containing the measures for that file
      */
     private Map<String, List<Measure>> parseFile(Document document) {
         final Map<String, List<Measure>> reportMeasures = new HashMap<>();
-        final List<ObjCFunction> functions = new ArrayList<>();
+        final Map<String, List<ObjCFunction>> functions = new HashMap<>();
 
         NodeList nodeList = document.getElementsByTagName(MEASURE);
 
@@ -144,6 +309,85 @@ public final class LizardReportParser {
         return reportMeasures;
     }
 
+    static boolean isCsv(File report) {
+        return ReportInput.hasExtension(report.getName(), CSV_EXTENSION);
+    }
+
+    /**
+     * Reads a report written by <tt>lizard --csv</tt>, which lists the functions only: the complexity of a file is
+     * the sum of the ones of its functions, and files without functions are left out.
+     *
+     * @return Map containing as key the name of the file and as value a list containing the measures for that file
+     */
+    private Map<String, List<Measure>> parseCsv(File csvFile) throws IOException {
+        final Map<String, int[]> totalsByFile = new HashMap<>();
+        final Set<String> outOfScope = new HashSet<>();
+        final Map<String, List<ObjCFunction>> functions = new HashMap<>();
+
+        try (LizardCsvReader reader = new LizardCsvReader(ReportInput.open(csvFile))) {
+            String fileName = null;
+            boolean inScope = false;
+            int[] totals = null;
+            while (reader.next()) {
+                if (reader.isNewFile()) {
+                    fileName = reader.getFileName();
+                    inScope = isInScope(fileName);
+                    totals = null;
+                    if (!inScope && outOfScope.add(fileName)) {
+                        metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+                    }
+                    // Functions are cached before being checked against the scope, which changes from one build to
+                    // the next
+                    if (inScope || cacheWriter.isEnabled()) {
+                        totals = totalsByFile.get(fileName);
+                        if (totals == null) {
+                            totals = new int[2];
+                            totalsByFile.put(fileName, totals);
+                        }
+                    }
+                }
+                if (totals == null) {
+                    continue;
+                }
+
+                int complexity = reader.getCcn();
+                totals[0] += complexity;
+                totals[1]++;
+
+                String longName = reader.getLongName();
+                int startLine = reader.getStartLine();
+                // The line is left out when unknown, as the issue then goes on the file
+                String name = (longName == null ? "" : longName) + " at " + fileName
+                        + (startLine < 0 ? "" : ":" + startLine);
+                cacheWriter.writeTag(FUNCTION_TAG);
+                cacheWriter.writeString(name);
+                cacheWriter.writeString(fileName);
+                cacheWriter.writeInt(complexity);
+                if (inScope) {
+                    addFunction(functions, fileName, new ObjCFunction(name, complexity));
+                }
+            }
+        }
+
+        final Map<String, List<Measure>> reportMeasures = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : totalsByFile.entrySet()) {
+            int complexity = entry.getValue()[0];
+            int numberOfFunctions = entry.getValue()[1];
+            cacheWriter.writeTag(FILE_TAG);
+            cacheWriter.writeString(entry.getKey());
+            cacheWriter.writeInt(complexity);
+            cacheWriter.writeDouble(complexity);
+            cacheWriter.writeInt(numberOfFunctions);
+            if (!outOfScope.contains(entry.getKey())) {
+                reportMeasures.put(entry.getKey(), buildMeasureList(complexity, complexity, numberOfFunctions));
+            }
+        }
+
+        addComplexityFunctionMeasures(reportMeasures, functions);
+
+        return reportMeasures;
+    }
+
     /**
      * This method extracts the values for COMPLEXITY, FUNCTIONS, FILE_COMPLEXITY
      *
@@ -157,12 +401,26 @@ public final class LizardReportParser {
             if (item.getNodeType() == Node.ELEMENT_NODE) {
                 Element itemElement = (Element) item;
                 String fileName = itemElement.getAttribute(NAME);
+                boolean inScope = isInScope(fileName);
+                if (!inScope) {
+                    metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+                    if (!cacheWriter.isEnabled()) {
+                        continue;
+                    }
+                }
                 NodeList values = itemElement.getElementsByTagName(VALUE);
                 int complexity = Integer.parseInt(values.item(CYCLOMATIC_COMPLEXITY_INDEX).getTextContent());
                 double fileComplexity = Double.parseDouble(values.item(CYCLOMATIC_COMPLEXITY_INDEX).getTextContent());
                 int numberOfFunctions = Integer.parseInt(values.item(FUNCTIONS_INDEX).getTextContent());
 
-                reportMeasures.put(fileName, buildMeasureList(complexity, fileComplexity, numberOfFunctions));
+                cacheWriter.writeTag(FILE_TAG);
+                cacheWriter.writeString(fileName);
+                cacheWriter.writeInt(complexity);
+                cacheWriter.writeDouble(fileComplexity);
+                cacheWriter.writeInt(numberOfFunctions);
+                if (inScope) {
+                    reportMeasures.put(fileName, buildMeasureList(complexity, fileComplexity, numberOfFunctions));
+                }
             }
         }
     }
@@ -186,39 +444,100 @@ public final class LizardReportParser {
 
     /**
      * @param itemList  NodeList of all items in a <measure type=function> tag
-     * @param functions list to save the functions in the NodeList as ObjCFunction objects.
+     * @param functions map to save the functions in the NodeList as ObjCFunction objects, by file
      */
-    private void collectFunctions(NodeList itemList, List<ObjCFunction> functions) {
+    private void collectFunctions(NodeList itemList, Map<String, List<ObjCFunction>> functions) {
         for (int i = 0; i < itemList.getLength(); i++) {
             Node item = itemList.item(i);
             if (item.getNodeType() == Node.ELEMENT_NODE) {
                 Element itemElement = (Element) item;
                 String name = itemElement.getAttribute(NAME);
+                String fileName = functionFileName(name);
+                boolean inScope = isInScope(fileName);
+                if (!inScope && !cacheWriter.isEnabled()) {
+                    continue;
+                }
                 String measure = itemElement.getElementsByTagName(VALUE).item(CYCLOMATIC_COMPLEXITY_INDEX).getTextContent();
-                functions.add(new ObjCFunction(name, Integer.parseInt(measure)));
+                int complexity = Integer.parseInt(measure);
+                cacheWriter.writeTag(FUNCTION_TAG);
+                cacheWriter.writeString(name);
+                cacheWriter.writeString(fileName);
+                cacheWriter.writeInt(complexity);
+                if (inScope) {
+                    addFunction(functions, fileName, new ObjCFunction(name, complexity));
+                }
+            }
+        }
+    }
+
+    private static void addFunction(Map<String, List<ObjCFunction>> functions, String fileName,
+            ObjCFunction function) {
+        List<ObjCFunction> fileFunctions = functions.get(fileName);
+        if (fileFunctions == null) {
+            fileFunctions = new ArrayList<>();
+            functions.put(fileName, fileFunctions);
+        }
+        fileFunctions.add(function);
+    }
+
+    private boolean isInScope(String fileName) {
+        return analysisScope.contains(fileName);
+    }
+
+    /**
+     * @param name function item name, such as <tt>main(...) at ./src/main.m:12</tt>
+     * @return the file of the function, or the whole name if it has no location
+     */
+    /**
+     * @return the line of <code>name at file:line</code>, or null if the name has no line
+     */
+    @CheckForNull
+    private static Integer functionLine(String name) {
+        int atIndex = name.lastIndexOf(" at ");
+        int lastColonIndex = name.lastIndexOf(':');
+        if (atIndex == -1 || lastColonIndex < atIndex || lastColonIndex == name.length() - 1) {
+            return null;
+        }
+        for (int i = lastColonIndex + 1; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return null;
             }
         }
+        return Integer.valueOf(name.substring(lastColonIndex + 1));
+    }
+
+    private static String functionFileName(String name) {
+        int atIndex = name.lastIndexOf(" at ");
+        int lastColonIndex = name.lastIndexOf(':');
+        if (atIndex == -1 || lastColonIndex < atIndex) {
+            return name;
+        }
+        return name.substring(atIndex + " at ".length(), lastColonIndex);
     }
 
     /**
      * @param reportMeasures map to save the measures for the different files
-     * @param functions      list of ObjCFunction to extract the information needed to create
+     * @param functions      ObjCFunction of each file, to extract the information needed to create
      *                       FUNCTION_COMPLEXITY_DISTRIBUTION, FUNCTION_COMPLEXITY, COMPLEXITY_IN_FUNCTIONS
      */
     private void addComplexityFunctionMeasures(Map<String, List<Measure>> reportMeasures,
-            List<ObjCFunction> functions) {
+            Map<String, List<ObjCFunction>> functions) {
+        boolean functionRuleActive = thresholds.isFunctionRuleActive();
         for (Map.Entry<String, List<Measure>> entry : reportMeasures.entrySet()) {
 
             RangeDistributionBuilder complexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, FUNCTIONS_DISTRIB_BOTTOM_LIMITS);
             int count = 0;
             int complexityInFunctions = 0;
 
-            for (ObjCFunction func : functions) {
-                if (func.getName().contains(entry.getKey())) {
+            List<ObjCFunction> fileFunctions = functions.get(entry.getKey());
+            if (fileFunctions != null) {
+                for (ObjCFunction func : fileFunctions) {
                     complexityDistribution.add(func.getCyclomaticComplexity());
                     count++;
                     complexityInFunctions += func.getCyclomaticComplexity();
-                    createFunctionComplexityIssue(entry.getKey(), func);
+                    if (functionRuleActive) {
+                        createFunctionComplexityIssue(entry.getKey(), func);
+                    }
                 }
             }
 
@@ -239,88 +558,79 @@ public final class LizardReportParser {
     }
 
     private void createFileComplexityIssue(String fileName, int complexity) {
-        ActiveRule activeRule = rulesProfile.getActiveRule(
-                LizardRulesDefinition.REPOSITORY_KEY,
-                LizardRulesDefinition.FILE_CYCLOMATIC_COMPLEXITY_RULE_KEY);
-
-        if (activeRule == null) {
+        if (!thresholds.isFileRuleActive()) {
             // Rule is not active
             return;
         }
 
-        int threshold = Integer.parseInt(activeRule.getParameter(LizardRulesDefinition.FILE_CYCLOMATIC_COMPLEXITY_PARAM_KEY));
+        int threshold = thresholds.file;
 
         if (complexity <= threshold) {
             // Complexity is lower or equal to the defined threshold
             return;
         }
 
-        final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(fileName));
-        final Resource resource = inputFile == null ? null : sensorContext.getResource(inputFile);
-
-        if (resource == null) {
-            LOGGER.debug("Skipping file (not found in index): {}", fileName);
-            return;
-        }
-
-        Issuable issuable = resourcePerspectives.as(Issuable.class, resource);
-
-        if (issuable != null) {
-            Issue issue = issuable.newIssueBuilder()
-                    .ruleKey(RuleKey.of(LizardRulesDefinition.REPOSITORY_KEY, LizardRulesDefinition.FILE_CYCLOMATIC_COMPLEXITY_RULE_KEY))
-                    .message(String.format("The Cyclomatic Complexity of this file \"%s\" is %d which is greater than %d authorized.", fileName, complexity, threshold))
-                    .effortToFix((double) (complexity - threshold))
-                    .build();
-
-            issuable.addIssue(issue);
-        }
+        addIssue(fileName, new ComplexityIssue(
+                FILE_RULE_KEY,
+                String.format("The Cyclomatic Complexity of this file \"%s\" is %d which is greater than %d authorized.", fileName, complexity, threshold),
+                null,
+                complexity - threshold));
     }
 
     private void createFunctionComplexityIssue(String fileName, ObjCFunction func) {
-        ActiveRule activeRule = rulesProfile.getActiveRule(
-                LizardRulesDefinition.REPOSITORY_KEY,
-                LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_RULE_KEY);
-
-        if (activeRule == null) {
-            // Rule is not active
-            return;
-        }
-
         int complexity = func.getCyclomaticComplexity();
-        int threshold = Integer.parseInt(activeRule.getParameter(LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_PARAM_KEY));
+        int threshold = thresholds.function;
 
         if (complexity <= threshold) {
             // Complexity is lower or equal to the defined threshold
             return;
         }
 
-        final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(fileName));
-        final Resource resource = inputFile == null ? null : sensorContext.getResource(inputFile);
+        String name = func.getName();
 
-        if (resource == null) {
-            LOGGER.debug("Skipping file (not found in index): {}", fileName);
-            return;
-        }
+        Integer lineNumber = functionLine(name);
 
-        Issuable issuable = resourcePerspectives.as(Issuable.class, resource);
+        int atIndex = name.indexOf(" at ");
+        String functionName = atIndex == -1 ? name : name.substring(0, atIndex);
 
-        if (issuable != null) {
-            String name = func.getName();
-
-            int lastColonIndex = name.lastIndexOf(':');
-            Integer lineNumber = lastColonIndex == -1 ? null : Integer.valueOf(name.substring(lastColonIndex + 1));
+        addIssue(fileName, new ComplexityIssue(
+                FUNCTION_RULE_KEY,
+                String.format("The Cyclomatic Complexity of this function \"%s\" is %d which is greater than %d authorized.", functionName, complexity, threshold),
+                lineNumber,
+                complexity - threshold));
+    }
 
-            int atIndex = name.indexOf(" at ");
-            String functionName = atIndex == -1 ? name : name.substring(0, atIndex);
+    private void addIssue(String fileName, ComplexityIssue issue) {
+        List<ComplexityIssue> issues = issuesByFile.get(fileName);
+        if (issues == null) {
+            issues = new ArrayList<>();
+            issuesByFile.put(fileName, issues);
+        }
+        issues.add(issue);
+    }
 
-            Issue issue = issuable.newIssueBuilder()
-                    .ruleKey(RuleKey.of(LizardRulesDefinition.REPOSITORY_KEY, LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_RULE_KEY))
-                    .message(String.format("The Cyclomatic Complexity of this function \"%s\" is %d which is greater than %d authorized.", functionName, complexity, threshold))
-                    .line(lineNumber)
-                    .effortToFix((double) (complexity - threshold))
-                    .build();
+    /**
+     * Saves the complexity issues of a file.
+     */
+    static void saveIssues(ResourcePerspectives resourcePerspectives, Resource resource,
+            List<ComplexityIssue> issues, SensorMetrics metrics) {
+        if (issues.isEmpty()) {
+            return;
+        }
+        Issuable issuable = resourcePerspectives.as(Issuable.class, resource);
 
-            issuable.addIssue(issue);
+        if (issuable != null) {
+            for (ComplexityIssue complexityIssue : issues) {
+                Issue issue = issuable.newIssueBuilder()
+                        .ruleKey(complexityIssue.ruleKey)
+                        .message(complexityIssue.message)
+                        .line(complexityIssue.line)
+                        .effortToFix((double) complexityIssue.effortToFix)
+                        .build();
+
+                issuable.addIssue(issue);
+                metrics.increment(SensorMetrics.ISSUES);
+            }
         }
     }
 
@@ -339,6 +649,43 @@ public final class LizardReportParser {
         return list;
     }
 
+    /**
+     * Thresholds of the Lizard rules, looked up in the quality profile once per analysis rather than once per file
+     * or function.
+     */
+    static final class Thresholds {
+        private static final int INACTIVE = -1;
+
+        private final int file;
+        private final int function;
+
+        private Thresholds(int file, int function) {
+            this.file = file;
+            this.function = function;
+        }
+
+        static Thresholds of(RulesProfile rulesProfile) {
+            return new Thresholds(
+                    threshold(rulesProfile, LizardRulesDefinition.FILE_CYCLOMATIC_COMPLEXITY_RULE_KEY,
+                            LizardRulesDefinition.FILE_CYCLOMATIC_COMPLEXITY_PARAM_KEY),
+                    threshold(rulesProfile, LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_RULE_KEY,
+                            LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_PARAM_KEY));
+        }
+
+        private static int threshold(RulesProfile rulesProfile, String ruleKey, String paramKey) {
+            ActiveRule activeRule = rulesProfile.getActiveRule(LizardRulesDefinition.REPOSITORY_KEY, ruleKey);
+            return activeRule == null ? INACTIVE : Integer.parseInt(activeRule.getParameter(paramKey));
+        }
+
+        boolean isFileRuleActive() {
+            return file != INACTIVE;
+        }
+
+        boolean isFunctionRuleActive() {
+            return function != INACTIVE;
+        }
+    }
+
     /**
      * helper class to process the information the functions contained in a Lizard report
      */
@@ -360,4 +707,66 @@ public final class LizardReportParser {
         }
 
     }
+
+    /**
+     * Measures and issues of a file of the report.
+     */
+    static final class FileComplexity {
+        private final String fileName;
+        private final List<Measure> measures;
+        private final List<ComplexityIssue> issues;
+
+        private FileComplexity(String fileName, List<Measure> measures, List<ComplexityIssue> issues) {
+            this.fileName = fileName;
+            this.measures = measures;
+            this.issues = issues;
+        }
+
+        String getFileName() {
+            return fileName;
+        }
+
+        List<Measure> getMeasures() {
+            return measures;
+        }
+
+        List<ComplexityIssue> getIssues() {
+            return issues;
+        }
+
+        int getFunctions() {
+            for (Measure measure : measures) {
+                if (measure.getMetric().getKey().equals(CoreMetrics.FUNCTIONS_KEY) && measure.getValue() != null) {
+                    return measure.getValue().intValue();
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Issue of a file, built once the file is resolved.
+     */
+    static final class ComplexityIssue {
+        private final RuleKey ruleKey;
+        private final String message;
+        private final Integer line;
+        private final int effortToFix;
+
+        private ComplexityIssue(RuleKey ruleKey, String message, @Nullable Integer line, int effortToFix) {
+            this.ruleKey = ruleKey;
+            this.message = message;
+            this.line = line;
+            this.effortToFix = effortToFix;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        @CheckForNull
+        Integer getLine() {
+            return line;
+        }
+    }
 }
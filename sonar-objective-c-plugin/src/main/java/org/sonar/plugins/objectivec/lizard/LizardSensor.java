@@ -34,10 +34,32 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.objectivec.api.ObjectiveC;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ImportPipeline;
+import org.sonar.plugins.objectivec.core.MeasureBuffer;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 
+import javax.annotation.CheckForNull;
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This sensor searches for the report generated from the tool Lizard
@@ -51,19 +73,36 @@ public final class LizardSensor implements Sensor {
 
     public static final String REPORT_PATH_KEY = "sonar.objectivec.lizard.reportPath";
 
+    private static final char[] GLOB_CHARS = {'*', '?', '[', '{'};
+    private static final String ANY_DIRECTORY = "**/";
+    private static final String XML_ROOT_ELEMENT = "cppncss";
+    // The header, or the NLOC, CCN, token, PARAM and length of a function
+    private static final Pattern CSV_START = Pattern.compile("NLOC,CCN,.*|\\d+,\\d+,\\d+,\\d+,\\d+,.*");
+    private static final int CSV_START_LENGTH = 256;
+
     private final FileSystem fileSystem;
     private final PathResolver pathResolver;
     private final ResourcePerspectives resourcePerspectives;
     private final RulesProfile rulesProfile;
     private final Settings settings;
+    private final SensorMetricsReporter metricsReporter;
+    private final AnalysisScope analysisScope;
+    private final ReportCache reportCache;
+    private final XmlReaders xmlReaders;
 
     public LizardSensor(final FileSystem fileSystem, final PathResolver pathResolver,
-            final ResourcePerspectives resourcePerspectives, final RulesProfile rulesProfile, final Settings settings) {
+            final ResourcePerspectives resourcePerspectives, final RulesProfile rulesProfile, final Settings settings,
+            final SensorMetricsReporter metricsReporter, final AnalysisScope analysisScope,
+            final ReportCache reportCache, final XmlReaders xmlReaders) {
         this.fileSystem = fileSystem;
         this.pathResolver = pathResolver;
         this.resourcePerspectives = resourcePerspectives;
         this.rulesProfile = rulesProfile;
         this.settings = settings;
+        this.metricsReporter = metricsReporter;
+        this.analysisScope = analysisScope;
+        this.reportCache = reportCache;
+        this.xmlReaders = xmlReaders;
     }
 
     @Override
@@ -75,41 +114,178 @@ public final class LizardSensor implements Sensor {
     @Override
     public void analyse(Project project, SensorContext context) {
         String path = settings.getString(REPORT_PATH_KEY);
-        File report = pathResolver.relativeFile(fileSystem.baseDir(), path);
+        List<File> reports = getReports(path);
 
-        if (!report.isFile()) {
-            LOGGER.warn("Lizard report not found at {}", report);
+        if (reports.isEmpty()) {
+            LOGGER.warn("Lizard report not found at {}", path);
             return;
         }
 
-        LOGGER.info("parsing {}", report);
-        Map<String, List<Measure>> measures = LizardReportParser.parseReport(fileSystem, resourcePerspectives,
-                rulesProfile, context, report);
+        LOGGER.info("parsing {}", reports);
+        SensorMetrics metrics = metricsReporter.start(toString());
+        final LizardReportParser.Thresholds thresholds = LizardReportParser.Thresholds.of(rulesProfile);
+        final MeasureBuffer measureBuffer = new MeasureBuffer(context, metrics);
 
-        if (measures == null) {
-            return;
+        try {
+            new ImportPipeline<LizardReportParser.FileComplexity, ResolvedComplexity>(metrics).run(
+                    sink -> LizardReportParser.parseReports(thresholds, reports, analysisScope, reportCache,
+                            xmlReaders, metrics, sink),
+                    fileComplexity -> resolve(context, fileComplexity, metrics),
+                    resolved -> save(resolved, measureBuffer, metrics));
+            measureBuffer.flush();
+        } finally {
+            metricsReporter.finish(metrics);
         }
+    }
 
-        LOGGER.info("Saving results of complexity analysis");
-        saveMeasures(context, measures);
+    /**
+     * @param path a report, a directory holding reports among the files of other tools, or a glob pattern of
+     *             reports, relative to the base directory or absolute; a leading <tt>**&#47;</tt> also matches the
+     *             reports of the directory itself
+     * @return the existing reports, sorted by path
+     */
+    List<File> getReports(String path) {
+        // Backslashes are separators, not glob escapes, so that Windows paths work too
+        String normalizedPath = path.replace('\\', '/');
+        int globIndex = StringUtils.indexOfAny(normalizedPath, GLOB_CHARS);
+        if (globIndex >= 0) {
+            int separatorIndex = normalizedPath.lastIndexOf('/', globIndex);
+            File dir = separatorIndex < 0 ? fileSystem.baseDir()
+                    : pathResolver.relativeFile(fileSystem.baseDir(), normalizedPath.substring(0, separatorIndex + 1));
+            return findReports(dir, normalizedPath.substring(separatorIndex + 1));
+        }
+
+        File report = pathResolver.relativeFile(fileSystem.baseDir(), normalizedPath);
+        if (report.isDirectory()) {
+            // Unlike a glob, which names the reports, a directory may also hold the XML and CSV files of other tools
+            return findReports(report, "*").stream()
+                    .filter(this::isLizardReport)
+                    .collect(Collectors.toList());
+        }
+        report = ReportInput.locate(report);
+        return report.isFile() ? Collections.singletonList(report) : Collections.<File>emptyList();
     }
 
-    private void saveMeasures(SensorContext context, final Map<String, List<Measure>> measures) {
-        for (Map.Entry<String, List<Measure>> entry : measures.entrySet()) {
-            final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(entry.getKey()));
-            final Resource resource = inputFile == null ? null : context.getResource(inputFile);
+    private static List<File> findReports(File dir, String pattern) {
+        if (!dir.isDirectory()) {
+            return Collections.emptyList();
+        }
+        final Path root = dir.toPath();
+        final PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + pattern);
+        // A glob "**/" requires a directory, whereas the reports of the root should match too
+        final PathMatcher rootMatcher = pattern.startsWith(ANY_DIRECTORY)
+                ? root.getFileSystem().getPathMatcher("glob:" + pattern.substring(ANY_DIRECTORY.length()))
+                : matcher;
+        // A plain directory holds its reports at its root, a glob may reach into its subdirectories
+        int maxDepth = pattern.contains("/") || pattern.contains("**") ? Integer.MAX_VALUE : 1;
+        try (Stream<Path> paths = Files.walk(root, maxDepth)) {
+            List<File> reports = paths
+                    .filter(Files::isRegularFile)
+                    .filter(report -> {
+                        Path relativePath = root.relativize(report);
+                        return matcher.matches(relativePath)
+                                || relativePath.getNameCount() == 1 && rootMatcher.matches(relativePath);
+                    })
+                    .filter(report -> isReport(report.getFileName().toString()))
+                    .map(Path::toFile)
+                    .collect(Collectors.toCollection(ArrayList::new));
+            Collections.sort(reports);
+            return reports;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to list the Lizard reports of " + dir, e);
+        }
+    }
 
-            if (resource != null) {
-                for (Measure measure : entry.getValue()) {
-                    LOGGER.debug("Save measure {} for file {}", measure.getMetric().getName(), resource.getPath());
-                    context.saveMeasure(resource, measure);
+    /**
+     * @return whether the report is a <tt>cppncss</tt> document or starts with a row of <tt>lizard --csv</tt>
+     */
+    private boolean isLizardReport(File report) {
+        boolean lizardReport;
+        try {
+            if (LizardReportParser.isCsv(report)) {
+                lizardReport = CSV_START.matcher(readStart(report)).matches();
+            } else {
+                final String[] rootElement = new String[1];
+                try (InputStream in = ReportInput.open(report)) {
+                    xmlReaders.stream(in, rootCursor -> {
+                        rootCursor.advance();
+                        rootElement[0] = rootCursor.getLocalName();
+                    });
                 }
+                lizardReport = XML_ROOT_ELEMENT.equals(rootElement[0]);
+            }
+        } catch (IOException | XMLStreamException e) {
+            LOGGER.debug("Unable to read {}", report, e);
+            lizardReport = false;
+        }
+        if (!lizardReport) {
+            LOGGER.info("Skipping {}, which is not a Lizard report", report);
+        }
+        return lizardReport;
+    }
+
+    /**
+     * @return the first line of the report, cut to a few hundred characters
+     */
+    private static String readStart(File report) throws IOException {
+        char[] start = new char[CSV_START_LENGTH];
+        int length = 0;
+        try (Reader reader = new InputStreamReader(ReportInput.open(report), StandardCharsets.UTF_8)) {
+            int read;
+            while (length < start.length && (read = reader.read(start, length, start.length - length)) >= 0) {
+                length += read;
             }
         }
+        int lineLength = 0;
+        while (lineLength < length && start[lineLength] != '\n' && start[lineLength] != '\r') {
+            lineLength++;
+        }
+        return new String(start, 0, lineLength);
+    }
+
+    private static boolean isReport(String fileName) {
+        return ReportInput.hasExtension(fileName, ".xml") || ReportInput.hasExtension(fileName, ".csv");
+    }
+
+    @CheckForNull
+    private ResolvedComplexity resolve(SensorContext context, LizardReportParser.FileComplexity fileComplexity,
+            SensorMetrics metrics) {
+        String fileName = fileComplexity.getFileName();
+        final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(fileName));
+        final Resource resource = inputFile == null ? null : context.getResource(inputFile);
+
+        if (resource == null) {
+            LOGGER.debug("Skipping file (not found in index): {}", fileName);
+            metrics.increment(SensorMetrics.UNRESOLVED_PATHS);
+            return null;
+        }
+        return new ResolvedComplexity(fileComplexity, inputFile, resource);
+    }
+
+    private void save(ResolvedComplexity resolved, MeasureBuffer measureBuffer, SensorMetrics metrics) {
+        for (Measure measure : resolved.fileComplexity.getMeasures()) {
+            LOGGER.debug("Save measure {} for file {}", measure.getMetric().getName(), resolved.resource.getPath());
+            measureBuffer.add(resolved.inputFile, measure);
+        }
+        LizardReportParser.saveIssues(resourcePerspectives, resolved.resource, resolved.fileComplexity.getIssues(),
+                metrics);
     }
 
     @Override
     public String toString() {
         return "Objective-C Lizard Sensor";
     }
+
+    private static final class ResolvedComplexity {
+        private final LizardReportParser.FileComplexity fileComplexity;
+        private final InputFile inputFile;
+        private final Resource resource;
+
+        private ResolvedComplexity(LizardReportParser.FileComplexity fileComplexity, InputFile inputFile,
+                Resource resource) {
+            this.fileComplexity = fileComplexity;
+            this.inputFile = inputFile;
+            this.resource = resource;
+        }
+    }
 }
@@ -33,79 +33,224 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.api.utils.XmlParserException;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ImportPipeline;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 
+import javax.annotation.CheckForNull;
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 final class OCLintParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(OCLintParser.class);
 
+    private static final String CACHE_NAME = "oclint";
+    private static final int END_TAG = 0;
+    private static final int FILE_TAG = 1;
+    private static final int VIOLATION_TAG = 2;
+
     private final FileSystem fileSystem;
     private final SensorContext context;
     private final ResourcePerspectives resourcePerspectives;
+    private final AnalysisScope analysisScope;
+    private final ReportCache reportCache;
+    private final XmlReaders xmlReaders;
+    private final SensorMetrics metrics;
+
+    // Only used by the resolve stage: a file comes back once per violation
+    private final Map<String, Resource> resources = new HashMap<>();
+
+    // Written by the parse stage, committed once every violation is saved
+    private ReportCache.Writer cacheWriter = ReportCache.discard();
 
     private OCLintParser(final FileSystem fileSystem, final SensorContext context,
-            final ResourcePerspectives resourcePerspectives) {
+            final ResourcePerspectives resourcePerspectives, final AnalysisScope analysisScope,
+            final ReportCache reportCache, final XmlReaders xmlReaders, final SensorMetrics metrics) {
         this.fileSystem = fileSystem;
         this.context = context;
         this.resourcePerspectives = resourcePerspectives;
+        this.analysisScope = analysisScope;
+        this.reportCache = reportCache;
+        this.xmlReaders = xmlReaders;
+        this.metrics = metrics;
     }
 
     public static void parseReport(File xmlFile, FileSystem fileSystem, SensorContext context,
-            ResourcePerspectives resourcePerspectives) {
-        new OCLintParser(fileSystem, context, resourcePerspectives).parse(xmlFile);
+            ResourcePerspectives resourcePerspectives, AnalysisScope analysisScope, ReportCache reportCache,
+            XmlReaders xmlReaders, SensorMetrics metrics) {
+        new OCLintParser(fileSystem, context, resourcePerspectives, analysisScope, reportCache, xmlReaders, metrics)
+                .parse(xmlFile);
+    }
+
+
+    private void parse(final File xmlFile) {
+        metrics.increment(SensorMetrics.FILES);
+        metrics.add(SensorMetrics.BYTES, xmlFile.length());
+
+        // Violations are cached before being checked against the scope, which changes from one build to the next
+        final ReportCache.Reader cached = reportCache.read(CACHE_NAME, xmlFile);
+        if (cached == null) {
+            cacheWriter = reportCache.write(CACHE_NAME, xmlFile);
+        } else {
+            metrics.increment(SensorMetrics.CACHED_REPORTS);
+        }
+
+        try {
+            new ImportPipeline<Violation, ResolvedViolation>(metrics).run(
+                    sink -> {
+                        if (cached != null) {
+                            replay(xmlFile, cached, sink);
+                        } else {
+                            parseXml(xmlFile, sink);
+                        }
+                    },
+                    this::resolve,
+                    this::save);
+            cacheWriter.writeTag(END_TAG);
+            cacheWriter.commit();
+        } finally {
+            cacheWriter.close();
+        }
     }
 
+    /**
+     * Emits the violations of a previous parse of the report which are in the scope.
+     */
+    private void replay(File xmlFile, ReportCache.Reader cached, Consumer<Violation> sink) {
+        try (ReportCache.Reader reader = cached) {
+            String filePath = null;
+            boolean inScope = false;
+            int tag;
+            while ((tag = reader.readTag()) != END_TAG) {
+                if (tag == FILE_TAG) {
+                    filePath = reader.readString();
+                    inScope = isInScope(filePath);
+                } else {
+                    String rule = reader.readString();
+                    int lineNumber = reader.readInt();
+                    String message = reader.readString();
+                    if (inScope) {
+                        sink.accept(new Violation(filePath, rule, lineNumber, message));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to replay the cached issues of " + xmlFile, e);
+        }
+    }
 
-    private void parse(File xmlFile) {
+    private void parseXml(File xmlFile, final Consumer<Violation> sink) {
         try {
-            StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
+            StaxParser.XmlStreamHandler handler = new StaxParser.XmlStreamHandler() {
                 @Override
                 public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
                     rootCursor.advance();
-                    collectFiles(rootCursor.childElementCursor("file"));
+                    collectFiles(rootCursor.childElementCursor("file"), sink);
                 }
-            });
-            parser.parse(xmlFile);
+            };
+            try (InputStream in = ReportInput.open(xmlFile)) {
+                xmlReaders.stream(in, handler);
+            }
         } catch (XMLStreamException e) {
             throw new XmlParserException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the OCLint report " + xmlFile, e);
         }
     }
 
-    private void collectFiles(final SMInputCursor file) throws XMLStreamException {
+    private void collectFiles(final SMInputCursor file, final Consumer<Violation> sink) throws XMLStreamException {
         while (null != file.getNext()) {
             final String filePath = file.getAttrValue("name");
+            final boolean inScope = isInScope(filePath);
             LOGGER.debug("Collecting issues for {}", filePath);
+            cacheWriter.writeTag(FILE_TAG);
+            cacheWriter.writeString(filePath);
 
-            final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(filePath));
-            final Resource resource = inputFile == null ? null : context.getResource(inputFile);
-
-            if (resource != null) {
-                LOGGER.debug("File {} was found in the project.", filePath);
-                collectFileIssues(resource, file);
+            final SMInputCursor line = file.childElementCursor("violation");
+            while (line.getNext() != null) {
+                String rule = line.getAttrValue("rule");
+                int lineNumber = Integer.parseInt(line.getAttrValue("beginline"));
+                String message = line.getElemStringValue();
+                cacheWriter.writeTag(VIOLATION_TAG);
+                cacheWriter.writeString(rule);
+                cacheWriter.writeInt(lineNumber);
+                cacheWriter.writeString(message);
+                if (inScope) {
+                    sink.accept(new Violation(filePath, rule, lineNumber, message));
+                }
             }
         }
     }
 
-    private void collectFileIssues(final Resource resource, final SMInputCursor file) throws XMLStreamException {
-        final SMInputCursor line = file.childElementCursor("violation");
+    private boolean isInScope(String filePath) {
+        if (analysisScope.contains(filePath)) {
+            return true;
+        }
+        metrics.increment(SensorMetrics.OUT_OF_SCOPE);
+        return false;
+    }
 
-        while (line.getNext() != null) {
-            recordIssue(resource, line);
+    @CheckForNull
+    private ResolvedViolation resolve(Violation violation) {
+        Resource resource = resources.get(violation.filePath);
+        if (resource == null && !resources.containsKey(violation.filePath)) {
+            final InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(violation.filePath));
+            resource = inputFile == null ? null : context.getResource(inputFile);
+            if (resource != null) {
+                LOGGER.debug("File {} was found in the project.", violation.filePath);
+            } else {
+                metrics.increment(SensorMetrics.UNRESOLVED_PATHS);
+            }
+            resources.put(violation.filePath, resource);
         }
+        return resource == null ? null : new ResolvedViolation(violation, resource);
     }
 
-    private void recordIssue(final Resource resource, final SMInputCursor line) throws XMLStreamException {
-        Issuable issuable = resourcePerspectives.as(Issuable.class, resource);
+    private void save(ResolvedViolation resolved) {
+        Violation violation = resolved.violation;
+        Issuable issuable = resourcePerspectives.as(Issuable.class, resolved.resource);
 
         if (issuable != null) {
             Issue issue = issuable.newIssueBuilder()
-                    .ruleKey(RuleKey.of(OCLintRulesDefinition.REPOSITORY_KEY, line.getAttrValue("rule")))
-                    .line(Integer.valueOf(line.getAttrValue("beginline")))
-                    .message(line.getElemStringValue())
+                    .ruleKey(RuleKey.of(OCLintRulesDefinition.REPOSITORY_KEY, violation.rule))
+                    .line(violation.line)
+                    .message(violation.message)
                     .build();
 
             issuable.addIssue(issue);
+            metrics.increment(SensorMetrics.ISSUES);
+        }
+    }
+
+    private static final class Violation {
+        private final String filePath;
+        private final String rule;
+        private final int line;
+        private final String message;
+
+        private Violation(String filePath, String rule, int line, String message) {
+            this.filePath = filePath;
+            this.rule = rule;
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    private static final class ResolvedViolation {
+        private final Violation violation;
+        private final Resource resource;
+
+        private ResolvedViolation(Violation violation, Resource resource) {
+            this.violation = violation;
+            this.resource = resource;
         }
     }
 }
@@ -22,18 +22,36 @@ package org.sonar.plugins.objectivec.oclint;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
 import org.sonar.plugins.objectivec.api.ObjectiveC;
+import org.sonar.plugins.objectivec.core.RulesSnapshot;
 import org.sonar.squidbridge.rules.SqaleXmlLoader;
 
 public final class OCLintRulesDefinition implements RulesDefinition {
     public static final String REPOSITORY_KEY = "OCLint";
     public static final String REPOSITORY_NAME = REPOSITORY_KEY;
 
+    /**
+     * Class path of the snapshot of the rules, generated from their XML files by {@code RulesSnapshotGenerator} in
+     * builds with the <tt>rules-snapshots</tt> profile.
+     */
+    public static final String SNAPSHOT_RESOURCE = "/org/sonar/plugins/objectivec/rules-oclint.bin";
+
     @Override
     public void define(Context context) {
         NewRepository repository = context
                 .createRepository(REPOSITORY_KEY, ObjectiveC.KEY)
                 .setName(REPOSITORY_NAME);
 
+        if (!RulesSnapshot.load(repository, SNAPSHOT_RESOURCE)) {
+            loadXml(repository);
+        }
+
+        repository.done();
+    }
+
+    /**
+     * Loads the rules and their debt from the XML files the snapshot is generated from.
+     */
+    public static void loadXml(NewRepository repository) {
         RulesDefinitionXmlLoader ruleLoader = new RulesDefinitionXmlLoader();
         ruleLoader.load(
                 repository,
@@ -41,7 +59,5 @@ public final class OCLintRulesDefinition implements RulesDefinition {
                 "UTF-8");
 
         SqaleXmlLoader.load(repository, "/com/sonar/sqale/oclint-model.xml");
-
-        repository.done();
     }
 }
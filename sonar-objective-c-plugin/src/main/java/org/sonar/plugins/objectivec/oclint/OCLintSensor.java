@@ -29,6 +29,12 @@ import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 
 import java.io.File;
 
@@ -41,13 +47,23 @@ public final class OCLintSensor implements Sensor {
     private final PathResolver pathResolver;
     private final ResourcePerspectives resourcePerspectives;
     private final Settings settings;
+    private final SensorMetricsReporter metricsReporter;
+    private final AnalysisScope analysisScope;
+    private final ReportCache reportCache;
+    private final XmlReaders xmlReaders;
 
     public OCLintSensor(final FileSystem fileSystem, final PathResolver pathResolver,
-            final ResourcePerspectives resourcePerspectives, final Settings settings) {
+            final ResourcePerspectives resourcePerspectives, final Settings settings,
+            final SensorMetricsReporter metricsReporter, final AnalysisScope analysisScope,
+            final ReportCache reportCache, final XmlReaders xmlReaders) {
         this.fileSystem = fileSystem;
         this.pathResolver = pathResolver;
         this.resourcePerspectives = resourcePerspectives;
         this.settings = settings;
+        this.metricsReporter = metricsReporter;
+        this.analysisScope = analysisScope;
+        this.reportCache = reportCache;
+        this.xmlReaders = xmlReaders;
     }
 
     @Override
@@ -58,7 +74,7 @@ public final class OCLintSensor implements Sensor {
     @Override
     public void analyse(final Project project, final SensorContext context) {
         String path = settings.getString(REPORT_PATH_KEY);
-        File report = pathResolver.relativeFile(fileSystem.baseDir(), path);
+        File report = ReportInput.locate(pathResolver.relativeFile(fileSystem.baseDir(), path));
 
         if (!report.isFile()) {
             LOGGER.warn("OCLint report not found at {}", report);
@@ -66,7 +82,13 @@ public final class OCLintSensor implements Sensor {
         }
 
         LOGGER.info("parsing {}", report);
-        OCLintParser.parseReport(report, fileSystem, context, resourcePerspectives);
+        SensorMetrics metrics = metricsReporter.start(toString());
+        try {
+            OCLintParser.parseReport(report, fileSystem, context, resourcePerspectives, analysisScope, reportCache,
+                    xmlReaders, metrics);
+        } finally {
+            metricsReporter.finish(metrics);
+        }
     }
 
     @Override
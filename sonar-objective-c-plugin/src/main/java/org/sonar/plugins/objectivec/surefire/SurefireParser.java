@@ -33,17 +33,28 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.test.MutableTestPlan;
 import org.sonar.api.test.TestCase;
 import org.sonar.api.utils.ParsingUtils;
-import org.sonar.api.utils.StaxParser;
+import org.sonar.plugins.objectivec.core.ImportPipeline;
+import org.sonar.plugins.objectivec.core.MeasureBuffer;
+import org.sonar.plugins.objectivec.core.ReportInput;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 import org.sonar.plugins.objectivec.surefire.data.SurefireStaxHandler;
+import org.sonar.plugins.objectivec.surefire.data.UnitTestClassListener;
 import org.sonar.plugins.objectivec.surefire.data.UnitTestClassReport;
 import org.sonar.plugins.objectivec.surefire.data.UnitTestIndex;
 import org.sonar.plugins.objectivec.surefire.data.UnitTestResult;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public final class SurefireParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(SurefireParser.class);
@@ -51,12 +62,32 @@ public final class SurefireParser {
     private final FileSystem fileSystem;
     private final SensorContext context;
     private final ResourcePerspectives perspectives;
+    private final XmlReaders xmlReaders;
+    private final SensorMetrics metrics;
+    private final int maxStackTraceLength;
+    private final MeasureBuffer measureBuffer;
+
+    // Test classes come back in many reports, and looking their file up is costly
+    private final Map<String, InputFile> inputFiles = new HashMap<>();
 
     public SurefireParser(FileSystem fileSystem, ResourcePerspectives perspectives,
-            SensorContext context) {
+            SensorContext context, XmlReaders xmlReaders, SensorMetrics metrics) {
+        this(fileSystem, perspectives, context, xmlReaders, metrics, 0);
+    }
+
+    /**
+     * @param maxStackTraceLength if positive, messages and stack traces are truncated to that many characters and
+     *                            test cases are saved suite by suite instead of once all reports are read
+     */
+    public SurefireParser(FileSystem fileSystem, ResourcePerspectives perspectives,
+            SensorContext context, XmlReaders xmlReaders, SensorMetrics metrics, int maxStackTraceLength) {
         this.fileSystem = fileSystem;
         this.perspectives = perspectives;
         this.context = context;
+        this.xmlReaders = xmlReaders;
+        this.metrics = metrics;
+        this.maxStackTraceLength = maxStackTraceLength;
+        this.measureBuffer = new MeasureBuffer(context, metrics);
     }
 
     public void collect(File reportsDir) {
@@ -77,7 +108,7 @@ public final class SurefireParser {
         return dir.listFiles(new FilenameFilter() {
             @Override
             public boolean accept(File dir, String name) {
-                return name.startsWith("TEST") && name.endsWith(".xml");
+                return name.startsWith("TEST") && ReportInput.hasExtension(name, ".xml");
             }
         });
     }
@@ -86,20 +117,41 @@ public final class SurefireParser {
         context.saveMeasure(CoreMetrics.TESTS, 0.0);
     }
 
-    private void parseFiles(File[] reports) {
-        UnitTestIndex index = new UnitTestIndex();
-        parseFiles(reports, index);
-        sanitize(index);
-        save(index);
+    private void parseFiles(final File[] reports) {
+        final long[] negativeTimeTestNumber = new long[1];
+
+        new ImportPipeline<ClassRecord, ResolvedClassRecord>(metrics).run(
+                sink -> {
+                    UnitTestIndex index = new UnitTestIndex();
+                    parseFiles(reports, index, sink);
+                    sanitize(index);
+                    for (Map.Entry<String, UnitTestClassReport> entry : index.getIndexByClassname().entrySet()) {
+                        UnitTestClassReport report = entry.getValue();
+                        if (report.getTests() > 0) {
+                            negativeTimeTestNumber[0] += report.getNegativeTimeTestNumber();
+                            sink.accept(new ClassRecord(entry.getKey(), report, null));
+                        }
+                    }
+                },
+                this::resolve,
+                this::save);
+        measureBuffer.flush();
+
+        if (negativeTimeTestNumber[0] > 0) {
+            LOGGER.warn("There is {} test(s) reported with negative time by surefire, total duration may not be accurate.", negativeTimeTestNumber[0]);
+        }
     }
 
-    private static void parseFiles(File[] reports, UnitTestIndex index) {
-        SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
-        StaxParser parser = new StaxParser(staxParser, false);
+    private void parseFiles(File[] reports, UnitTestIndex index, Consumer<ClassRecord> sink) {
+        SurefireStaxHandler staxParser = maxStackTraceLength > 0
+                ? new SurefireStaxHandler(index, maxStackTraceLength, new StreamingListener(sink))
+                : new SurefireStaxHandler(index);
         for (File report : reports) {
-            try {
-                parser.parse(report);
-            } catch (XMLStreamException e) {
+            metrics.increment(SensorMetrics.FILES);
+            metrics.add(SensorMetrics.BYTES, report.length());
+            try (InputStream in = ReportInput.open(report)) {
+                xmlReaders.stream(in, staxParser);
+            } catch (XMLStreamException | IOException e) {
                 throw new IllegalStateException("Fail to parse the Surefire report: " + report, e);
             }
         }
@@ -115,42 +167,50 @@ public final class SurefireParser {
         }
     }
 
-    private void save(UnitTestIndex index) {
-        long negativeTimeTestNumber = 0;
-        for (Map.Entry<String, UnitTestClassReport> entry : index.getIndexByClassname().entrySet()) {
-            UnitTestClassReport report = entry.getValue();
-            if (report.getTests() > 0) {
-                negativeTimeTestNumber += report.getNegativeTimeTestNumber();
-                Resource resource = getUnitTestResource(entry.getKey());
-                if (resource != null) {
-                    save(report, resource);
-                } else {
-                    LOGGER.warn("Resource not found: {}", entry.getKey());
-                }
+    @CheckForNull
+    private ResolvedClassRecord resolve(ClassRecord record) {
+        InputFile inputFile = getUnitTestInputFile(record.classname);
+        Resource resource = inputFile == null ? null : context.getResource(inputFile);
+        if (resource == null) {
+            if (record.results == null) {
+                LOGGER.warn("Resource not found: {}", record.classname);
+                metrics.increment(SensorMetrics.UNRESOLVED_PATHS);
             }
+            return null;
         }
-        if (negativeTimeTestNumber > 0) {
-            LOGGER.warn("There is {} test(s) reported with negative time by surefire, total duration may not be accurate.", negativeTimeTestNumber);
+        return new ResolvedClassRecord(record, inputFile, resource);
+    }
+
+    private void save(ResolvedClassRecord resolved) {
+        ClassRecord record = resolved.record;
+        if (record.results != null) {
+            saveResults(resolved.resource, record.results);
+        } else {
+            save(record.report, resolved.inputFile, resolved.resource);
         }
     }
 
-    private void save(UnitTestClassReport report, Resource resource) {
+    private void save(UnitTestClassReport report, InputFile inputFile, Resource resource) {
         double testsCount = report.getTests() - report.getSkipped();
-        saveMeasure(resource, CoreMetrics.SKIPPED_TESTS, report.getSkipped());
-        saveMeasure(resource, CoreMetrics.TESTS, testsCount);
-        saveMeasure(resource, CoreMetrics.TEST_ERRORS, report.getErrors());
-        saveMeasure(resource, CoreMetrics.TEST_FAILURES, report.getFailures());
-        saveMeasure(resource, CoreMetrics.TEST_EXECUTION_TIME, report.getDurationMilliseconds());
+        saveMeasure(inputFile, CoreMetrics.SKIPPED_TESTS, report.getSkipped());
+        saveMeasure(inputFile, CoreMetrics.TESTS, testsCount);
+        saveMeasure(inputFile, CoreMetrics.TEST_ERRORS, report.getErrors());
+        saveMeasure(inputFile, CoreMetrics.TEST_FAILURES, report.getFailures());
+        saveMeasure(inputFile, CoreMetrics.TEST_EXECUTION_TIME, report.getDurationMilliseconds());
         double passedTests = testsCount - report.getErrors() - report.getFailures();
         if (testsCount > 0) {
             double percentage = passedTests * 100d / testsCount;
-            saveMeasure(resource, CoreMetrics.TEST_SUCCESS_DENSITY, ParsingUtils.scaleValue(percentage));
+            saveMeasure(inputFile, CoreMetrics.TEST_SUCCESS_DENSITY, ParsingUtils.scaleValue(percentage));
         }
         saveResults(resource, report);
     }
 
     protected void saveResults(Resource testFile, UnitTestClassReport report) {
-        for (UnitTestResult unitTestResult : report.getResults()) {
+        saveResults(testFile, report.getResults());
+    }
+
+    private void saveResults(Resource testFile, List<UnitTestResult> results) {
+        for (UnitTestResult unitTestResult : results) {
             MutableTestPlan testPlan = perspectives.as(MutableTestPlan.class, testFile);
             if (testPlan != null) {
                 testPlan.addTestCase(unitTestResult.getName())
@@ -164,6 +224,22 @@ public final class SurefireParser {
     }
 
     public Resource getUnitTestResource(String classname) {
+        InputFile inputFile = getUnitTestInputFile(classname);
+        return inputFile == null ? null : context.getResource(inputFile);
+    }
+
+    @CheckForNull
+    private InputFile getUnitTestInputFile(String classname) {
+        if (inputFiles.containsKey(classname)) {
+            return inputFiles.get(classname);
+        }
+        InputFile inputFile = findUnitTestInputFile(classname);
+        inputFiles.put(classname, inputFile);
+        return inputFile;
+    }
+
+    @CheckForNull
+    private InputFile findUnitTestInputFile(String classname) {
         String fileName = classname.replace('.', '/') + ".m";
 
         InputFile inputFile = fileSystem.inputFile(fileSystem.predicates().hasPath(fileName));
@@ -188,12 +264,55 @@ public final class SurefireParser {
             }
         }
 
-        return inputFile == null ? null : context.getResource(inputFile);
+        return inputFile;
     }
 
-    private void saveMeasure(Resource resource, Metric metric, double value) {
+    private void saveMeasure(InputFile inputFile, Metric metric, double value) {
         if (!Double.isNaN(value)) {
-            context.saveMeasure(resource, metric, value);
+            measureBuffer.add(inputFile, metric, value);
+        }
+    }
+
+    /**
+     * Emits the test cases of a class as soon as a suite is read, keeping only its counters for the measures.
+     */
+    private static final class StreamingListener implements UnitTestClassListener {
+        private final Consumer<ClassRecord> sink;
+
+        private StreamingListener(Consumer<ClassRecord> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void resultsParsed(String classname, UnitTestClassReport report) {
+            sink.accept(new ClassRecord(classname, report, report.drainResults()));
+        }
+    }
+
+    /**
+     * Either the test cases of a suite, or the whole report of a class once all suites are read.
+     */
+    private static final class ClassRecord {
+        private final String classname;
+        private final UnitTestClassReport report;
+        private final List<UnitTestResult> results;
+
+        private ClassRecord(String classname, UnitTestClassReport report, @Nullable List<UnitTestResult> results) {
+            this.classname = classname;
+            this.report = report;
+            this.results = results;
+        }
+    }
+
+    private static final class ResolvedClassRecord {
+        private final ClassRecord record;
+        private final InputFile inputFile;
+        private final Resource resource;
+
+        private ResolvedClassRecord(ClassRecord record, InputFile inputFile, Resource resource) {
+            this.record = record;
+            this.inputFile = inputFile;
+            this.resource = resource;
         }
     }
 }
@@ -29,6 +29,9 @@ import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 
 import java.io.File;
 
@@ -36,18 +39,23 @@ public final class SurefireSensor implements Sensor {
     private static final Logger LOGGER = LoggerFactory.getLogger(SurefireSensor.class);
 
     public static final String REPORTS_PATH_KEY = "sonar.objectivec.junit.reportsPath";
+    public static final String MAX_STACK_TRACE_LENGTH_KEY = "sonar.objectivec.junit.maxStackTraceLength";
 
     private final FileSystem fileSystem;
     private final PathResolver pathResolver;
     private final ResourcePerspectives resourcePerspectives;
     private final Settings settings;
+    private final SensorMetricsReporter metricsReporter;
+    private final XmlReaders xmlReaders;
 
     public SurefireSensor(FileSystem fileSystem, PathResolver pathResolver, ResourcePerspectives resourcePerspectives,
-            Settings settings) {
+            Settings settings, SensorMetricsReporter metricsReporter, XmlReaders xmlReaders) {
         this.fileSystem = fileSystem;
         this.pathResolver = pathResolver;
         this.resourcePerspectives = resourcePerspectives;
         this.settings = settings;
+        this.metricsReporter = metricsReporter;
+        this.xmlReaders = xmlReaders;
     }
 
     @Override
@@ -70,7 +78,14 @@ public final class SurefireSensor implements Sensor {
 
     protected void collect(SensorContext context, File reportsDir) {
         LOGGER.info("parsing {}", reportsDir);
-        new SurefireParser(fileSystem, resourcePerspectives, context).collect(reportsDir);
+        SensorMetrics metrics = metricsReporter.start(toString());
+        int maxStackTraceLength = Math.max(0, settings.getInt(MAX_STACK_TRACE_LENGTH_KEY));
+        try {
+            new SurefireParser(fileSystem, resourcePerspectives, context, xmlReaders, metrics, maxStackTraceLength)
+                    .collect(reportsDir);
+        } finally {
+            metricsReporter.finish(metrics);
+        }
     }
 
     @Override
@@ -27,16 +27,33 @@ import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.utils.ParsingUtils;
 import org.sonar.api.utils.StaxParser.XmlStreamHandler;
 
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 import java.text.ParseException;
+import java.util.LinkedHashSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class SurefireStaxHandler implements XmlStreamHandler {
 
     private final UnitTestIndex index;
+    private final int maxStackTraceLength;
+    private final UnitTestClassListener listener;
 
     public SurefireStaxHandler(UnitTestIndex index) {
+        this(index, 0, null);
+    }
+
+    /**
+     * @param maxStackTraceLength number of characters kept from each message and stack trace, 0 to keep them whole
+     * @param listener if not null, notified of the classes of each suite as soon as it is read; classes of nested
+     *                 classes are then indexed under their outer class
+     */
+    public SurefireStaxHandler(UnitTestIndex index, int maxStackTraceLength,
+            @Nullable UnitTestClassListener listener) {
         this.index = index;
+        this.maxStackTraceLength = maxStackTraceLength;
+        this.listener = listener;
     }
 
     @Override
@@ -50,15 +67,24 @@ public class SurefireStaxHandler implements XmlStreamHandler {
                     // test suites for inner classes are ignored
                     return;
                 }
+                Set<String> suiteClassNames = new LinkedHashSet<>();
                 SMInputCursor testCase = testSuite.childCursor(new ElementFilter("testcase"));
                 SMEvent event;
                 for (event = testCase.getNext(); event != null; event = testCase.getNext()) {
                     if (event.compareTo(SMEvent.START_ELEMENT) == 0) {
                         String testClassName = getClassname(testCase, testSuiteClassName);
+                        if (listener != null) {
+                            // Surefire reports classes whereas sonar supports files
+                            testClassName = StringUtils.substringBefore(testClassName, "$");
+                            suiteClassNames.add(testClassName);
+                        }
                         UnitTestClassReport classReport = index.index(testClassName);
                         parseTestCase(testCase, classReport);
                     }
                 }
+                for (String className : suiteClassNames) {
+                    listener.resultsParsed(className, index.get(className));
+                }
             }
         }
     }
@@ -72,19 +98,58 @@ public class SurefireStaxHandler implements XmlStreamHandler {
         return StringUtils.defaultIfBlank(testClassName, defaultClassname);
     }
 
-    private static void parseTestCase(SMInputCursor testCaseCursor,
+    private void parseTestCase(SMInputCursor testCaseCursor,
             UnitTestClassReport report) throws XMLStreamException {
         report.add(parseTestResult(testCaseCursor));
     }
 
-    private static void setStackAndMessage(UnitTestResult result,
+    private void setStackAndMessage(UnitTestResult result,
             SMInputCursor stackAndMessageCursor) throws XMLStreamException {
-        result.setMessage(stackAndMessageCursor.getAttrValue("message"));
-        String stack = stackAndMessageCursor.collectDescendantText();
-        result.setStackTrace(stack);
+        if (maxStackTraceLength > 0) {
+            result.setMessage(truncate(stackAndMessageCursor.getAttrValue("message")));
+            result.setStackTrace(collectTruncatedText(stackAndMessageCursor));
+        } else {
+            result.setMessage(stackAndMessageCursor.getAttrValue("message"));
+            String stack = stackAndMessageCursor.collectDescendantText();
+            result.setStackTrace(stack);
+        }
+    }
+
+    @Nullable
+    private String truncate(@Nullable String text) {
+        if (text == null || text.length() <= maxStackTraceLength) {
+            return text;
+        }
+        return text.substring(0, maxStackTraceLength) + truncationNote(text.length());
+    }
+
+    /**
+     * Same as {@link SMInputCursor#collectDescendantText()}, without ever holding more than the kept characters.
+     */
+    private String collectTruncatedText(SMInputCursor cursor) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        long length = 0L;
+        SMInputCursor textCursor = cursor.descendantMixedCursor();
+        while (textCursor.getNext() != null) {
+            if (textCursor.getCurrEvent().isTextualEvent()) {
+                String chunk = textCursor.getText();
+                length += chunk.length();
+                if (text.length() < maxStackTraceLength) {
+                    text.append(chunk, 0, Math.min(chunk.length(), maxStackTraceLength - text.length()));
+                }
+            }
+        }
+        if (length > maxStackTraceLength) {
+            text.append(truncationNote(length));
+        }
+        return text.toString();
+    }
+
+    private String truncationNote(long length) {
+        return "\n... " + (length - maxStackTraceLength) + " more characters";
     }
 
-    private static UnitTestResult parseTestResult(SMInputCursor testCaseCursor) throws XMLStreamException {
+    private UnitTestResult parseTestResult(SMInputCursor testCaseCursor) throws XMLStreamException {
         UnitTestResult detail = new UnitTestResult();
         String name = getTestCaseName(testCaseCursor);
         detail.setName(name);
@@ -99,4 +99,13 @@ public final class UnitTestClassReport {
         }
         return results;
     }
+
+    /**
+     * Returns the results added since the last call and forgets them. Counters are kept.
+     */
+    public List<UnitTestResult> drainResults() {
+        List<UnitTestResult> drained = getResults();
+        results = null;
+        return drained;
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.Grammar;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.source.Highlightable;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.api.ObjectiveC;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.IdenticalFiles;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.cpd.CpdTokenCache;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.checks.SquidCheck;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ObjectiveCSquidSensorTest {
+    private static final String ORIGINAL = "@interface Foo : NSObject\n@end\n";
+    private static final String OTHER = "@interface Bar : NSObject\n@end\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DefaultFileSystem fileSystem = new DefaultFileSystem();
+    private final SensorContext context = mock(SensorContext.class);
+    private final ResourcePerspectives resourcePerspectives = mock(ResourcePerspectives.class);
+    // Measures saved by the sensor, by file then by metric
+    private final Map<String, Map<String, Double>> measures = new HashMap<>();
+    private final Map<String, Issuable> issuables = new HashMap<>();
+    private final SensorMetrics metrics = new SensorMetrics("test");
+
+    @Test
+    public void shouldNotCountFinalLineBreakAsLine() throws IOException {
+        assertThat(ObjectiveCSquidSensor.countLines(write("a\nb\n"))).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCountLastLineWithoutLineBreak() throws IOException {
+        assertThat(ObjectiveCSquidSensor.countLines(write("a\nb"))).isEqualTo(2);
+        assertThat(ObjectiveCSquidSensor.countLines(write("a\r\n\r\nb"))).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldCountNoLineInEmptyFile() throws IOException {
+        assertThat(ObjectiveCSquidSensor.countLines(write(""))).isEqualTo(0);
+    }
+
+    @Test
+    public void identicalFilesShouldGetTheMeasuresOfTheScannedFile() throws IOException {
+        addSourceFile("Pods/A/Foo.h", ORIGINAL);
+        addSourceFile("Pods/B/Foo.h", ORIGINAL);
+        addSourceFile("App/Bar.h", OTHER);
+
+        analyse();
+
+        assertThat(metrics.get(SensorMetrics.IDENTICAL_FILES)).isEqualTo(1);
+        assertThat(measures.get("Pods/A/Foo.h")).isNotEmpty();
+        assertThat(measures.get("Pods/B/Foo.h")).isEqualTo(measures.get("Pods/A/Foo.h"));
+        assertThat(measures.get("App/Bar.h")).isNotEmpty();
+    }
+
+    @Test
+    public void identicalFilesShouldGetTheIssuesOfTheScannedFile() throws IOException {
+        addSourceFile("Pods/A/Foo.h", ORIGINAL);
+        addSourceFile("Pods/B/Foo.h", ORIGINAL);
+        addSourceFile("App/Bar.h", OTHER);
+        ObjectiveCSquidSensor sensor = analyse();
+
+        // No Objective-C check is defined yet, so the scanned file is given an issue of its own
+        File scanned = IdenticalFiles.find(ImmutableList.copyOf(fileSystem.files(fileSystem.predicates().all())))
+                .keySet().iterator().next();
+        SourceFile squidFile = new SourceFile(scanned.getPath());
+        squidFile.log(new CheckMessage(new SquidCheck<Grammar>() {
+        }, "Issue"));
+        sensor.save(scanned, squidFile, true);
+
+        verify(issuables.get("Pods/A/Foo.h")).addIssue(any(Issue.class));
+        verify(issuables.get("Pods/B/Foo.h")).addIssue(any(Issue.class));
+        verify(issuables.get("App/Bar.h"), never()).addIssue(any(Issue.class));
+    }
+
+    @Test
+    public void filesOfTheSameSizeShouldBeScannedOnTheirOwn() throws IOException {
+        File foo = addSourceFile("App/Foo.h", ORIGINAL);
+        File bar = addSourceFile("App/Bar.h", OTHER);
+        assertThat(foo.length()).isEqualTo(bar.length());
+
+        analyse();
+
+        assertThat(metrics.get(SensorMetrics.IDENTICAL_FILES)).isEqualTo(0);
+        verify(context, times(1)).saveMeasure(inputFile("App/Foo.h"), CoreMetrics.FILES, 1.0);
+        verify(context, times(1)).saveMeasure(inputFile("App/Bar.h"), CoreMetrics.FILES, 1.0);
+    }
+
+    private File addSourceFile(String relativePath, String content) throws IOException {
+        File file = new File(folder.getRoot(), relativePath);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        DefaultInputFile inputFile = new DefaultInputFile(relativePath)
+                .setAbsolutePath(file.getAbsolutePath())
+                .setFile(file)
+                .setLanguage(ObjectiveC.KEY)
+                .setType(InputFile.Type.MAIN);
+        fileSystem.add(inputFile);
+
+        Resource resource = mock(Resource.class);
+        when(context.getResource(inputFile)).thenReturn(resource);
+        Issuable issuable = mock(Issuable.class);
+        when(issuable.newIssueBuilder()).thenReturn(mock(Issuable.IssueBuilder.class, Mockito.RETURNS_DEEP_STUBS));
+        when(resourcePerspectives.as(Issuable.class, resource)).thenReturn(issuable);
+        when(resourcePerspectives.as(Highlightable.class, inputFile))
+                .thenReturn(mock(Highlightable.class, Mockito.RETURNS_DEEP_STUBS));
+        issuables.put(relativePath, issuable);
+        return file;
+    }
+
+    private InputFile inputFile(String relativePath) {
+        return fileSystem.inputFile(fileSystem.predicates().hasRelativePath(relativePath));
+    }
+
+    private ObjectiveCSquidSensor analyse() {
+        fileSystem.setBaseDir(folder.getRoot());
+        fileSystem.setEncoding(StandardCharsets.UTF_8);
+        Answer<Object> recordMeasure = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                Object[] arguments = invocation.getArguments();
+                String relativePath = ((InputFile) arguments[0]).relativePath();
+                Map<String, Double> fileMeasures = measures.get(relativePath);
+                if (fileMeasures == null) {
+                    fileMeasures = new HashMap<>();
+                    measures.put(relativePath, fileMeasures);
+                }
+                fileMeasures.put(((Metric) arguments[1]).getKey(), (Double) arguments[2]);
+                return null;
+            }
+        };
+        when(context.saveMeasure(any(InputFile.class), any(Metric.class), anyDouble())).thenAnswer(recordMeasure);
+        AnalysisScope analysisScope = mock(AnalysisScope.class);
+        when(analysisScope.contains(any(File.class))).thenReturn(true);
+        Settings settings = new Settings();
+        SensorMetricsReporter metricsReporter = mock(SensorMetricsReporter.class);
+        when(metricsReporter.start(anyString())).thenReturn(metrics);
+
+        ObjectiveCSquidSensor sensor = new ObjectiveCSquidSensor(new CheckFactory(new ActiveRulesBuilder().build()),
+                fileSystem, resourcePerspectives, new PathResolver(), metricsReporter, settings,
+                new CpdTokenCache(fileSystem, settings), analysisScope);
+        sensor.analyse(new Project("test"), context);
+        return sensor;
+    }
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec;
+
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.plugins.objectivec.api.ObjectiveC;
+import org.sonar.plugins.objectivec.clang.ClangRulesDefinition;
+import org.sonar.plugins.objectivec.core.RulesSnapshot;
+import org.sonar.plugins.objectivec.oclint.OCLintRulesDefinition;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Generates the snapshots of the Clang and OCLint rules repositories from their XML files, into the classes
+ * directory given as argument. Run once the test classes are compiled by the <tt>rules-snapshots</tt> profile, so
+ * that the snapshots are packaged with the plugin without being versioned nor shipped with their generator.
+ */
+public final class RulesSnapshotGenerator {
+    private RulesSnapshotGenerator() {
+        // Prevents outside instantiation
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: RulesSnapshotGenerator <classes directory>");
+        }
+        File classesDir = new File(args[0]);
+        RulesDefinition.Context context = new RulesDefinition.Context();
+
+        RulesDefinition.NewRepository clang = context
+                .createRepository(ClangRulesDefinition.REPOSITORY_KEY, ObjectiveC.KEY)
+                .setName(ClangRulesDefinition.REPOSITORY_NAME);
+        ClangRulesDefinition.loadXml(clang);
+        clang.done();
+
+        RulesDefinition.NewRepository oclint = context
+                .createRepository(OCLintRulesDefinition.REPOSITORY_KEY, ObjectiveC.KEY)
+                .setName(OCLintRulesDefinition.REPOSITORY_NAME);
+        OCLintRulesDefinition.loadXml(oclint);
+        oclint.done();
+
+        RulesSnapshot.write(context.repository(ClangRulesDefinition.REPOSITORY_KEY),
+                new File(classesDir, ClangRulesDefinition.SNAPSHOT_RESOURCE));
+        RulesSnapshot.write(context.repository(OCLintRulesDefinition.REPOSITORY_KEY),
+                new File(classesDir, OCLintRulesDefinition.SNAPSHOT_RESOURCE));
+    }
+}
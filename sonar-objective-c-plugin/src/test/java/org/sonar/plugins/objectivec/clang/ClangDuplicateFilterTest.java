@@ -0,0 +1,83 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.clang;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClangDuplicateFilterTest {
+    private static final int MAX_LINE = (1 << 20) - 1;
+    private static final int MAX_TYPES = 1 << 12;
+
+    private final ClangDuplicateFilter filter = new ClangDuplicateFilter();
+
+    @Test
+    public void shouldReportAWarningOnce() {
+        assertThat(filter.isNew("/App/A.h", 10, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 10, "Dead store")).isFalse();
+    }
+
+    @Test
+    public void shouldTellWarningsApartByFileLineAndType() {
+        assertThat(filter.isNew("/App/A.h", 10, "Dead store")).isTrue();
+
+        assertThat(filter.isNew("/App/B.h", 10, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 11, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 10, "Memory leak")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 0, "Dead store")).isTrue();
+    }
+
+    @Test
+    public void shouldNotMixTheFieldsOfThePackedKey() {
+        // Neighbouring values of each field of the key, and the largest line
+        assertThat(filter.isNew("/App/A.h", 0, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 1, "Memory leak")).isTrue();
+        assertThat(filter.isNew("/App/B.h", 0, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", MAX_LINE, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 0, "Memory leak")).isTrue();
+
+        assertThat(filter.isNew("/App/A.h", MAX_LINE, "Dead store")).isFalse();
+        assertThat(filter.isNew("/App/B.h", 0, "Dead store")).isFalse();
+    }
+
+    @Test
+    public void shouldNeverFilterLinesPastTheKeyRange() {
+        assertThat(filter.isNew("/App/A.h", MAX_LINE + 1, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", MAX_LINE + 1, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", -1, "Dead store")).isTrue();
+        assertThat(filter.isNew("/App/A.h", -1, "Dead store")).isTrue();
+
+        // Nor are they taken for the line they would wrap to
+        assertThat(filter.isNew("/App/A.h", 0, "Dead store")).isTrue();
+    }
+
+    @Test
+    public void shouldNeverFilterTypesPastTheKeyRange() {
+        for (int i = 0; i < MAX_TYPES; i++) {
+            assertThat(filter.isNew("/App/A.h", 1, "type " + i)).isTrue();
+        }
+
+        assertThat(filter.isNew("/App/A.h", 1, "one type too many")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 1, "one type too many")).isTrue();
+        assertThat(filter.isNew("/App/A.h", 1, "type 0")).isFalse();
+        assertThat(filter.isNew("/App/A.h", 1, "type " + (MAX_TYPES - 1))).isFalse();
+    }
+}
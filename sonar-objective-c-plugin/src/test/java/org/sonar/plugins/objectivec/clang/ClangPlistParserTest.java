@@ -0,0 +1,291 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.clang;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClangPlistParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File reportsDir;
+    private File cacheDir;
+    private AnalysisScope analysisScope;
+    private ReportCache reportCache;
+
+    @Before
+    public void setUp() throws IOException {
+        reportsDir = folder.newFolder("reports");
+        cacheDir = folder.newFolder("cache");
+        analysisScope = mock(AnalysisScope.class);
+        when(analysisScope.contains(anyString())).thenReturn(true);
+
+        DefaultFileSystem fileSystem = new DefaultFileSystem();
+        fileSystem.setBaseDir(folder.getRoot());
+        Settings settings = new Settings();
+        settings.setProperty(ReportCache.PATH_KEY, cacheDir.getPath());
+        reportCache = new ReportCache(fileSystem, new PathResolver(), settings);
+    }
+
+    private File writeReport(String name, String file, int line, long lastModified) throws IOException {
+        return writePlist(name, lastModified, new String[] {file},
+                diagnostic("Dereference of null pointer", "core.NullDereference", 0, line));
+    }
+
+    private File writePlist(String name, long lastModified, String[] files, String... diagnostics)
+            throws IOException {
+        StringBuilder plist = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<plist version=\"1.0\"><dict><key>files</key><array>");
+        for (String file : files) {
+            plist.append("<string>").append(file).append("</string>");
+        }
+        plist.append("</array><key>diagnostics</key><array>");
+        for (String diagnostic : diagnostics) {
+            plist.append(diagnostic);
+        }
+        plist.append("</array></dict></plist>");
+
+        File report = new File(reportsDir, name);
+        Files.write(report.toPath(), plist.toString().getBytes(StandardCharsets.UTF_8));
+        report.setLastModified(lastModified);
+        return report;
+    }
+
+    private static String diagnostic(String type, String checkName, int fileIndex, int line) {
+        return "<dict>"
+                + "<key>category</key><string>Logic error</string>"
+                + "<key>type</key><string>" + type + "</string>"
+                + (checkName == null ? "" : "<key>check_name</key><string>" + checkName + "</string>")
+                + "<key>location</key><dict>"
+                + "<key>line</key><integer>" + line + "</integer>"
+                + "<key>col</key><integer>5</integer>"
+                + "<key>file</key><integer>" + fileIndex + "</integer>"
+                + "</dict></dict>";
+    }
+
+    /**
+     * Runs an analysis with the report cache, as the sensor and its post job do.
+     *
+     * @return the location of each warning, as file:line
+     */
+    private List<String> analyse(SensorMetrics metrics) {
+        List<String> locations = new ArrayList<>();
+        for (ClangWarning warning : analyseWarnings(metrics)) {
+            locations.add(warning.getFile().getPath() + ':' + warning.getLine());
+        }
+        return locations;
+    }
+
+    private List<ClangWarning> analyseWarnings(SensorMetrics metrics) {
+        List<ClangWarning> warnings = new ArrayList<>();
+        ClangPlistParser.parse(reportsDir, analysisScope, reportCache, metrics, warnings::add);
+        reportCache.executeOn(new Project("test"), null);
+        return warnings;
+    }
+
+    @Test
+    public void warningsShouldBeStreamedFromEachDiagnostic() throws IOException {
+        writePlist("a.plist", 1000000L, new String[] {"App/A.m", "App/B.m"},
+                diagnostic("Dead assignment", "deadcode.DeadStores", 1, 4),
+                diagnostic("Dereference of null pointer", null, 0, 9),
+                diagnostic("Dead assignment", "deadcode.DeadStores", 1, 12));
+
+        SensorMetrics metrics = new SensorMetrics("test");
+        List<ClangWarning> warnings = analyseWarnings(metrics);
+
+        assertThat(warnings).hasSize(3);
+        ClangWarning first = warnings.get(0);
+        assertThat(first.getCategory()).isEqualTo("Logic error");
+        assertThat(first.getFile().getPath()).isEqualTo("App/B.m");
+        assertThat(first.getLine()).isEqualTo(4);
+        assertThat(first.getType()).isEqualTo("Dead assignment");
+        assertThat(first.getCheckName()).isEqualTo("deadcode.DeadStores");
+        ClangWarning second = warnings.get(1);
+        assertThat(second.getFile().getPath()).isEqualTo("App/A.m");
+        assertThat(second.getCheckName()).isNull();
+        // Warnings on the same file of a report share its file
+        assertThat(warnings.get(2).getFile()).isSameAs(first.getFile());
+        assertThat(metrics.get(SensorMetrics.FILES)).isEqualTo(1);
+    }
+
+    @Test
+    public void stringsShouldBeSharedAcrossReports() throws IOException {
+        writePlist("a.plist", 1000000L, new String[] {"App/A.m"},
+                diagnostic("Dead assignment", "deadcode.DeadStores", 0, 4));
+        writePlist("b.plist", 1000000L, new String[] {"App/B.m"},
+                diagnostic("Dead assignment", "deadcode.DeadStores", 0, 7));
+
+        List<ClangWarning> warnings = analyseWarnings(new SensorMetrics("test"));
+
+        assertThat(warnings).hasSize(2);
+        assertThat(warnings.get(1).getCategory()).isSameAs(warnings.get(0).getCategory());
+        assertThat(warnings.get(1).getType()).isSameAs(warnings.get(0).getType());
+        assertThat(warnings.get(1).getCheckName()).isSameAs(warnings.get(0).getCheckName());
+    }
+
+    @Test
+    public void warningsOutOfScopeShouldBeCountedAndSkipped() throws IOException {
+        writePlist("a.plist", 1000000L, new String[] {"App/A.m", "Pods/P.m"},
+                diagnostic("Dead assignment", null, 1, 4),
+                diagnostic("Dead assignment", null, 0, 9),
+                diagnostic("Dead assignment", null, 1, 12));
+        when(analysisScope.contains("Pods/P.m")).thenReturn(false);
+
+        SensorMetrics metrics = new SensorMetrics("test");
+        assertThat(analyse(metrics)).containsOnly("App/A.m:9");
+        assertThat(metrics.get(SensorMetrics.OUT_OF_SCOPE)).isEqualTo(2);
+    }
+
+    @Test
+    public void unreadableReportsShouldBeSkipped() throws IOException {
+        writeReport("a.plist", "App/A.m", 3, 1000000L);
+        Files.write(new File(reportsDir, "broken.plist").toPath(), "<plist><dict>".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(reportsDir, "notes.txt").toPath(), "not a report".getBytes(StandardCharsets.UTF_8));
+
+        SensorMetrics metrics = new SensorMetrics("test");
+        assertThat(analyse(metrics)).containsOnly("App/A.m:3");
+        assertThat(metrics.get(SensorMetrics.FILES)).isEqualTo(2);
+        assertThat(metrics.get(SensorMetrics.SKIPPED_FILES)).isEqualTo(1);
+        // Only the report which could be read is cached
+        assertThat(cacheDir.list()).hasSize(1);
+    }
+
+    @Test
+    public void unchangedReportsShouldBeReplayed() throws IOException {
+        writeReport("a.plist", "App/A.m", 3, 1000000L);
+        writeReport("b.plist", "App/B.m", 7, 1000000L);
+        List<String> parsed = analyse(new SensorMetrics("test"));
+
+        SensorMetrics metrics = new SensorMetrics("test");
+        List<String> replayed = analyse(metrics);
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(2);
+        assertThat(replayed).containsOnly("App/A.m:3", "App/B.m:7");
+        assertThat(replayed).hasSize(parsed.size());
+    }
+
+    @Test
+    public void addedReportsShouldBeParsed() throws IOException {
+        writeReport("a.plist", "App/A.m", 3, 1000000L);
+        analyse(new SensorMetrics("test"));
+
+        writeReport("b.plist", "App/B.m", 7, 1000000L);
+        SensorMetrics metrics = new SensorMetrics("test");
+        List<String> warnings = analyse(metrics);
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(1);
+        assertThat(warnings).containsOnly("App/A.m:3", "App/B.m:7");
+    }
+
+    @Test
+    public void modifiedReportsShouldBeParsedAgain() throws IOException {
+        writeReport("a.plist", "App/A.m", 3, 1000000L);
+        writeReport("b.plist", "App/B.m", 7, 1000000L);
+        analyse(new SensorMetrics("test"));
+
+        writeReport("b.plist", "App/B.m", 8, 2000000L);
+        SensorMetrics metrics = new SensorMetrics("test");
+        List<String> warnings = analyse(metrics);
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(1);
+        assertThat(warnings).containsOnly("App/A.m:3", "App/B.m:8");
+
+        // The new warnings are the ones cached
+        SensorMetrics replayedMetrics = new SensorMetrics("test");
+        assertThat(analyse(replayedMetrics)).containsOnly("App/A.m:3", "App/B.m:8");
+        assertThat(replayedMetrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(2);
+    }
+
+    @Test
+    public void deletedReportsShouldBeDropped() throws IOException {
+        writeReport("a.plist", "App/A.m", 3, 1000000L);
+        File deleted = writeReport("b.plist", "App/B.m", 7, 1000000L);
+        analyse(new SensorMetrics("test"));
+        assertThat(cacheDir.list()).hasSize(2);
+
+        assertThat(deleted.delete()).isTrue();
+        SensorMetrics metrics = new SensorMetrics("test");
+        assertThat(analyse(metrics)).containsOnly("App/A.m:3");
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(1);
+        assertThat(cacheDir.list()).hasSize(1);
+
+        // Not even an identical report comes back from the cache
+        writeReport("b.plist", "App/B.m", 7, 1000000L);
+        metrics = new SensorMetrics("test");
+        assertThat(analyse(metrics)).containsOnly("App/A.m:3", "App/B.m:7");
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(1);
+    }
+
+    @Test
+    public void reportsShouldBeReplayedWhenTheScopeChanges() throws IOException {
+        writeReport("a.plist", "App/A.m", 3, 1000000L);
+        writeReport("b.plist", "App/B.m", 7, 1000000L);
+        when(analysisScope.contains("App/B.m")).thenReturn(false);
+        assertThat(analyse(new SensorMetrics("test"))).containsOnly("App/A.m:3");
+
+        when(analysisScope.contains("App/A.m")).thenReturn(false);
+        when(analysisScope.contains("App/B.m")).thenReturn(true);
+        SensorMetrics metrics = new SensorMetrics("test");
+        List<String> warnings = analyse(metrics);
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(2);
+        assertThat(metrics.get(SensorMetrics.OUT_OF_SCOPE)).isEqualTo(1);
+        assertThat(warnings).containsOnly("App/B.m:7");
+    }
+
+    @Test
+    public void damagedCacheShouldFallBackToParsing() throws IOException {
+        writeReport("a.plist", "App/A.m", 3, 1000000L);
+        analyse(new SensorMetrics("test"));
+        File cacheFile = cacheDir.listFiles()[0];
+        byte[] cached = Files.readAllBytes(cacheFile.toPath());
+        Files.write(cacheFile.toPath(), Arrays.copyOf(cached, cached.length / 2));
+
+        SensorMetrics metrics = new SensorMetrics("test");
+        List<String> warnings = analyse(metrics);
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(0);
+        assertThat(warnings).containsOnly("App/A.m:3");
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.clang;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.MapAssert.entry;
+
+public class ClangRuleResolverTest {
+
+    private static String rule(ClangRuleResolver resolver, String checkName, String type) {
+        return resolver.resolve(checkName, type).rule();
+    }
+
+    private static ClangRuleResolver resolver(String... mappings) {
+        return new ClangRuleResolver(mappings);
+    }
+
+    @Test
+    public void shouldResolveBuiltInTypesAndCheckers() {
+        ClangRuleResolver resolver = resolver();
+
+        assertThat(rule(resolver, null, "Dead assignment")).isEqualTo("deadcode.DeadStores");
+        assertThat(rule(resolver, null, "Use-after-release")).isEqualTo("osx.cocoa.RetainCount");
+        assertThat(rule(resolver, "core.uninitialized.ArraySubscript", "Unknown"))
+                .isEqualTo("core.uninitialized.Assign");
+        // Checkers named like a rule
+        assertThat(rule(resolver, "deadcode.DeadStores", "Unknown")).isEqualTo("deadcode.DeadStores");
+    }
+
+    @Test
+    public void checkerShouldTakePrecedenceOverType() {
+        ClangRuleResolver resolver = resolver("my.Checker=checker.Rule", "My type=type.Rule");
+
+        assertThat(rule(resolver, "my.Checker", "My type")).isEqualTo("checker.Rule");
+        assertThat(rule(resolver, "other.Checker", "My type")).isEqualTo("type.Rule");
+        assertThat(rule(resolver, "osx.cocoa.ClassRelease", "Dead assignment")).isEqualTo("osx.cocoa.RetainCount");
+    }
+
+    @Test
+    public void configuredMappingsShouldOverrideBuiltInOnes() {
+        ClangRuleResolver resolver = resolver("Dead assignment=custom.Rule", "osx.cocoa.ClassRelease=custom.Release");
+
+        assertThat(rule(resolver, null, "Dead assignment")).isEqualTo("custom.Rule");
+        assertThat(rule(resolver, "osx.cocoa.ClassRelease", "Unknown")).isEqualTo("custom.Release");
+        assertThat(rule(resolver, null, "Dead increment")).isEqualTo("deadcode.DeadStores");
+    }
+
+    @Test
+    public void wildcardsShouldComeAfterExactMappings() {
+        ClangRuleResolver resolver = resolver("Dead *=wild.Dead", "alpha.*=wild.Alpha", "*=wild.Any");
+
+        assertThat(rule(resolver, null, "Dead assignment")).isEqualTo("deadcode.DeadStores");
+        assertThat(rule(resolver, null, "Dead code")).isEqualTo("wild.Dead");
+        assertThat(rule(resolver, "alpha.core.Experimental", "Dead code")).isEqualTo("wild.Dead");
+        assertThat(rule(resolver, "alpha.core.Experimental", "Unknown")).isEqualTo("wild.Alpha");
+        assertThat(rule(resolver, "beta.Checker", "Unknown")).isEqualTo("wild.Any");
+    }
+
+    @Test
+    public void wildcardsShouldMatchOtherCharactersLiterally() {
+        ClangRuleResolver resolver = resolver("Leak (*)=wild.Leak");
+
+        assertThat(rule(resolver, null, "Leak (retained)")).isEqualTo("wild.Leak");
+        assertThat(rule(resolver, null, "Leak retained")).isEqualTo(ClangRuleResolver.OTHER_RULE);
+    }
+
+    @Test
+    public void unmappedWarningsShouldGoToTheOtherRule() {
+        ClangRuleResolver resolver = resolver("Known=known.Rule");
+
+        assertThat(rule(resolver, null, "Unknown")).isEqualTo(ClangRuleResolver.OTHER_RULE);
+        assertThat(rule(resolver, "unknown.Checker", "Unknown")).isEqualTo(ClangRuleResolver.OTHER_RULE);
+        assertThat(resolver.resolve(null, "Unknown").repository()).isEqualTo(ClangRulesDefinition.REPOSITORY_KEY);
+    }
+
+    @Test
+    public void malformedMappingsShouldBeIgnored() {
+        ClangRuleResolver resolver = resolver("", "   ", "no separator", "=rule.Only", "Type only=", "Good=good.Rule",
+                "With = sign=sign.Rule");
+
+        assertThat(rule(resolver, null, "Good")).isEqualTo("good.Rule");
+        // The rule is after the last separator
+        assertThat(rule(resolver, null, "With = sign")).isEqualTo("sign.Rule");
+        assertThat(rule(resolver, null, "no separator")).isEqualTo(ClangRuleResolver.OTHER_RULE);
+        assertThat(rule(resolver, null, "Type only")).isEqualTo(ClangRuleResolver.OTHER_RULE);
+        assertThat(rule(resolver, null, "")).isEqualTo(ClangRuleResolver.OTHER_RULE);
+    }
+
+    @Test
+    public void unmappedWarningsShouldBeCountedByType() {
+        ClangRuleResolver resolver = resolver();
+        resolver.resolve(null, "Zebra");
+        resolver.resolve("a.Checker", "Zebra");
+        resolver.resolve(null, "Antelope");
+        resolver.resolve(null, "Zebra");
+        resolver.resolve(null, "Dead assignment");
+
+        assertThat(resolver.getUnmappedWarnings()).isEqualTo(4);
+        assertThat(resolver.getUnmappedTypes()).hasSize(2).includes(entry("Antelope", 1), entry("Zebra", 3));
+        assertThat(new ArrayList<>(resolver.getUnmappedTypes().keySet())).isEqualTo(Arrays.asList("Antelope", "Zebra"));
+
+        // Logged once, whatever the number of warnings
+        resolver.logUnmapped();
+    }
+}
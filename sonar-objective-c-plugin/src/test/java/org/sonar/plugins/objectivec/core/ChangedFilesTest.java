@@ -0,0 +1,241 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.PathResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ChangedFilesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Settings settings;
+    private DefaultFileSystem fileSystem;
+
+    @Before
+    public void setUp() throws IOException {
+        settings = new Settings();
+        fileSystem = new DefaultFileSystem();
+        fileSystem.setBaseDir(folder.getRoot());
+        folder.newFolder(".git");
+    }
+
+    @Test
+    public void everyFileShouldBeInScopeByDefault() {
+        ChangedFiles changedFiles = changedFiles();
+
+        assertThat(changedFiles.isEnabled()).isFalse();
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+        assertThat(changedFiles.fingerprint()).isEqualTo("all");
+    }
+
+    @Test
+    public void everyFileShouldBeInScopeWhenTheListCannotBeRead() {
+        settings.setProperty(ChangedFiles.CHANGED_FILES_KEY, "missing.txt");
+        ChangedFiles changedFiles = changedFiles();
+
+        assertThat(changedFiles.isEnabled()).isFalse();
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+    }
+
+    @Test
+    public void shouldReadAPlainList() throws IOException {
+        ChangedFiles changedFiles = changedFiles(
+                "App/AppDelegate.m",
+                "",
+                "  App/Views/Cell.h  ",
+                new File(folder.getRoot(), "App/Model.m").getPath());
+
+        assertThat(changedFiles.isEnabled()).isTrue();
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+        assertThat(changedFiles.contains("App/Views/Cell.h")).isTrue();
+        assertThat(changedFiles.contains("App/Model.m")).isTrue();
+        assertThat(changedFiles.contains(new File(folder.getRoot(), "App/AppDelegate.m"))).isTrue();
+        assertThat(changedFiles.contains("App/Other.m")).isFalse();
+    }
+
+    @Test
+    public void shouldReadNameStatusOutput() throws IOException {
+        ChangedFiles changedFiles = changedFiles(
+                "M\tApp/AppDelegate.m",
+                "A\tApp/New.m",
+                "D\tApp/Deleted.m",
+                "R087\tApp/Old.m\tApp/Renamed.m");
+
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+        assertThat(changedFiles.contains("App/New.m")).isTrue();
+        assertThat(changedFiles.contains("App/Renamed.m")).isTrue();
+        assertThat(changedFiles.contains("App/Deleted.m")).isFalse();
+        assertThat(changedFiles.contains("App/Old.m")).isFalse();
+    }
+
+    @Test
+    public void shouldReadTheNewPathsOfAGitDiff() throws IOException {
+        ChangedFiles changedFiles = changedFiles(
+                "diff --git a/App/AppDelegate.m b/App/AppDelegate.m",
+                "index 3b18e51..a9a8a1f 100644",
+                "--- a/App/AppDelegate.m",
+                "+++ b/App/AppDelegate.m",
+                "@@ -1,3 +1,3 @@",
+                "-int a;",
+                "+int b;",
+                "diff --git a/App/New.m b/App/New.m",
+                "new file mode 100644",
+                "--- /dev/null",
+                "+++ b/App/New.m",
+                "@@ -0,0 +1 @@",
+                "+int c;",
+                "diff --git a/App/Deleted.m b/App/Deleted.m",
+                "deleted file mode 100644",
+                "--- a/App/Deleted.m",
+                "+++ /dev/null",
+                "@@ -1 +0,0 @@",
+                "-int d;");
+
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+        assertThat(changedFiles.contains("App/New.m")).isTrue();
+        assertThat(changedFiles.contains("App/Deleted.m")).isFalse();
+        assertThat(changedFiles.contains("b/App/AppDelegate.m")).isFalse();
+    }
+
+    @Test
+    public void shouldReadRenamesOfAGitDiff() throws IOException {
+        ChangedFiles changedFiles = changedFiles(
+                "diff --git a/App/Old.m b/App/Renamed.m",
+                "similarity index 100%",
+                "rename from App/Old.m",
+                "rename to App/Renamed.m",
+                "diff --git a/App/Edited.m b/App/Moved.m",
+                "similarity index 90%",
+                "rename from App/Edited.m",
+                "rename to App/Moved.m",
+                "--- a/App/Edited.m",
+                "+++ b/App/Moved.m",
+                "@@ -1 +1 @@",
+                "-int a;",
+                "+int b;",
+                "diff --git a/App/Script.sh b/App/Script.sh",
+                "old mode 100644",
+                "new mode 100755");
+
+        assertThat(changedFiles.contains("App/Renamed.m")).isTrue();
+        assertThat(changedFiles.contains("App/Moved.m")).isTrue();
+        assertThat(changedFiles.contains("App/Script.sh")).isTrue();
+        assertThat(changedFiles.contains("App/Old.m")).isFalse();
+        assertThat(changedFiles.contains("App/Edited.m")).isFalse();
+    }
+
+    @Test
+    public void shouldKeepPathsOfADiffWithoutPrefixes() throws IOException {
+        ChangedFiles changedFiles = changedFiles(
+                "diff --git b/Parser.m b/Parser.m",
+                "--- b/Parser.m",
+                "+++ b/Parser.m",
+                "@@ -1 +1 @@",
+                "-int a;",
+                "+int b;");
+
+        assertThat(changedFiles.contains("b/Parser.m")).isTrue();
+        assertThat(changedFiles.contains("Parser.m")).isFalse();
+    }
+
+    @Test
+    public void shouldReadAPlainUnifiedDiff() throws IOException {
+        ChangedFiles changedFiles = changedFiles(
+                "--- a/App/AppDelegate.m\t2016-01-01 10:00:00",
+                "+++ b/App/AppDelegate.m\t2016-01-02 10:00:00",
+                "@@ -1 +1 @@",
+                "-int a;",
+                "+int b;");
+
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+    }
+
+    @Test
+    public void shouldResolvePathsAgainstTheRepositoryRoot() throws IOException {
+        fileSystem.setBaseDir(folder.newFolder("ios"));
+        ChangedFiles changedFiles = changedFiles(
+                "diff --git a/ios/App/AppDelegate.m b/ios/App/AppDelegate.m",
+                "--- a/ios/App/AppDelegate.m",
+                "+++ b/ios/App/AppDelegate.m",
+                "diff --git a/android/App.java b/android/App.java",
+                "--- a/android/App.java",
+                "+++ b/android/App.java");
+
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+        assertThat(changedFiles.contains("ios/App/AppDelegate.m")).isFalse();
+        assertThat(changedFiles.contains("App.java")).isFalse();
+    }
+
+    @Test
+    public void shouldResolvePathsAgainstTheConfiguredRepositoryRoot() throws IOException {
+        File mobile = folder.newFolder("mobile");
+        fileSystem.setBaseDir(folder.newFolder("mobile", "ios"));
+        settings.setProperty(ChangedFiles.REPOSITORY_ROOT_KEY, "..");
+        ChangedFiles changedFiles = changedFiles(
+                "M\tios/App/AppDelegate.m",
+                "M\t" + new File(mobile, "ios/App/Model.m").getPath());
+
+        assertThat(changedFiles.contains("App/AppDelegate.m")).isTrue();
+        assertThat(changedFiles.contains("App/Model.m")).isTrue();
+    }
+
+    @Test
+    public void shouldKeepListedFilesWhichAreNotIndexed() throws IOException {
+        fileSystem.add(new DefaultInputFile("App/Indexed.m").setAbsolutePath(
+                new File(folder.getRoot(), "App/Indexed.m").getAbsolutePath()));
+
+        assertThat(changedFiles("App/Indexed.m", "App/Other.m").contains("App/Other.m")).isTrue();
+        assertThat(changedFiles("Elsewhere/Other.m").contains("Elsewhere/Other.m")).isTrue();
+    }
+
+    @Test
+    public void fingerprintShouldChangeWithTheFiles() throws IOException {
+        String first = changedFiles("App/A.m").fingerprint();
+        String second = changedFiles("App/B.m").fingerprint();
+
+        assertThat(first).isNotEqualTo(second);
+        assertThat(changedFiles("App/A.m").fingerprint()).isEqualTo(first);
+    }
+
+    private ChangedFiles changedFiles(String... lines) throws IOException {
+        File list = folder.newFile();
+        Files.write(list.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        settings.setProperty(ChangedFiles.CHANGED_FILES_KEY, list.getPath());
+        return changedFiles();
+    }
+
+    private ChangedFiles changedFiles() {
+        return new ChangedFiles(fileSystem, new PathResolver(), settings);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IdenticalFilesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void copiesShouldBeListedUnderTheFirstFile() throws IOException {
+        File original = write("Pods/A/Header.h", "#import <Foundation/Foundation.h>\n");
+        File other = write("App/Other.h", "#import <UIKit/UIKit.h>\n");
+        File copy = write("Pods/B/Header.h", "#import <Foundation/Foundation.h>\n");
+        File secondCopy = write("App/Header.h", "#import <Foundation/Foundation.h>\n");
+
+        Map<File, List<File>> copies = IdenticalFiles.find(Arrays.asList(original, other, copy, secondCopy));
+
+        assertThat(copies).hasSize(1);
+        assertThat(copies.get(original)).containsExactly(copy, secondCopy);
+    }
+
+    @Test
+    public void filesOfTheSameSizeShouldNotBeCopiesOfEachOther() throws IOException {
+        File first = write("A.h", "int a;\n");
+        File second = write("B.h", "int b;\n");
+
+        assertThat(IdenticalFiles.find(Arrays.asList(first, second))).isEmpty();
+    }
+
+    @Test
+    public void filesOfTheSameHashShouldBeComparedByContent() throws IOException {
+        File first = write("A.h", "int a;\n");
+        File second = write("B.h", "int b;\n");
+        File copyOfFirst = write("C.h", "int a;\n");
+        File copyOfSecond = write("D.h", "int b;\n");
+
+        // Every file collides
+        Map<File, List<File>> copies = IdenticalFiles.find(Arrays.asList(first, second, copyOfFirst, copyOfSecond),
+                file -> new byte[20]);
+
+        assertThat(copies).hasSize(2);
+        assertThat(copies.get(first)).containsExactly(copyOfFirst);
+        assertThat(copies.get(second)).containsExactly(copyOfSecond);
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
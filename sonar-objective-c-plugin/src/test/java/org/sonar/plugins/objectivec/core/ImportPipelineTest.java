@@ -0,0 +1,121 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class ImportPipelineTest {
+    private static final int CAPACITY = 4;
+
+    @Test(timeout = 10000)
+    public void shouldPersistResolvedRecordsInOrder() {
+        List<Object> persisted = new ArrayList<>();
+
+        pipeline().run(sink -> emit(sink, 100),
+                record -> record % 3 == 0 ? null : "record" + record,
+                persisted::add);
+
+        assertThat(persisted).hasSize(66);
+        assertThat(persisted.get(0)).isEqualTo("record1");
+        assertThat(persisted.get(65)).isEqualTo("record98");
+    }
+
+    @Test(timeout = 10000)
+    public void shouldResolveAndPersistOnCallingThread() {
+        final Thread caller = Thread.currentThread();
+        final List<Thread> threads = new ArrayList<>();
+
+        pipeline().run(sink -> emit(sink, 10),
+                record -> {
+                    threads.add(Thread.currentThread());
+                    return record;
+                },
+                record -> threads.add(Thread.currentThread()));
+
+        assertThat(threads).hasSize(20);
+        for (Thread thread : threads) {
+            assertThat(thread).isSameAs(caller);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldStopParserWhenResolverFailsOnReportLargerThanQueue() {
+        try {
+            pipeline().run(sink -> emit(sink, 100 * CAPACITY),
+                    record -> {
+                        if (record == 2) {
+                            throw new IllegalArgumentException("unresolvable");
+                        }
+                        return record;
+                    },
+                    record -> { });
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("unresolvable");
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldStopParserWhenPersisterFails() {
+        try {
+            pipeline().run(sink -> emit(sink, 100 * CAPACITY),
+                    record -> record,
+                    record -> {
+                        throw new IllegalStateException("unsaved");
+                    });
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("unsaved");
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldPropagateParserFailure() {
+        List<Object> persisted = new ArrayList<>();
+        try {
+            pipeline().run(sink -> {
+                emit(sink, 3);
+                throw new IOException("truncated");
+            }, record -> record, persisted::add);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class);
+        }
+        assertThat(persisted).containsExactly(0, 1, 2);
+    }
+
+    private static ImportPipeline<Integer, Object> pipeline() {
+        return new ImportPipeline<>(new SensorMetrics("test"), CAPACITY);
+    }
+
+    private static void emit(Consumer<Integer> sink, int count) {
+        for (int i = 0; i < count; i++) {
+            sink.accept(i);
+        }
+    }
+}
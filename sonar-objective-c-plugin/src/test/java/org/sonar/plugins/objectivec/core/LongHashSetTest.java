@@ -0,0 +1,91 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LongHashSetTest {
+    @Test
+    public void shouldAddEachKeyOnce() {
+        LongHashSet set = new LongHashSet();
+
+        assertThat(set.add(42L)).isTrue();
+        assertThat(set.add(42L)).isFalse();
+        assertThat(set.contains(42L)).isTrue();
+        assertThat(set.contains(43L)).isFalse();
+        assertThat(set.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldHoldZeroAndExtremeKeys() {
+        LongHashSet set = new LongHashSet();
+
+        assertThat(set.contains(0L)).isFalse();
+        assertThat(set.add(0L)).isTrue();
+        assertThat(set.add(0L)).isFalse();
+        assertThat(set.add(Long.MIN_VALUE)).isTrue();
+        assertThat(set.add(Long.MAX_VALUE)).isTrue();
+        assertThat(set.add(-1L)).isTrue();
+
+        assertThat(set.contains(0L)).isTrue();
+        assertThat(set.contains(Long.MIN_VALUE)).isTrue();
+        assertThat(set.contains(Long.MAX_VALUE)).isTrue();
+        assertThat(set.contains(-1L)).isTrue();
+        assertThat(set.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldKeepItsKeysWhenGrowing() {
+        LongHashSet set = new LongHashSet(1);
+        for (long key = 1; key <= 10000; key++) {
+            assertThat(set.add(key << 20)).isTrue();
+        }
+
+        assertThat(set.size()).isEqualTo(10000);
+        for (long key = 1; key <= 10000; key++) {
+            assertThat(set.contains(key << 20)).isTrue();
+            assertThat(set.add(key << 20)).isFalse();
+        }
+        assertThat(set.contains(10001L << 20)).isFalse();
+    }
+
+    @Test
+    public void shouldBehaveAsAHashSetWhenKeysCollide() {
+        // Few distinct slots for many keys: most of them probe past others
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            long key = random.nextInt(2000) * 0x100000000L;
+            assertThat(set.add(key)).isEqualTo(expected.add(key));
+        }
+
+        assertThat(set.size()).isEqualTo(expected.size());
+        for (long key = 0; key < 2000; key++) {
+            assertThat(set.contains(key * 0x100000000L)).isEqualTo(expected.contains(key * 0x100000000L));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class MeasureBufferTest {
+    private final SensorContext context = mock(SensorContext.class);
+    private final SensorMetrics metrics = new SensorMetrics("test");
+    private final InputFile foo = new DefaultInputFile("Foo.m");
+    private final InputFile bar = new DefaultInputFile("Bar.m");
+
+    @Test
+    public void shouldHoldMeasuresUntilFlushed() {
+        MeasureBuffer buffer = new MeasureBuffer(context, metrics, 4);
+        buffer.add(foo, CoreMetrics.LINES, 10);
+        buffer.add(foo, CoreMetrics.NCLOC, 8);
+
+        verify(context, never()).saveMeasure(any(InputFile.class), any(Metric.class),
+                anyDouble());
+        assertThat(buffer.size()).isEqualTo(2);
+
+        buffer.flush();
+
+        verify(context).saveMeasure(foo, CoreMetrics.LINES, 10.0);
+        verify(context).saveMeasure(foo, CoreMetrics.NCLOC, 8.0);
+        assertThat(buffer.size()).isEqualTo(0);
+        assertThat(metrics.get(SensorMetrics.MEASURES)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSaveAFullBatchBeforeAddingMore() {
+        MeasureBuffer buffer = new MeasureBuffer(context, metrics, 2);
+        buffer.add(foo, CoreMetrics.LINES, 10);
+        buffer.add(bar, CoreMetrics.LINES, 20);
+        buffer.add(foo, CoreMetrics.NCLOC, 8);
+
+        verify(context).saveMeasure(foo, CoreMetrics.LINES, 10.0);
+        verify(context).saveMeasure(bar, CoreMetrics.LINES, 20.0);
+        verify(context, never()).saveMeasure(foo, CoreMetrics.NCLOC, 8.0);
+        assertThat(buffer.size()).isEqualTo(1);
+        assertThat(metrics.get(SensorMetrics.MEASURES)).isEqualTo(2);
+
+        buffer.flush();
+
+        verify(context).saveMeasure(foo, CoreMetrics.NCLOC, 8.0);
+        assertThat(metrics.get(SensorMetrics.MEASURES)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldSaveABatchFileByFileInTheOrderOfEachFile() {
+        Measure distribution = new Measure(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, "1=2;2=0");
+        MeasureBuffer buffer = new MeasureBuffer(context, metrics, 8);
+        buffer.add(foo, CoreMetrics.LINES, 10);
+        buffer.add(bar, CoreMetrics.LINES, 20);
+        buffer.add(foo, distribution);
+        buffer.add(bar, CoreMetrics.NCLOC, 15);
+        buffer.add(foo, CoreMetrics.NCLOC, 8);
+        buffer.flush();
+
+        InOrder order = inOrder(context);
+        order.verify(context).saveMeasure(foo, CoreMetrics.LINES, 10.0);
+        order.verify(context).saveMeasure(foo, distribution);
+        order.verify(context).saveMeasure(foo, CoreMetrics.NCLOC, 8.0);
+        order.verify(context).saveMeasure(bar, CoreMetrics.LINES, 20.0);
+        order.verify(context).saveMeasure(bar, CoreMetrics.NCLOC, 15.0);
+    }
+
+    @Test
+    public void flushingAnEmptyBufferShouldSaveNothing() {
+        new MeasureBuffer(context, metrics).flush();
+
+        verify(context, never()).saveMeasure(any(InputFile.class), any(Measure.class));
+        assertThat(metrics.get(SensorMetrics.MEASURES)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.PathResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReportCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDir;
+    private File report;
+    private ReportCache reportCache;
+
+    @Before
+    public void setUp() throws IOException {
+        DefaultFileSystem fileSystem = new DefaultFileSystem();
+        fileSystem.setBaseDir(folder.getRoot());
+        cacheDir = folder.newFolder("cache");
+        Settings settings = new Settings();
+        settings.setProperty(ReportCache.PATH_KEY, cacheDir.getPath());
+        reportCache = new ReportCache(fileSystem, new PathResolver(), settings);
+
+        report = folder.newFile("report.xml");
+        Files.write(report.toPath(), "<report/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldReplayTheRecordsOfAnUnchangedReport() throws IOException {
+        cache(report, "App/A.m", 42);
+
+        try (ReportCache.Reader reader = reportCache.read("test", report)) {
+            assertThat(reader).isNotNull();
+            assertThat(reader.readTag()).isEqualTo(1);
+            assertThat(reader.readString()).isEqualTo("App/A.m");
+            assertThat(reader.readInt()).isEqualTo(42);
+            assertThat(reader.readString()).isEqualTo("App/A.m");
+            assertThat(reader.readTag()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void shouldNotReplayAChangedReport() throws IOException {
+        cache(report, "App/A.m", 42);
+
+        Files.write(report.toPath(), "<report></report>".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(reportCache.read("test", report)).isNull();
+    }
+
+    @Test
+    public void shouldNotReplayATruncatedCacheFile() throws IOException {
+        cache(report, "App/A.m", 42);
+        File cacheFile = onlyCacheFile();
+
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        assertThat(reportCache.read("test", report)).isNull();
+    }
+
+    @Test
+    public void shouldNotReplayACorruptCacheFile() throws IOException {
+        cache(report, "App/A.m", 42);
+        File cacheFile = onlyCacheFile();
+
+        byte[] bytes = Files.readAllBytes(cacheFile.toPath());
+        // Within the records, after the header
+        bytes[bytes.length - 12] ^= 0x7f;
+        Files.write(cacheFile.toPath(), bytes);
+
+        assertThat(reportCache.read("test", report)).isNull();
+    }
+
+    @Test
+    public void shouldHashAReportOnlyOnceItIsParsedAgain() throws IOException {
+        cache(report, "App/A.m", 42);
+        long firstSize = onlyCacheFile().length();
+
+        // Not hashed on its first parse, a touched report cannot be told from a changed one
+        touch(report);
+        assertThat(reportCache.read("test", report)).isNull();
+
+        cache(report, "App/A.m", 42);
+        assertThat(onlyCacheFile().length()).isEqualTo(firstSize + 20);
+        touch(report);
+        try (ReportCache.Reader reader = reportCache.read("test", report)) {
+            assertThat(reader).isNotNull();
+        }
+    }
+
+    @Test
+    public void shouldNotCommitAnAbandonedWriter() throws IOException {
+        try (ReportCache.Writer writer = reportCache.write("test", report)) {
+            assertThat(writer.isEnabled()).isTrue();
+            writer.writeTag(1);
+        }
+
+        assertThat(cacheDir.list()).isEmpty();
+        assertThat(reportCache.read("test", report)).isNull();
+    }
+
+    @Test
+    public void shouldPruneTheCacheFilesOfDeletedReports() throws IOException {
+        File deleted = folder.newFile("deleted.xml");
+        cache(report, "App/A.m", 1);
+        cache(deleted, "App/B.m", 2);
+        File leftover = new File(cacheDir, "test-" + repeat('0', 40) + ".bin.tmp");
+        File foreign = new File(cacheDir, "notes.txt");
+        Files.write(leftover.toPath(), new byte[] {1});
+        Files.write(foreign.toPath(), new byte[] {1});
+        assertThat(deleted.delete()).isTrue();
+
+        reportCache.executeOn(new Project("test"), null);
+
+        assertThat(cacheDir.list()).hasSize(2);
+        assertThat(foreign).exists();
+        assertThat(leftover).doesNotExist();
+        try (ReportCache.Reader reader = reportCache.read("test", report)) {
+            assertThat(reader).isNotNull();
+        }
+    }
+
+    @Test
+    public void shouldWriteNothingWhenDisabled() {
+        ReportCache disabled = new ReportCache(new DefaultFileSystem(), new PathResolver(), new Settings());
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.write("test", report).isEnabled()).isFalse();
+        assertThat(disabled.read("test", report)).isNull();
+    }
+
+    private void cache(File report, String path, int value) {
+        try (ReportCache.Writer writer = reportCache.write("test", report)) {
+            writer.writeTag(1);
+            writer.writeString(path);
+            writer.writeInt(value);
+            writer.writeString(path);
+            writer.writeTag(0);
+            writer.commit();
+        }
+    }
+
+    private File onlyCacheFile() {
+        File[] files = cacheDir.listFiles();
+        assertThat(files).hasSize(1);
+        return files[0];
+    }
+
+    private static void touch(File file) {
+        assertThat(file.setLastModified(file.lastModified() - 10000)).isTrue();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
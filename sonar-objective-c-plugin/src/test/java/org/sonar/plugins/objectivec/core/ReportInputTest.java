@@ -0,0 +1,132 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import io.airlift.compress.zstd.ZstdOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReportInputTest {
+    private static final String REPORT = "<?xml version=\"1.0\" ?>\n<oclint><file name=\"src/main.m\"/></oclint>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadPlainReport() throws IOException {
+        File report = folder.newFile("oclint.xml");
+        try (OutputStream out = new FileOutputStream(report)) {
+            out.write(REPORT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(read(report)).isEqualTo(REPORT);
+    }
+
+    @Test
+    public void shouldDecompressGzipReport() throws IOException {
+        File report = folder.newFile("oclint.xml.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(report))) {
+            out.write(REPORT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(read(report)).isEqualTo(REPORT);
+    }
+
+    @Test
+    public void shouldDecompressXzReport() throws IOException {
+        File report = folder.newFile("oclint.xml.xz");
+        try (OutputStream out = new XZOutputStream(new FileOutputStream(report), new LZMA2Options())) {
+            out.write(REPORT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(read(report)).isEqualTo(REPORT);
+    }
+
+    @Test
+    public void shouldDecompressZstdReport() throws IOException {
+        File report = folder.newFile("oclint.xml.zst");
+        try (OutputStream out = new ZstdOutputStream(new FileOutputStream(report))) {
+            out.write(REPORT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(read(report)).isEqualTo(REPORT);
+    }
+
+    @Test
+    public void shouldRecogniseFormatByContentRatherThanName() throws IOException {
+        File report = folder.newFile("oclint.xml");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(report))) {
+            out.write(REPORT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(read(report)).isEqualTo(REPORT);
+    }
+
+    @Test
+    public void shouldReadEmptyReport() throws IOException {
+        File report = folder.newFile("empty.xml");
+
+        assertThat(read(report)).isEmpty();
+    }
+
+    @Test
+    public void shouldMatchCompressedExtensions() {
+        assertThat(ReportInput.hasExtension("TEST-a.xml", ".xml")).isTrue();
+        assertThat(ReportInput.hasExtension("TEST-a.xml.gz", ".xml")).isTrue();
+        assertThat(ReportInput.hasExtension("TEST-a.xml.zst", ".xml")).isTrue();
+        assertThat(ReportInput.hasExtension("TEST-a.xml.xz", ".xml")).isTrue();
+        assertThat(ReportInput.hasExtension("TEST-a.gz", ".xml")).isFalse();
+        assertThat(ReportInput.hasExtension("TEST-a.plist.gz", ".xml")).isFalse();
+    }
+
+    @Test
+    public void shouldLocateCompressedReport() throws IOException {
+        File compressed = folder.newFile("lizard.xml.zst");
+
+        assertThat(ReportInput.locate(new File(folder.getRoot(), "lizard.xml"))).isEqualTo(compressed);
+        assertThat(ReportInput.locate(compressed)).isEqualTo(compressed);
+    }
+
+    private static String read(File report) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = ReportInput.open(report)) {
+            byte[] buffer = new byte[7];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.server.debt.DebtRemediationFunction;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.plugins.objectivec.api.ObjectiveC;
+import org.sonar.plugins.objectivec.clang.ClangRulesDefinition;
+import org.sonar.plugins.objectivec.oclint.OCLintRulesDefinition;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class RulesSnapshotTest {
+    private static final String DIFFERS = "snapshot differs from the XML files";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Whether or not the build packaged a snapshot, the repository gets the rules of the XML files.
+     */
+    @Test
+    public void clangRulesShouldBeTheRulesOfTheXmlFiles() {
+        RulesDefinition.Context defined = new RulesDefinition.Context();
+        new ClangRulesDefinition().define(defined);
+
+        assertSameRules(defined.repository(ClangRulesDefinition.REPOSITORY_KEY),
+                clangXml().repository(ClangRulesDefinition.REPOSITORY_KEY));
+    }
+
+    @Test
+    public void oclintRulesShouldBeTheRulesOfTheXmlFiles() {
+        RulesDefinition.Context defined = new RulesDefinition.Context();
+        new OCLintRulesDefinition().define(defined);
+
+        assertSameRules(defined.repository(OCLintRulesDefinition.REPOSITORY_KEY),
+                oclintXml().repository(OCLintRulesDefinition.REPOSITORY_KEY));
+        assertThat(defined.repository(OCLintRulesDefinition.REPOSITORY_KEY).rule("unused method parameter")
+                .debtRemediationFunction()).isNotNull();
+    }
+
+    @Test
+    public void snapshotShouldDefineTheRulesItWasWrittenFrom() throws IOException {
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        RulesDefinition.NewRepository repository = context.createRepository("clang", ObjectiveC.KEY);
+        assertThat(RulesSnapshot.load(repository, "clang.bin",
+                snapshot(clangXml().repository(ClangRulesDefinition.REPOSITORY_KEY)))).isTrue();
+        repository.done();
+        repository = context.createRepository("oclint", ObjectiveC.KEY);
+        assertThat(RulesSnapshot.load(repository, "oclint.bin",
+                snapshot(oclintXml().repository(OCLintRulesDefinition.REPOSITORY_KEY)))).isTrue();
+        repository.done();
+
+        assertSameRules(context.repository("clang"), clangXml().repository(ClangRulesDefinition.REPOSITORY_KEY));
+        assertSameRules(context.repository("oclint"), oclintXml().repository(OCLintRulesDefinition.REPOSITORY_KEY));
+    }
+
+    @Test
+    public void missingSnapshotShouldLeaveRepositoryUntouched() {
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        RulesDefinition.NewRepository repository = context.createRepository("test", ObjectiveC.KEY);
+
+        assertThat(RulesSnapshot.load(repository, "/missing.bin")).isFalse();
+        repository.done();
+        assertThat(context.repository("test").rules()).isEmpty();
+    }
+
+    @Test
+    public void damagedSnapshotShouldLeaveRepositoryUntouched() throws IOException {
+        RulesDefinition.Repository xml = oclintXml().repository(OCLintRulesDefinition.REPOSITORY_KEY);
+        byte[] snapshot = snapshot(xml);
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        RulesDefinition.NewRepository repository = context.createRepository("test", ObjectiveC.KEY);
+
+        assertThat(RulesSnapshot.load(repository, "rules.bin", Arrays.copyOf(snapshot, snapshot.length / 2)))
+                .isFalse();
+        assertThat(repository.rules()).isEmpty();
+
+        // The rules can then be loaded from the XML files
+        OCLintRulesDefinition.loadXml(repository);
+        repository.done();
+        assertThat(context.repository("test").rules()).hasSize(xml.rules().size());
+    }
+
+    @Test
+    public void snapshotOfAnotherVersionShouldBeIgnored() {
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        RulesDefinition.NewRepository repository = context.createRepository("test", ObjectiveC.KEY);
+
+        assertThat(RulesSnapshot.load(repository, "other.bin", new byte[] {0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 0}))
+                .isFalse();
+        assertThat(repository.rules()).isEmpty();
+    }
+
+    private static RulesDefinition.Context clangXml() {
+        RulesDefinition.Context xml = new RulesDefinition.Context();
+        RulesDefinition.NewRepository repository = xml
+                .createRepository(ClangRulesDefinition.REPOSITORY_KEY, ObjectiveC.KEY)
+                .setName(ClangRulesDefinition.REPOSITORY_NAME);
+        ClangRulesDefinition.loadXml(repository);
+        repository.done();
+        return xml;
+    }
+
+    private static RulesDefinition.Context oclintXml() {
+        RulesDefinition.Context xml = new RulesDefinition.Context();
+        RulesDefinition.NewRepository repository = xml
+                .createRepository(OCLintRulesDefinition.REPOSITORY_KEY, ObjectiveC.KEY)
+                .setName(OCLintRulesDefinition.REPOSITORY_NAME);
+        OCLintRulesDefinition.loadXml(repository);
+        repository.done();
+        return xml;
+    }
+
+    private byte[] snapshot(RulesDefinition.Repository repository) throws IOException {
+        File file = folder.newFile();
+        RulesSnapshot.write(repository, file);
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static void assertSameRules(RulesDefinition.Repository snapshot, RulesDefinition.Repository xml) {
+        List<RulesDefinition.Rule> expectedRules = xml.rules();
+        assertThat(snapshot.rules()).as(DIFFERS).hasSize(expectedRules.size());
+
+        for (RulesDefinition.Rule expected : expectedRules) {
+            RulesDefinition.Rule actual = snapshot.rule(expected.key());
+            assertThat(actual).as(DIFFERS + ": " + expected.key()).isNotNull();
+            assertThat(actual.name()).as(DIFFERS).isEqualTo(expected.name());
+            assertThat(actual.htmlDescription()).as(DIFFERS).isEqualTo(expected.htmlDescription());
+            assertThat(actual.severity()).as(DIFFERS).isEqualTo(expected.severity());
+            assertThat(actual.status()).as(DIFFERS).isEqualTo(expected.status());
+            assertThat(actual.template()).as(DIFFERS).isEqualTo(expected.template());
+            assertThat(actual.tags()).as(DIFFERS).isEqualTo(expected.tags());
+            assertThat(actual.debtSubCharacteristic()).as(DIFFERS).isEqualTo(expected.debtSubCharacteristic());
+            assertThat(actual.effortToFixDescription()).as(DIFFERS).isEqualTo(expected.effortToFixDescription());
+            assertThat(actual.params()).as(DIFFERS).hasSize(expected.params().size());
+
+            DebtRemediationFunction expectedFunction = expected.debtRemediationFunction();
+            DebtRemediationFunction actualFunction = actual.debtRemediationFunction();
+            if (expectedFunction == null) {
+                assertThat(actualFunction).as(DIFFERS).isNull();
+            } else {
+                assertThat(actualFunction).as(DIFFERS).isNotNull();
+                assertThat(actualFunction.type()).as(DIFFERS).isEqualTo(expectedFunction.type());
+                assertThat(actualFunction.coefficient()).as(DIFFERS).isEqualTo(expectedFunction.coefficient());
+                assertThat(actualFunction.offset()).as(DIFFERS).isEqualTo(expectedFunction.offset());
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SensorMetricsReporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Settings settings;
+    private SensorMetricsReporter reporter;
+    private File report;
+
+    @Before
+    public void setUp() throws IOException {
+        File workDir = folder.newFolder("work");
+        FileSystem fileSystem = mock(FileSystem.class);
+        when(fileSystem.workDir()).thenReturn(workDir);
+        settings = new Settings();
+        reporter = new SensorMetricsReporter(fileSystem, settings);
+        report = new File(workDir, SensorMetricsReporter.REPORT_FILE_NAME);
+    }
+
+    @Test
+    public void shouldNotExportByDefault() {
+        reporter.finish(reporter.start("Sensor"));
+
+        assertThat(report).doesNotExist();
+    }
+
+    @Test
+    public void shouldExportTheCountersAndPhasesOfEachFinishedSensor() throws IOException {
+        settings.setProperty(SensorMetricsReporter.EXPORT_KEY, true);
+        SensorMetrics first = reporter.start("First");
+        first.add(SensorMetrics.ISSUES, 12);
+        first.addTime(SensorMetrics.PARSE, 3000000L);
+        reporter.finish(first);
+        SensorMetrics second = reporter.start("Second");
+        second.increment(SensorMetrics.FILES);
+        reporter.finish(second);
+
+        String json = read();
+        assertThat(json).startsWith("{\"sensors\":[{\"sensor\":\"First\",\"elapsedMs\":");
+        assertThat(json).contains("\"phasesMs\":{\"parse\":3}");
+        assertThat(json).contains("\"counters\":{\"issues\":12}");
+        assertThat(json).contains("},{\"sensor\":\"Second\",");
+        assertThat(json).contains("\"counters\":{\"files\":1}");
+        assertThat(json).endsWith("}}]}");
+    }
+
+    @Test
+    public void shouldEscapeSensorNames() throws IOException {
+        settings.setProperty(SensorMetricsReporter.EXPORT_KEY, true);
+        reporter.finish(reporter.start("Say \"hi\" C:\\tmp\n\tnow\u0001"));
+
+        assertThat(read()).contains("\"sensor\":\"Say \\\"hi\\\" C:\\\\tmp\\n\\tnow\\u0001\"");
+    }
+
+    @Test
+    public void finishShouldStopTheTimer() throws InterruptedException {
+        SensorMetrics metrics = reporter.start("Sensor");
+        reporter.finish(metrics);
+        long elapsed = metrics.getElapsedNanos();
+        Thread.sleep(5);
+
+        assertThat(metrics.getElapsedNanos()).isEqualTo(elapsed);
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+    }
+}
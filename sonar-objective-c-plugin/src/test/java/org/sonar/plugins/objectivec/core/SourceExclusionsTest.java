@@ -0,0 +1,159 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SourceExclusionsTest {
+    private static final File BASE_DIR = new File("/work/App").getAbsoluteFile();
+
+    private Settings settings;
+    private FileSystem fileSystem;
+
+    @Before
+    public void setUp() {
+        settings = new Settings();
+        fileSystem = mock(FileSystem.class);
+        when(fileSystem.baseDir()).thenReturn(BASE_DIR);
+    }
+
+    @Test
+    public void shouldExcludeNothingByDefault() {
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Pods/AFNetworking/AFURLSession.m")).isFalse();
+        assertThat(exclusions.isExcluded("Sources/Messages.pb.h")).isFalse();
+        assertThat(exclusions.fingerprint()).isEmpty();
+    }
+
+    @Test
+    public void shouldExcludeDirectoriesOfTheProject() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "Vendor/Lib/, /Generated");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Vendor/Lib/Parser.m")).isTrue();
+        assertThat(exclusions.isExcluded("Vendor/Lib/Deep/Parser.m")).isTrue();
+        assertThat(exclusions.isExcluded(new File(BASE_DIR, "Generated/Model.m").getPath())).isTrue();
+        assertThat(exclusions.isExcluded("Vendor/Parser.m")).isFalse();
+        assertThat(exclusions.isExcluded("Vendor/LibExtra/Parser.m")).isFalse();
+        assertThat(exclusions.isExcluded("Sources/Vendor/Lib/Parser.m")).isFalse();
+    }
+
+    @Test
+    public void shouldExcludeSingleFile() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "Sources/Legacy.m");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Sources/Legacy.m")).isTrue();
+        assertThat(exclusions.isExcluded("Sources/Legacy.h")).isFalse();
+    }
+
+    @Test
+    public void shouldExcludeDirectoryNamesAnywhere() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "**/Pods/,**/Carthage");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Pods/AFNetworking/AFURLSession.m")).isTrue();
+        assertThat(exclusions.isExcluded("Modules/Feature/Carthage/Checkouts/Lib.m")).isTrue();
+        assertThat(exclusions.isExcluded("/other/checkout/Pods/Lib.m")).isTrue();
+        // A file named like the directory is not in it
+        assertThat(exclusions.isExcluded("Sources/Pods")).isFalse();
+        assertThat(exclusions.isExcluded("Sources/PodsHelper.m")).isFalse();
+    }
+
+    @Test
+    public void shouldExcludeFileSuffixes() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "*.pb.h,*.pb.m,*Generated.m");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Sources/Messages.pb.h")).isTrue();
+        assertThat(exclusions.isExcluded("Sources/Messages.pb.m")).isTrue();
+        assertThat(exclusions.isExcluded("Sources/ModelGenerated.m")).isTrue();
+        assertThat(exclusions.isExcluded("Sources/Messages.h")).isFalse();
+        assertThat(exclusions.isExcluded("Sources/pb.h")).isFalse();
+    }
+
+    @Test
+    public void shouldNormalizeWindowsPatternsAndPaths() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "Vendor\\Lib\\");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Vendor\\Lib\\Parser.m")).isTrue();
+        assertThat(exclusions.isExcluded(".\\Vendor\\Lib\\Parser.m")).isTrue();
+    }
+
+    @Test
+    public void shouldIgnoreBlankPatterns() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, " , ,*.pb.h");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Sources/Model.m")).isFalse();
+        assertThat(exclusions.isExcluded("Sources/Model.pb.h")).isTrue();
+    }
+
+    @Test
+    public void shouldAcceptAnyFileAndAnyDirectoryForms() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "Vendor/**,**/Pods/**,**/*.pb.h");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Vendor/Lib/Parser.m")).isTrue();
+        assertThat(exclusions.isExcluded("Modules/Pods/Lib.m")).isTrue();
+        assertThat(exclusions.isExcluded("Sources/Deep/Messages.pb.h")).isTrue();
+        assertThat(exclusions.isExcluded("Sources/Messages.h")).isFalse();
+    }
+
+    @Test
+    public void shouldIgnoreUnsupportedPatterns() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY,
+                "Pods/**/*.h,**/Pods/**/*.m,Sources/*.m,Gen?rated/,*,**,*/Lib.m,**/Vendor,*.pb.h");
+        SourceExclusions exclusions = exclusions();
+
+        assertThat(exclusions.isExcluded("Pods/Lib/Lib.h")).isFalse();
+        assertThat(exclusions.isExcluded("Modules/Pods/Lib.m")).isFalse();
+        assertThat(exclusions.isExcluded("Sources/Model.m")).isFalse();
+        assertThat(exclusions.isExcluded("Generated/Model.m")).isFalse();
+        assertThat(exclusions.isExcluded("Sources/Lib.m")).isFalse();
+        // The supported patterns still apply
+        assertThat(exclusions.isExcluded("Modules/Vendor/Lib.m")).isTrue();
+        assertThat(exclusions.isExcluded("Sources/Model.pb.h")).isTrue();
+    }
+
+    @Test
+    public void shouldChangeFingerprintWithPatterns() {
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "**/Pods/");
+        String pods = exclusions().fingerprint();
+        settings.setProperty(SourceExclusions.EXCLUSIONS_KEY, "**/Pods/,*.pb.h");
+
+        assertThat(exclusions().fingerprint()).isNotEqualTo(pods);
+    }
+
+    private SourceExclusions exclusions() {
+        return new SourceExclusions(fileSystem, settings);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.core;
+
+import org.codehaus.staxmate.in.SMHierarchicCursor;
+import org.codehaus.staxmate.in.SMInputCursor;
+import org.junit.Test;
+import org.sonar.api.utils.StaxParser;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class XmlReadersTest {
+    private final XmlReaders xmlReaders = new XmlReaders();
+
+    private List<String> violations(String report) throws XMLStreamException {
+        final List<String> messages = new ArrayList<>();
+        xmlReaders.stream(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)),
+                new StaxParser.XmlStreamHandler() {
+                    @Override
+                    public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
+                        rootCursor.advance();
+                        SMInputCursor violation = rootCursor.childElementCursor("violation");
+                        while (violation.getNext() != null) {
+                            messages.add(violation.getAttrValue("rule") + ": " + violation.getElemStringValue());
+                        }
+                    }
+                });
+        return messages;
+    }
+
+    @Test
+    public void shouldReadUndeclaredEntitiesAsTheirName() throws XMLStreamException {
+        List<String> messages = violations("<oclint><violation rule=\"long line\">too&nbsp;long</violation>"
+                + "<violation rule=\"short\">ok</violation></oclint>");
+
+        assertThat(messages).containsExactly("long line: toonbsplong", "short: ok");
+    }
+
+    @Test
+    public void shouldReadCodePointEntitiesAsTheirCharacter() throws XMLStreamException {
+        List<String> messages = violations("<oclint><violation rule=\"r\">caf&u00e9;</violation></oclint>");
+
+        assertThat(messages).containsExactly("r: café");
+    }
+
+    @Test
+    public void shouldReadPredefinedEntities() throws XMLStreamException {
+        List<String> messages = violations("<oclint><violation rule=\"a&amp;b\">&lt;x&gt;</violation></oclint>");
+
+        assertThat(messages).containsExactly("a&b: <x>");
+    }
+
+    @Test
+    public void shouldGiveEachThreadItsDocumentBuilder() throws InterruptedException {
+        final Object[] other = new Object[1];
+        Thread thread = new Thread(() -> other[0] = xmlReaders.documentBuilder());
+        thread.start();
+        thread.join();
+
+        assertThat(xmlReaders.documentBuilder()).isSameAs(xmlReaders.documentBuilder());
+        assertThat(other[0]).isNotNull().isNotSameAs(xmlReaders.documentBuilder());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.cpd;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CpdTokenCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CpdTokenCache tokenCache;
+
+    @Before
+    public void setUp() {
+        FileSystem fileSystem = mock(FileSystem.class);
+        when(fileSystem.encoding()).thenReturn(StandardCharsets.UTF_8);
+        tokenCache = new CpdTokenCache(fileSystem, new Settings());
+    }
+
+    @Test
+    public void shouldKeepTokensOfFilesNotRemovedWhileLexing() throws Exception {
+        final List<File> files = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            files.add(newSource("Foo" + i + ".m"));
+        }
+
+        tokenCache.start(files);
+        ExecutorService removers = Executors.newFixedThreadPool(4);
+        List<Future<?>> removals = new ArrayList<>();
+        for (int i = 0; i < files.size(); i += 2) {
+            final File file = files.get(i);
+            removals.add(removers.submit(new Callable<FileTokens>() {
+                @Override
+                public FileTokens call() {
+                    return tokenCache.remove(file.getPath());
+                }
+            }));
+        }
+        for (Future<?> removal : removals) {
+            removal.get();
+        }
+        removers.shutdown();
+        tokenCache.await();
+
+        for (int i = 1; i < files.size(); i += 2) {
+            assertThat(tokenCache.remove(files.get(i).getPath())).isNotNull();
+        }
+        for (int i = 0; i < files.size(); i += 2) {
+            tokenCache.remove(files.get(i).getPath());
+        }
+        assertThat(tokenCache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldDropTokensLeftOnceCpdRan() throws IOException {
+        File file = newSource("Foo.m");
+        tokenCache.start(Collections.singletonList(file));
+        tokenCache.await();
+        assertThat(tokenCache.size()).isEqualTo(1);
+
+        tokenCache.executeOn(new Project("test"), null);
+
+        assertThat(tokenCache.size()).isEqualTo(0);
+        tokenCache.start(Collections.singletonList(file));
+        tokenCache.await();
+        assertThat(tokenCache.remove(file.getPath())).isNull();
+    }
+
+    @Test
+    public void shouldAwaitWithoutStart() {
+        tokenCache.await();
+
+        assertThat(tokenCache.size()).isEqualTo(0);
+    }
+
+    private File newSource(String name) throws IOException {
+        File file = folder.newFile(name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write("@implementation Foo\n- (int)answer { return 42; }\n@end\n".getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
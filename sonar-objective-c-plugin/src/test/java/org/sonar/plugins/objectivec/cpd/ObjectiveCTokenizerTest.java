@@ -0,0 +1,106 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.cpd;
+
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ObjectiveCTokenizerTest {
+    private static final String SOURCE = "#import \"Foo.h\"\n"
+            + "\n"
+            + "@implementation Foo\n"
+            + "- (int)answer {\n"
+            + "    return 42; // the answer\n"
+            + "}\n"
+            + "@end\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldEmitSameTokensWithAndWithoutCache() throws IOException {
+        File file = folder.newFile("Foo.m");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(SOURCE.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Tokens lexed = tokenize(new ObjectiveCTokenizer(StandardCharsets.UTF_8), file);
+
+        Settings settings = new Settings();
+        settings.setProperty(CpdTokenCache.PRE_TOKENIZE_KEY, true);
+        FileSystem fileSystem = mock(FileSystem.class);
+        when(fileSystem.encoding()).thenReturn(StandardCharsets.UTF_8);
+        CpdTokenCache tokenCache = new CpdTokenCache(fileSystem, settings);
+        tokenCache.start(Collections.singletonList(file));
+        tokenCache.await();
+        Tokens replayed = tokenize(new ObjectiveCTokenizer(StandardCharsets.UTF_8, tokenCache), file);
+
+        List<TokenEntry> expected = lexed.getTokens();
+        List<TokenEntry> actual = replayed.getTokens();
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getValue()).isEqualTo(expected.get(i).getValue());
+            assertThat(actual.get(i).getBeginLine()).isEqualTo(expected.get(i).getBeginLine());
+            assertThat(actual.get(i).getTokenSrcID()).isEqualTo(expected.get(i).getTokenSrcID());
+        }
+        // The tokens of the file are consumed by the replay
+        assertThat(tokenCache.remove(file.getPath())).isNull();
+    }
+
+    @Test
+    public void shouldEndWithSingleCpdEof() throws IOException {
+        File file = folder.newFile("Bar.m");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(SOURCE.getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<TokenEntry> tokens = tokenize(new ObjectiveCTokenizer(StandardCharsets.UTF_8), file).getTokens();
+
+        assertThat(tokens.get(tokens.size() - 1)).isSameAs(TokenEntry.getEOF());
+        for (TokenEntry token : tokens.subList(0, tokens.size() - 1)) {
+            assertThat(token.getValue()).isNotEqualTo("EOF");
+        }
+        assertThat(tokens.get(tokens.size() - 2).getValue()).isEqualTo("@end");
+    }
+
+    private static Tokens tokenize(ObjectiveCTokenizer tokenizer, File file) throws IOException {
+        Tokens tokens = new Tokens();
+        tokenizer.tokenize(new SourceCode(new SourceCode.FileCodeLoader(file, "UTF-8")), tokens);
+        return tokens;
+    }
+}
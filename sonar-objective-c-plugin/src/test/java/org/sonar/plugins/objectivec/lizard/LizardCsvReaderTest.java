@@ -0,0 +1,114 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.lizard;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LizardCsvReaderTest {
+    private static final String HEADER = "NLOC,CCN,token,PARAM,length,location,file,function,long_name,start,end\n";
+
+    @Test
+    public void shouldSkipHeaderRow() throws IOException {
+        LizardCsvReader reader = reader(HEADER
+                + "3,2,10,0,3,\"main@1-3@App/main.m\",\"App/main.m\",\"main\",\"main( int argc )\",1,3\n");
+
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.getCcn()).isEqualTo(2);
+        assertThat(reader.getFileName()).isEqualTo("App/main.m");
+        assertThat(reader.getLongName()).isEqualTo("main( int argc )");
+        assertThat(reader.getStartLine()).isEqualTo(1);
+        assertThat(reader.next()).isFalse();
+    }
+
+    @Test
+    public void shouldReadUnquotedFieldsAndWindowsLineBreaks() throws IOException {
+        LizardCsvReader reader = reader("4,3,20,1,4,foo@5-8@a.m,a.m,foo,foo( int x ),5,8\r\n"
+                + "1,1,5,0,1,bar@9-9@a.m,a.m,bar,bar( ),9,9\r\n");
+
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.getLongName()).isEqualTo("foo( int x )");
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.getCcn()).isEqualTo(1);
+        assertThat(reader.getStartLine()).isEqualTo(9);
+        assertThat(reader.next()).isFalse();
+    }
+
+    @Test
+    public void shouldUnquoteEmbeddedCommasQuotesAndLineBreaks() throws IOException {
+        LizardCsvReader reader = reader("5,4,30,2,6,\"x@1-6@Dir, with comma/b.m\",\"Dir, with comma/b.m\",\"x\","
+                + "\"x( int a ,\nint \"\"b\"\" )\",1,6\n");
+
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.getFileName()).isEqualTo("Dir, with comma/b.m");
+        assertThat(reader.getLongName()).isEqualTo("x( int a ,\nint \"b\" )");
+        assertThat(reader.getStartLine()).isEqualTo(1);
+        assertThat(reader.next()).isFalse();
+    }
+
+    @Test
+    public void shouldDecodeMultiByteFileNames() throws IOException {
+        LizardCsvReader reader = reader("1,1,3,0,1,\"f@1-1@\u00c9cran/\u65e5\u672c.m\","
+                + "\"\u00c9cran/\u65e5\u672c.m\",\"f\",\"f( )\",1,1\n");
+
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.getFileName()).isEqualTo("\u00c9cran/\u65e5\u672c.m");
+    }
+
+    @Test
+    public void shouldTellWhenFileChanges() throws IOException {
+        LizardCsvReader reader = reader(HEADER
+                + "1,1,3,0,1,f@1-1@a.m,a.m,f,f( ),1,1\n"
+                + "1,1,3,0,1,g@2-2@a.m,a.m,g,g( ),2,2\n"
+                + "1,1,3,0,1,h@1-1@b.m,b.m,h,h( ),1,1\n"
+                + "1,X,3,0,1,i@1-1@a.m,a.m,i,i( ),1,1\n"
+                + "1,1,3,0,1,j@2-2@b.m,b.m,j,j( ),2,2\n");
+
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.isNewFile()).isTrue();
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.isNewFile()).isFalse();
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.isNewFile()).isTrue();
+        assertThat(reader.getFileName()).isEqualTo("b.m");
+        // The skipped row of a.m in between does not hide that the file changed
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.isNewFile()).isTrue();
+        assertThat(reader.getFileName()).isEqualTo("b.m");
+        assertThat(reader.getLongName()).isEqualTo("j( )");
+        assertThat(reader.next()).isFalse();
+    }
+
+    @Test
+    public void shouldSkipRowsWithoutFile() throws IOException {
+        LizardCsvReader reader = reader("1,1,3,0,1,f@1-1,,f,f( ),1,1\n\n1,2\n");
+
+        assertThat(reader.next()).isFalse();
+    }
+
+    private static LizardCsvReader reader(String csv) {
+        return new LizardCsvReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -23,23 +23,32 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
-import org.mockito.Mockito;
-import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ChangedFiles;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SourceExclusions;
+import org.sonar.plugins.objectivec.core.XmlReaders;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Andres Gil Herrera
@@ -52,11 +61,32 @@ public class LizardReportParserTest {
 
     private File correctFile;
     private File incorrectFile;
+    private AnalysisScope analysisScope;
+    private ReportCache reportCache;
 
     @Before
     public void setup() throws IOException {
         correctFile = createCorrectFile();
         incorrectFile = createIncorrectFile();
+
+        FileSystem fileSystem = mock(FileSystem.class);
+        when(fileSystem.baseDir()).thenReturn(folder.getRoot());
+        Settings settings = new Settings();
+        PathResolver pathResolver = new PathResolver();
+        analysisScope = new AnalysisScope(new ChangedFiles(fileSystem, pathResolver, settings),
+                new SourceExclusions(fileSystem, settings));
+        reportCache = new ReportCache(fileSystem, pathResolver, settings);
+    }
+
+    /**
+     * @return the measures of each file of the report, with no Lizard rule active
+     */
+    private Map<String, List<Measure>> parse(File report) {
+        final Map<String, List<Measure>> measures = new HashMap<>();
+        LizardReportParser.parseReport(LizardReportParser.Thresholds.of(mock(RulesProfile.class)), report,
+                analysisScope, reportCache, new XmlReaders(), new SensorMetrics("test"),
+                file -> measures.put(file.getFileName(), file.getMeasures()));
+        return measures;
     }
 
     /**
@@ -148,15 +178,7 @@ public class LizardReportParserTest {
     public void parseReportShouldReturnMapWhenXMLFileIsCorrect() {
         assertNotNull("correct file is null", correctFile);
 
-        FileSystem fileSystem = mock(FileSystem.class);
-        ResourcePerspectives resourcePerspectives = mock(ResourcePerspectives.class);
-        RulesProfile rulesProfile = mock(RulesProfile.class);
-        SensorContext sensorContext = mock(SensorContext.class);
-
-        Map<String, List<Measure>> report = LizardReportParser.parseReport(fileSystem, resourcePerspectives,
-                rulesProfile, sensorContext, correctFile);
-
-        assertNotNull("report is null", report);
+        Map<String, List<Measure>> report = parse(correctFile);
 
         assertTrue("Key is not there", report.containsKey("App/Controller/Accelerate/AccelerationViewController.h"));
         List<Measure> list1 = report.get("App/Controller/Accelerate/AccelerationViewController.h");
@@ -200,21 +222,184 @@ public class LizardReportParserTest {
     }
 
     /**
-     * this method test that the parser shoud not return anything if the xml report is corrupted
+     * this method test that the parser shoud not emit anything if the xml report is corrupted
      */
     @Test
-    public void parseReportShouldReturnNullWhenXMLFileIsIncorrect() {
+    public void parseReportShouldEmitNothingWhenXMLFileIsIncorrect() {
         assertNotNull("correct file is null", incorrectFile);
 
-        FileSystem fileSystem = mock(FileSystem.class);
-        ResourcePerspectives resourcePerspectives = mock(ResourcePerspectives.class);
+        Map<String, List<Measure>> report = parse(incorrectFile);
+        assertTrue("report is not empty", report.isEmpty());
+
+    }
+
+    /**
+     * this test case test that the functions of a file are not given to a file whose name ends like it
+     */
+    @Test
+    public void parseReportShouldKeepFunctionsWithTheirFile() throws IOException {
+        File xmlFile = folder.newFile("suffixes.xml");
+        BufferedWriter out = new BufferedWriter(new FileWriter(xmlFile));
+        out.write("<?xml version=\"1.0\" ?>");
+        out.write("<cppncss><measure type=\"Function\"><labels><label>Nr.</label><label>NCSS</label><label>CCN</label></labels>");
+        out.write("<item name=\"foo(...) at Foo.m:3\"><value>1</value><value>4</value><value>2</value></item>");
+        out.write("<item name=\"myFoo(...) at MyFoo.m:3\"><value>2</value><value>9</value><value>7</value></item>");
+        out.write("<item name=\"myBar(...) at MyFoo.m:12\"><value>3</value><value>5</value><value>3</value></item>");
+        out.write("</measure>");
+        out.write("<measure type=\"File\"><labels><label>Nr.</label><label>NCSS</label><label>CCN</label><label>Functions</label></labels>");
+        out.write("<item name=\"Foo.m\"><value>1</value><value>4</value><value>2</value><value>1</value></item>");
+        out.write("<item name=\"MyFoo.m\"><value>2</value><value>14</value><value>10</value><value>2</value></item>");
+        out.write("</measure></cppncss>");
+        out.close();
+
+        Map<String, List<Measure>> report = parse(xmlFile);
+
+        assertEquals(2, measureValue(report.get("Foo.m"), CoreMetrics.COMPLEXITY_IN_FUNCTIONS_KEY), 0.0d);
+        assertEquals(2.0d, measureValue(report.get("Foo.m"), CoreMetrics.FUNCTION_COMPLEXITY_KEY), 0.0d);
+        assertEquals(10, measureValue(report.get("MyFoo.m"), CoreMetrics.COMPLEXITY_IN_FUNCTIONS_KEY), 0.0d);
+        assertEquals(5.0d, measureValue(report.get("MyFoo.m"), CoreMetrics.FUNCTION_COMPLEXITY_KEY), 0.0d);
+    }
+
+    /**
+     * this test case test that a file found in several reports keeps the measures of the report with the most
+     * functions in it, the first one on a tie
+     */
+    @Test
+    public void parseReportsShouldKeepReportWithMostFunctionsOfEachFile() throws IOException {
+        File first = createSharedFileReport("first.xml", 1, 3, "first(...)");
+        File second = createSharedFileReport("second.xml", 2, 8, "second(...)", "secondBis(...)");
+        File third = createSharedFileReport("third.xml", 2, 20, "third(...)", "thirdBis(...)");
+
+        final Map<String, List<Measure>> measures = new HashMap<>();
+        SensorMetrics metrics = new SensorMetrics("test");
+        LizardReportParser.parseReports(LizardReportParser.Thresholds.of(mock(RulesProfile.class)),
+                Arrays.asList(first, second, third), analysisScope, reportCache, new XmlReaders(), metrics,
+                file -> assertNull("file emitted twice", measures.put(file.getFileName(), file.getMeasures())));
+
+        assertEquals(1, measures.size());
+        assertEquals(8, measureValue(measures.get("Shared.m"), CoreMetrics.COMPLEXITY_KEY), 0.0d);
+        assertEquals(2, measureValue(measures.get("Shared.m"), CoreMetrics.FUNCTIONS_KEY), 0.0d);
+        assertEquals(2, metrics.get(SensorMetrics.DUPLICATES));
+    }
+
+    /**
+     * this test case test that a CSV report gives each file the sum of the complexities of its functions
+     */
+    @Test
+    public void parseReportShouldSumFunctionsOfCsvReport() throws IOException {
+        File csvFile = folder.newFile("lizard.csv");
+        BufferedWriter out = new BufferedWriter(new FileWriter(csvFile));
+        out.write("NLOC,CCN,token,PARAM,length,location,file,function,long_name,start,end\n");
+        out.write("3,2,10,0,3,\"a@1-3@A.m\",\"A.m\",\"a\",\"a( )\",1,3\n");
+        out.write("3,4,10,0,3,\"b@5-7@A.m\",\"A.m\",\"b\",\"b( )\",5,7\n");
+        out.write("3,1,10,0,3,\"c@1-3@B.m\",\"B.m\",\"c\",\"c( )\",1,3\n");
+        out.close();
+
+        Map<String, List<Measure>> report = parse(csvFile);
+
+        assertEquals(2, report.size());
+        assertEquals(6, measureValue(report.get("A.m"), CoreMetrics.COMPLEXITY_KEY), 0.0d);
+        assertEquals(2, measureValue(report.get("A.m"), CoreMetrics.FUNCTIONS_KEY), 0.0d);
+        assertEquals(3.0d, measureValue(report.get("A.m"), CoreMetrics.FUNCTION_COMPLEXITY_KEY), 0.0d);
+        assertEquals(1, measureValue(report.get("B.m"), CoreMetrics.COMPLEXITY_KEY), 0.0d);
+    }
+
+    /**
+     * this test case test that functions of a CSV report without start line get their issue on the file
+     */
+    @Test
+    public void parseReportShouldLeaveOutUnknownLinesOfCsvReport() throws IOException {
+        File csvFile = folder.newFile("nolines.csv");
+        BufferedWriter out = new BufferedWriter(new FileWriter(csvFile));
+        out.write("NLOC,CCN,token,PARAM,length,location,file,function,long_name,start,end\n");
+        out.write("3,4,10,1,3,\"a@1-3@A.m\",\"A.m\",\"a:\",\"-[A a:]\",1,3\n");
+        out.write("3,5,10,1,3,\"b@?@A.m\",\"A.m\",\"b:\",\"-[A b:]\",,\n");
+        out.close();
         RulesProfile rulesProfile = mock(RulesProfile.class);
-        SensorContext sensorContext = mock(SensorContext.class);
+        ActiveRule functionRule = mock(ActiveRule.class);
+        when(functionRule.getParameter(LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_PARAM_KEY))
+                .thenReturn("2");
+        when(rulesProfile.getActiveRule(LizardRulesDefinition.REPOSITORY_KEY,
+                LizardRulesDefinition.FUNCTION_CYCLOMATIC_COMPLEXITY_RULE_KEY)).thenReturn(functionRule);
+
+        final Map<String, List<LizardReportParser.ComplexityIssue>> issues = new HashMap<>();
+        LizardReportParser.parseReport(LizardReportParser.Thresholds.of(rulesProfile), csvFile, analysisScope,
+                reportCache, new XmlReaders(), new SensorMetrics("test"),
+                file -> issues.put(file.getFileName(), file.getIssues()));
 
-        Map<String, List<Measure>> report = LizardReportParser.parseReport(fileSystem, resourcePerspectives,
-                rulesProfile, sensorContext, incorrectFile);
-        assertNull("report is not null", report);
+        List<LizardReportParser.ComplexityIssue> fileIssues = issues.get("A.m");
+        assertEquals(2, fileIssues.size());
+        assertEquals(Integer.valueOf(1), fileIssues.get(0).getLine());
+        assertTrue(fileIssues.get(0).getMessage().contains("\"-[A a:]\""));
+        assertNull(fileIssues.get(1).getLine());
+        assertTrue(fileIssues.get(1).getMessage().contains("\"-[A b:]\""));
+    }
+
+    /**
+     * this test case test that a cached report keeps the files out of the scope it was parsed with, so that it is
+     * replayed for another scope
+     */
+    @Test
+    public void parseReportShouldReplayCsvReportWhenTheScopeChanges() throws IOException {
+        File csvFile = folder.newFile("cached.csv");
+        BufferedWriter out = new BufferedWriter(new FileWriter(csvFile));
+        out.write("NLOC,CCN,token,PARAM,length,location,file,function,long_name,start,end\n");
+        out.write("3,2,10,0,3,\"a@1-3@A.m\",\"A.m\",\"a\",\"a( )\",1,3\n");
+        out.write("3,1,10,0,3,\"c@1-3@B.m\",\"B.m\",\"c\",\"c( )\",1,3\n");
+        out.close();
+        FileSystem fileSystem = mock(FileSystem.class);
+        when(fileSystem.baseDir()).thenReturn(folder.getRoot());
+        Settings settings = new Settings();
+        settings.setProperty(ReportCache.PATH_KEY, folder.newFolder("cache").getPath());
+        reportCache = new ReportCache(fileSystem, new PathResolver(), settings);
+        analysisScope = mock(AnalysisScope.class);
+        when(analysisScope.contains("A.m")).thenReturn(true);
 
+        Map<String, List<Measure>> parsed = parse(csvFile);
+
+        assertEquals(1, parsed.size());
+        assertEquals(2, measureValue(parsed.get("A.m"), CoreMetrics.COMPLEXITY_KEY), 0.0d);
+
+        when(analysisScope.contains("A.m")).thenReturn(false);
+        when(analysisScope.contains("B.m")).thenReturn(true);
+        SensorMetrics metrics = new SensorMetrics("test");
+        final Map<String, List<Measure>> replayed = new HashMap<>();
+        LizardReportParser.parseReport(LizardReportParser.Thresholds.of(mock(RulesProfile.class)), csvFile,
+                analysisScope, reportCache, new XmlReaders(), metrics,
+                file -> replayed.put(file.getFileName(), file.getMeasures()));
+
+        assertEquals(1, metrics.get(SensorMetrics.CACHED_REPORTS));
+        assertEquals(1, replayed.size());
+        assertEquals(1, measureValue(replayed.get("B.m"), CoreMetrics.COMPLEXITY_KEY), 0.0d);
+        assertEquals(1, measureValue(replayed.get("B.m"), CoreMetrics.FUNCTIONS_KEY), 0.0d);
+    }
+
+    private File createSharedFileReport(String name, int functions, int complexity, String... functionNames)
+            throws IOException {
+        File xmlFile = folder.newFile(name);
+        BufferedWriter out = new BufferedWriter(new FileWriter(xmlFile));
+        out.write("<?xml version=\"1.0\" ?>");
+        out.write("<cppncss><measure type=\"Function\"><labels><label>Nr.</label><label>NCSS</label><label>CCN</label></labels>");
+        for (int i = 0; i < functionNames.length; i++) {
+            out.write("<item name=\"" + functionNames[i] + " at Shared.m:" + (i + 1) + "\">");
+            out.write("<value>" + (i + 1) + "</value><value>1</value><value>" + complexity / functions + "</value></item>");
+        }
+        out.write("</measure>");
+        out.write("<measure type=\"File\"><labels><label>Nr.</label><label>NCSS</label><label>CCN</label><label>Functions</label></labels>");
+        out.write("<item name=\"Shared.m\"><value>1</value><value>10</value><value>" + complexity + "</value><value>"
+                + functions + "</value></item>");
+        out.write("</measure></cppncss>");
+        out.close();
+        return xmlFile;
+    }
+
+    private static double measureValue(List<Measure> measures, String metricKey) {
+        for (Measure measure : measures) {
+            if (measure.getMetric().getKey().equals(metricKey)) {
+                return measure.getValue();
+            }
+        }
+        throw new AssertionError("No " + metricKey + " measure");
     }
 
 }
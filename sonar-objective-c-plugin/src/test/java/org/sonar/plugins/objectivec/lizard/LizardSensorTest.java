@@ -0,0 +1,120 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.lizard;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.core.XmlReaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LizardSensorTest {
+    private static final String XML_REPORT = "<?xml version=\"1.0\" ?><cppncss><measure type=\"Function\"/></cppncss>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LizardSensor sensor;
+    private File rootReport;
+    private File appReport;
+    private File kitReport;
+
+    @Before
+    public void setUp() throws IOException {
+        rootReport = newFile("lizard.xml", XML_REPORT);
+        appReport = newFile("App/reports/lizard.xml", XML_REPORT);
+        kitReport = newFile("Kit/reports/lizard.csv", "3,2,10,0,3,\"a@1-3@A.m\",\"A.m\",\"a\",\"a( )\",1,3\n");
+        newFile("App/reports/notes.txt", "");
+
+        FileSystem fileSystem = mock(FileSystem.class);
+        when(fileSystem.baseDir()).thenReturn(folder.getRoot());
+        sensor = new LizardSensor(fileSystem, new PathResolver(), mock(ResourcePerspectives.class),
+                mock(RulesProfile.class), new Settings(), mock(SensorMetricsReporter.class),
+                mock(AnalysisScope.class), mock(ReportCache.class), new XmlReaders());
+    }
+
+    @Test
+    public void shouldFindSingleReport() {
+        assertThat(sensor.getReports("App/reports/lizard.xml")).containsExactly(appReport);
+        assertThat(sensor.getReports("App/reports/missing.xml")).isEmpty();
+    }
+
+    @Test
+    public void shouldFindReportsOfDirectory() {
+        assertThat(sensor.getReports("App/reports")).containsExactly(appReport);
+    }
+
+    @Test
+    public void shouldMatchReportsInAnyDirectoryIncludingBaseDirectory() {
+        assertThat(sensor.getReports("**/lizard.xml")).containsExactly(appReport, rootReport);
+        assertThat(sensor.getReports("**/lizard.*")).containsExactly(appReport, kitReport, rootReport);
+    }
+
+    @Test
+    public void shouldMatchReportsBelowDirectory() {
+        assertThat(sensor.getReports("*/reports/lizard.*")).containsExactly(appReport, kitReport);
+        assertThat(sensor.getReports("Kit/**/*.csv")).containsExactly(kitReport);
+        assertThat(sensor.getReports("*.xml")).containsExactly(rootReport);
+    }
+
+    @Test
+    public void shouldAcceptBackslashSeparators() {
+        assertThat(sensor.getReports("App\\reports\\lizard.xml")).containsExactly(appReport);
+        assertThat(sensor.getReports("Kit\\**\\*.csv")).containsExactly(kitReport);
+    }
+
+    @Test
+    public void directoryShouldOnlyGiveLizardReports() throws IOException {
+        File coverage = newFile("App/reports/coverage.xml", "<?xml version=\"1.0\" ?><coverage/>");
+        File broken = newFile("App/reports/broken.xml", "not XML");
+        newFile("App/reports/empty.csv", "");
+        newFile("App/reports/other.csv", "name,value\n1,2\n");
+        File header = newFile("App/reports/header.csv",
+                "NLOC,CCN,token,PARAM,length,location,file,function,long_name,start,end\n");
+
+        assertThat(sensor.getReports("App/reports")).containsExactly(header, appReport);
+        // Globs are trusted to name the reports
+        assertThat(sensor.getReports("App/reports/*.xml")).containsExactly(broken, coverage, appReport);
+    }
+
+    private File newFile(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
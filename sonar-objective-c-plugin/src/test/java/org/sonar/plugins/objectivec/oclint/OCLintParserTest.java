@@ -0,0 +1,179 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.oclint;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.XmlReaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OCLintParserTest {
+
+    private static final String REPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><oclint version=\"0.8\">"
+            + "<file name=\"App/A.m\">"
+            + "<violation rule=\"long line\" beginline=\"3\">Line with 120 characters</violation>"
+            + "<violation rule=\"short variable name\" beginline=\"7\">Variable name x</violation>"
+            + "</file>"
+            + "<file name=\"App/B.m\">"
+            + "<violation rule=\"long line\" beginline=\"5\">Line with 130 characters</violation>"
+            + "</file>"
+            + "</oclint>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileSystem fileSystem;
+    private SensorContext context;
+    private ResourcePerspectives resourcePerspectives;
+    private Issuable issuable;
+    private AnalysisScope analysisScope;
+    private ReportCache reportCache;
+    private File report;
+
+    @Before
+    public void setUp() throws IOException {
+        fileSystem = mock(FileSystem.class);
+        when(fileSystem.baseDir()).thenReturn(folder.getRoot());
+        FilePredicates predicates = mock(FilePredicates.class);
+        when(fileSystem.predicates()).thenReturn(predicates);
+        when(predicates.hasPath(anyString())).thenReturn(mock(FilePredicate.class));
+        InputFile inputFile = mock(InputFile.class);
+        when(fileSystem.inputFile(any(FilePredicate.class))).thenReturn(inputFile);
+
+        Resource resource = mock(Resource.class);
+        context = mock(SensorContext.class);
+        when(context.getResource(inputFile)).thenReturn(resource);
+        issuable = mock(Issuable.class);
+        when(issuable.newIssueBuilder()).thenReturn(mock(Issuable.IssueBuilder.class, Mockito.RETURNS_DEEP_STUBS));
+        resourcePerspectives = mock(ResourcePerspectives.class);
+        when(resourcePerspectives.as(Issuable.class, resource)).thenReturn(issuable);
+
+        analysisScope = mock(AnalysisScope.class);
+        when(analysisScope.contains(anyString())).thenReturn(true);
+
+        Settings settings = new Settings();
+        settings.setProperty(ReportCache.PATH_KEY, folder.newFolder("cache").getPath());
+        reportCache = new ReportCache(fileSystem, new PathResolver(), settings);
+
+        report = folder.newFile("oclint.xml");
+        Files.write(report.toPath(), REPORT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private SensorMetrics parse() {
+        SensorMetrics metrics = new SensorMetrics("test");
+        OCLintParser.parseReport(report, fileSystem, context, resourcePerspectives, analysisScope, reportCache,
+                new XmlReaders(), metrics);
+        return metrics;
+    }
+
+    @Test
+    public void parseReportShouldAddAnIssuePerViolation() {
+        SensorMetrics metrics = parse();
+
+        assertThat(metrics.get(SensorMetrics.ISSUES)).isEqualTo(3);
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(0);
+    }
+
+    @Test
+    public void parseReportShouldReplayAnUnchangedReport() {
+        parse();
+        SensorMetrics metrics = parse();
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(1);
+        assertThat(metrics.get(SensorMetrics.ISSUES)).isEqualTo(3);
+    }
+
+    @Test
+    public void parseReportShouldReplayTheReportWhenTheScopeChanges() {
+        when(analysisScope.contains("App/A.m")).thenReturn(false);
+        SensorMetrics parsed = parse();
+
+        assertThat(parsed.get(SensorMetrics.ISSUES)).isEqualTo(1);
+        assertThat(parsed.get(SensorMetrics.OUT_OF_SCOPE)).isEqualTo(1);
+
+        when(analysisScope.contains("App/A.m")).thenReturn(true);
+        when(analysisScope.contains("App/B.m")).thenReturn(false);
+        SensorMetrics replayed = parse();
+
+        assertThat(replayed.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(1);
+        assertThat(replayed.get(SensorMetrics.ISSUES)).isEqualTo(2);
+        assertThat(replayed.get(SensorMetrics.OUT_OF_SCOPE)).isEqualTo(1);
+    }
+
+    @Test
+    public void parseReportShouldNotCacheAReportWhichFailedToBeSaved() {
+        doThrow(new IllegalStateException("save failed")).when(issuable).addIssue(any(Issue.class));
+        try {
+            parse();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("save failed");
+        }
+
+        Mockito.reset(issuable);
+        when(issuable.newIssueBuilder()).thenReturn(mock(Issuable.IssueBuilder.class, Mockito.RETURNS_DEEP_STUBS));
+        SensorMetrics metrics = parse();
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(0);
+        assertThat(metrics.get(SensorMetrics.ISSUES)).isEqualTo(3);
+    }
+
+    @Test
+    public void parseReportShouldParseAChangedReportAgain() throws IOException {
+        parse();
+        Files.write(report.toPath(), REPORT.replace("beginline=\"3\"", "beginline=\"4\"")
+                .getBytes(StandardCharsets.UTF_8));
+        report.setLastModified(report.lastModified() + 1000);
+        SensorMetrics metrics = parse();
+
+        assertThat(metrics.get(SensorMetrics.CACHED_REPORTS)).isEqualTo(0);
+        assertThat(metrics.get(SensorMetrics.ISSUES)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.oclint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.plugins.objectivec.core.AnalysisScope;
+import org.sonar.plugins.objectivec.core.ReportCache;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.SensorMetricsReporter;
+import org.sonar.plugins.objectivec.core.XmlReaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OCLintSensorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void metricsShouldBeReportedWhenTheReportFails() throws IOException {
+        File report = folder.newFile("oclint.xml");
+        Files.write(report.toPath(), "<oclint><file name=".getBytes(StandardCharsets.UTF_8));
+        FileSystem fileSystem = mock(FileSystem.class);
+        when(fileSystem.baseDir()).thenReturn(folder.getRoot());
+        Settings settings = new Settings();
+        settings.setProperty(OCLintSensor.REPORT_PATH_KEY, report.getPath());
+        SensorMetrics metrics = new SensorMetrics("test");
+        SensorMetricsReporter metricsReporter = mock(SensorMetricsReporter.class);
+        when(metricsReporter.start(anyString())).thenReturn(metrics);
+        AnalysisScope analysisScope = mock(AnalysisScope.class);
+        when(analysisScope.contains(anyString())).thenReturn(true);
+
+        OCLintSensor sensor = new OCLintSensor(fileSystem, new PathResolver(), mock(ResourcePerspectives.class),
+                settings, metricsReporter, analysisScope, mock(ReportCache.class), new XmlReaders());
+        try {
+            sensor.analyse(new Project("test"), mock(SensorContext.class));
+            fail();
+        } catch (RuntimeException e) {
+            verify(metricsReporter).finish(metrics);
+        }
+    }
+}
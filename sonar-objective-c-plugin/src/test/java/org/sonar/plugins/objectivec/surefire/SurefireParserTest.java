@@ -0,0 +1,176 @@
+/*
+ * SonarQube Objective-C (Community) Plugin
+ * Copyright (C) 2012-2016 OCTO Technology, Backelite, and contributors
+ * mailto:sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.objectivec.surefire;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.test.MutableTestCase;
+import org.sonar.api.test.MutableTestPlan;
+import org.sonar.plugins.objectivec.core.SensorMetrics;
+import org.sonar.plugins.objectivec.core.XmlReaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SurefireParserTest {
+
+    private static final String MESSAGE = "expected [1] but was [2]";
+    private static final String STACK_TRACE = "FooTest.m:12: error: expected [1] but was [2]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File reportsDir;
+    private DefaultInputFile inputFile;
+    private SensorContext context;
+    private ResourcePerspectives perspectives;
+    private MutableTestPlan testPlan;
+    private MutableTestCase testCase;
+
+    @Before
+    public void setUp() throws IOException {
+        reportsDir = folder.newFolder("reports");
+        inputFile = new DefaultInputFile("FooTest.m")
+                .setAbsolutePath(new File(folder.getRoot(), "FooTest.m").getAbsolutePath())
+                .setType(InputFile.Type.TEST);
+
+        Resource resource = mock(Resource.class);
+        context = mock(SensorContext.class);
+        when(context.getResource(any(InputFile.class))).thenReturn(resource);
+        testCase = mock(MutableTestCase.class, (Answer<Object>) invocation ->
+                invocation.getMethod().getReturnType() == MutableTestCase.class ? invocation.getMock() : null);
+        testPlan = mock(MutableTestPlan.class);
+        when(testPlan.addTestCase(anyString())).thenReturn(testCase);
+        perspectives = mock(ResourcePerspectives.class);
+        when(perspectives.as(MutableTestPlan.class, resource)).thenReturn(testPlan);
+
+        // One class over two suites, the first of which also reports on a nested class
+        writeReport("TEST-first.xml", "<testsuite name=\"FooTest\">"
+                + "<testcase classname=\"FooTest\" name=\"testOk\" time=\"0.5\"/>"
+                + "<testcase classname=\"FooTest\" name=\"testFailure\" time=\"0.25\">"
+                + "<failure message=\"" + MESSAGE + "\">" + STACK_TRACE + "</failure></testcase>"
+                + "<testcase classname=\"FooTest$Nested\" name=\"testNested\" time=\"0.125\"/>"
+                + "</testsuite>");
+        writeReport("TEST-second.xml", "<testsuite name=\"FooTest\">"
+                + "<testcase classname=\"FooTest\" name=\"testError\" time=\"1\">"
+                + "<error message=\"crash\">FooTest.m:30: crash</error></testcase>"
+                + "<testcase classname=\"FooTest\" name=\"testSkipped\" time=\"2\"><skipped/></testcase>"
+                + "</testsuite>");
+    }
+
+    private void writeReport(String name, String suite) throws IOException {
+        String report = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><testsuites>" + suite + "</testsuites>";
+        Files.write(new File(reportsDir, name).toPath(), report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private SensorMetrics collect(int maxStackTraceLength) {
+        DefaultFileSystem fileSystem = new DefaultFileSystem();
+        fileSystem.setBaseDir(folder.getRoot());
+        fileSystem.add(inputFile);
+        SensorMetrics metrics = new SensorMetrics("test");
+        new SurefireParser(fileSystem, perspectives, context, new XmlReaders(), metrics, maxStackTraceLength)
+                .collect(reportsDir);
+        return metrics;
+    }
+
+    private void verifyTestCasesSavedOnce() {
+        verify(testPlan, times(1)).addTestCase("testOk");
+        verify(testPlan, times(1)).addTestCase("testFailure");
+        verify(testPlan, times(1)).addTestCase("Nested/testNested");
+        verify(testPlan, times(1)).addTestCase("testError");
+        verify(testPlan, times(1)).addTestCase("testSkipped");
+        verify(testPlan, times(5)).addTestCase(anyString());
+    }
+
+    private void verifyMeasures() {
+        verify(context).saveMeasure(inputFile, CoreMetrics.TESTS, 4.0);
+        verify(context).saveMeasure(inputFile, CoreMetrics.SKIPPED_TESTS, 1.0);
+        verify(context).saveMeasure(inputFile, CoreMetrics.TEST_ERRORS, 1.0);
+        verify(context).saveMeasure(inputFile, CoreMetrics.TEST_FAILURES, 1.0);
+        verify(context).saveMeasure(inputFile, CoreMetrics.TEST_EXECUTION_TIME, 1875.0);
+        verify(context).saveMeasure(inputFile, CoreMetrics.TEST_SUCCESS_DENSITY, 50.0);
+    }
+
+    @Test
+    public void testCasesShouldBeSavedOnceWhenReadAllAtOnce() {
+        SensorMetrics metrics = collect(0);
+
+        verifyTestCasesSavedOnce();
+        verifyMeasures();
+        verify(testCase).setMessage(MESSAGE);
+        verify(testCase).setStackTrace(STACK_TRACE);
+        assertThat(metrics.get(SensorMetrics.FILES)).isEqualTo(2);
+    }
+
+    @Test
+    public void testCasesShouldBeSavedOnceWhenStreamedSuiteBySuite() {
+        SensorMetrics metrics = collect(100);
+
+        // Nested classes are folded into their outer class as soon as their suite is read
+        verifyTestCasesSavedOnce();
+        verifyMeasures();
+        verify(testCase).setMessage(MESSAGE);
+        verify(testCase).setStackTrace(STACK_TRACE);
+        assertThat(metrics.get(SensorMetrics.FILES)).isEqualTo(2);
+        assertThat(metrics.get(SensorMetrics.UNRESOLVED_PATHS)).isEqualTo(0);
+    }
+
+    @Test
+    public void messagesAndStackTracesShouldBeTruncated() {
+        collect(10);
+
+        verifyTestCasesSavedOnce();
+        verifyMeasures();
+        verify(testCase).setMessage(MESSAGE.substring(0, 10) + "\n... " + (MESSAGE.length() - 10) + " more characters");
+        verify(testCase).setStackTrace(
+                STACK_TRACE.substring(0, 10) + "\n... " + (STACK_TRACE.length() - 10) + " more characters");
+        // Texts no longer than the limit are kept whole
+        verify(testCase).setMessage("crash");
+    }
+
+    @Test
+    public void zeroTestsShouldBeSavedWithoutReports() throws IOException {
+        SensorContext emptyContext = mock(SensorContext.class);
+        new SurefireParser(new DefaultFileSystem(), perspectives, emptyContext, new XmlReaders(),
+                new SensorMetrics("test"), 100).collect(folder.newFolder("empty"));
+
+        verify(emptyContext).saveMeasure(CoreMetrics.TESTS, 0.0);
+    }
+}